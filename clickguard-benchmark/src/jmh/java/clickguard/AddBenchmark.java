@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of guarding a View, eagerly or lazily, and of retrieving its OnClickListener.
+ */
+@State(Scope.Thread)
+public class AddBenchmark {
+
+    private final View.OnClickListener mListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+        }
+    };
+    private final View mView = new View();
+    private final View mListenerlessView = new View();
+    private final MotionEvent mDown = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 0f, 0f, 0);
+    private ClickGuard mGuard;
+
+    @Setup
+    public void setUp() {
+        mView.setOnClickListener(mListener);
+        mGuard = ClickGuard.newGuard();
+    }
+
+    @Benchmark
+    public View.OnClickListener listenerGetterGet() {
+        return ClickGuard.ListenerGetter.get(mView);
+    }
+
+    @Benchmark
+    public View.OnClickListener listenerGetterGetWithoutListener() {
+        return ClickGuard.ListenerGetter.get(mListenerlessView);
+    }
+
+    /**
+     * Guards the View, then puts the original listener back for the next invocation.
+     */
+    @Benchmark
+    public View add() {
+        mGuard.add(mView);
+        mView.setOnClickListener(mListener);
+        return mView;
+    }
+
+    /**
+     * Guards the View lazily. The View only refers to the listener shared by all the Views added
+     * lazily to the ClickGuard.
+     */
+    @Benchmark
+    public View addLazily() {
+        mGuard.addLazily(mView);
+        return mView;
+    }
+
+    /**
+     * Guards the View with a new ClickGuard, then puts the original listener back for the next
+     * invocation.
+     */
+    @Benchmark
+    public View guard() {
+        ClickGuard.guard(mView);
+        mView.setOnClickListener(mListener);
+        return mView;
+    }
+
+    /**
+     * Guards the View lazily with a new ClickGuard. The listener is left as it is.
+     */
+    @Benchmark
+    public View guardLazily() {
+        ClickGuard.guardLazily(mView);
+        return mView;
+    }
+
+    /**
+     * Guards the View lazily with a new ClickGuard and touches it, which pays the deferred cost of
+     * wrapping the listener. Then puts the original listener back for the next invocation.
+     */
+    @Benchmark
+    public View guardLazilyThenTouch() {
+        ClickGuard.guardLazily(mView);
+        mView.dispatchTouchEvent(mDown);
+        mView.setOnClickListener(mListener);
+        return mView;
+    }
+}
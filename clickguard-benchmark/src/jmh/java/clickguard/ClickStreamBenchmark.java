@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard;
+
+import android.view.View;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of the click hot path while the clicks are published to a {@link ClickStream}. The
+ * allocation rate per click, reported by the {@code gc} profiler, should stay at zero.
+ */
+@State(Scope.Thread)
+public class ClickStreamBenchmark {
+
+    /**
+     * {@code none}: no subscriber. {@code counting}: a subscriber with unbounded demand.
+     * {@code buffered}: a subscriber without demand, whose buffer is full.
+     */
+    @Param({"none", "counting", "buffered"})
+    public String subscriber;
+
+    private final View mView = new View();
+    private ClickGuard mGuard;
+    private ClickGuard.GuardedOnClickListener mListener;
+    private long mCount;
+
+    @Setup
+    public void setUp() {
+        mGuard = ClickGuard.newGuard(Long.MAX_VALUE / 2, ClickGuard.MODE_TIMESTAMP);
+        mListener = ClickGuard.wrap(mGuard, new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+            }
+        });
+        if ("none".equals(subscriber)) {
+            return;
+        }
+        final long demand = "counting".equals(subscriber) ? Long.MAX_VALUE : 0L;
+        mGuard.clicks().throttleFirst().subscribe(new ClickStream.Subscriber() {
+            @Override
+            public void onSubscribe(ClickStream.Subscription subscription) {
+                if (demand > 0) {
+                    subscription.request(demand);
+                }
+            }
+
+            @Override
+            public void onClick(View view, long uptimeMillis, boolean accepted) {
+                mCount++;
+            }
+        });
+    }
+
+    /**
+     * An accepted click. The guard is told to rest after every click, so that the next one is
+     * accepted as well.
+     */
+    @Benchmark
+    public long acceptedClick() {
+        mListener.onClick(mView);
+        mGuard.rest();
+        return mCount;
+    }
+}
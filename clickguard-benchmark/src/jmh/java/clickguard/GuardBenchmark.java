@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard;
+
+import android.os.Looper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of the guard state machine of every guard implementation.
+ */
+@State(Scope.Thread)
+public class GuardBenchmark {
+
+    @Param({"handler", "timestamp", "concurrent", "looper", "adaptive", "tokenBucket",
+            "slidingWindow"})
+    public String mode;
+
+    private ClickGuard mWatchingGuard;
+    private ClickGuard mRestingGuard;
+
+    static ClickGuard newGuard(String mode, long watchPeriodMillis) {
+        if ("handler".equals(mode)) {
+            return ClickGuard.newGuard(watchPeriodMillis, ClickGuard.MODE_HANDLER);
+        } else if ("timestamp".equals(mode)) {
+            return ClickGuard.newGuard(watchPeriodMillis, ClickGuard.MODE_TIMESTAMP);
+        } else if ("concurrent".equals(mode)) {
+            return ClickGuard.newGuard(watchPeriodMillis, ClickGuard.MODE_CONCURRENT);
+        } else if ("looper".equals(mode)) {
+            return ClickGuard.newGuard(watchPeriodMillis, Looper.getMainLooper());
+        } else if ("adaptive".equals(mode)) {
+            return ClickGuard.newAdaptiveGuard(0.95, 0L, watchPeriodMillis);
+        } else if ("tokenBucket".equals(mode)) {
+            return ClickGuard.newTokenBucketGuard(1, watchPeriodMillis);
+        } else if ("slidingWindow".equals(mode)) {
+            return ClickGuard.newSlidingWindowGuard(1, watchPeriodMillis);
+        }
+        throw new IllegalArgumentException("Unknown mode: " + mode);
+    }
+
+    @Setup
+    public void setUp() {
+        mWatchingGuard = newGuard(mode, Long.MAX_VALUE / 2);
+        mWatchingGuard.watch();
+        mRestingGuard = newGuard(mode, Long.MAX_VALUE / 2);
+    }
+
+    @Benchmark
+    public boolean isWatchingWhileWatching() {
+        return mWatchingGuard.isWatching();
+    }
+
+    @Benchmark
+    public boolean isWatchingWhileResting() {
+        return mRestingGuard.isWatching();
+    }
+
+    @Benchmark
+    public void watchAndRest() {
+        mRestingGuard.watch();
+        mRestingGuard.rest();
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard;
+
+import android.view.View;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of retrieving the OnClickListener of a View, with and without a listener set.
+ */
+@State(Scope.Thread)
+public class ListenerGetterBenchmark {
+
+    private final View mView = new View();
+    private final View mEmptyView = new View();
+
+    @Setup
+    public void setUp() {
+        mView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+            }
+        });
+    }
+
+    @Benchmark
+    public View.OnClickListener retrieve() {
+        return ClickGuard.retrieveOnClickListener(mView);
+    }
+
+    @Benchmark
+    public View.OnClickListener retrieveWithoutListener() {
+        return ClickGuard.retrieveOnClickListener(mEmptyView);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard;
+
+import android.view.View;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks of {@link ClickGuard.GuardedOnClickListener#onClick(View)}, the click hot path, with
+ * and without {@link ClickProfiler}.
+ */
+@State(Scope.Thread)
+public class OnClickBenchmark {
+
+    @Param({"handler", "timestamp", "concurrent", "looper", "adaptive", "tokenBucket",
+            "slidingWindow"})
+    public String mode;
+
+    @Param({"off", "on"})
+    public String profiling;
+
+    private final View mView = new View();
+    private int mClicks;
+
+    private ClickGuard mAcceptingGuard;
+    private ClickGuard.GuardedOnClickListener mAcceptingListener;
+    private ClickGuard.GuardedOnClickListener mIgnoringListener;
+
+    @Setup
+    public void setUp() {
+        if ("on".equals(profiling)) {
+            ClickProfiler.enable(16, null);
+        }
+        View.OnClickListener listener = new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                mClicks++;
+            }
+        };
+        mAcceptingGuard = GuardBenchmark.newGuard(mode, Long.MAX_VALUE / 2);
+        mAcceptingListener = ClickGuard.wrap(mAcceptingGuard, listener);
+        ClickGuard ignoringGuard = GuardBenchmark.newGuard(mode, Long.MAX_VALUE / 2);
+        ignoringGuard.watch();
+        mIgnoringListener = ClickGuard.wrap(ignoringGuard, listener);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ClickProfiler.disable();
+    }
+
+    /**
+     * An accepted click. The guard is told to rest after every click, so that the next one is
+     * accepted as well.
+     */
+    @Benchmark
+    public int acceptedClick() {
+        mAcceptingListener.onClick(mView);
+        mAcceptingGuard.rest();
+        return mClicks;
+    }
+
+    @Benchmark
+    public int ignoredClick() {
+        mIgnoringListener.onClick(mView);
+        return mClicks;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of an ignored tap dispatched to a guarded View, suppressed either by the
+ * OnClickListener or at touch dispatch by {@link ClickGuard#suppressTouches(View)}.
+ * <p/>
+ * The work of redrawing the pressed state is modelled by burning {@code redrawTokens} in
+ * {@code drawableStateChanged()}. The real frame cost has to be measured on a device, this only
+ * shows how much of the per-tap work each path avoids.
+ */
+@State(Scope.Thread)
+public class TouchBenchmark {
+
+    @Param({"click", "touch"})
+    public String suppression;
+
+    @Param({"0", "200"})
+    public long redrawTokens;
+
+    private View mView;
+    private MotionEvent mDown;
+    private MotionEvent mUp;
+    private int mClicks;
+
+    @Setup
+    public void setUp() {
+        mView = new View() {
+            @Override
+            protected void drawableStateChanged() {
+                Blackhole.consumeCPU(redrawTokens);
+            }
+        };
+        mView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                mClicks++;
+            }
+        });
+        ClickGuard guard = ClickGuard.newGuard(Long.MAX_VALUE / 2, ClickGuard.MODE_TIMESTAMP).add(mView);
+        guard.watch();
+        if ("touch".equals(suppression)) {
+            guard.suppressTouches(mView);
+        }
+        mDown = MotionEvent.obtain(0L, 0L, MotionEvent.ACTION_DOWN, 0f, 0f, 0);
+        mUp = MotionEvent.obtain(0L, 50L, MotionEvent.ACTION_UP, 0f, 0f, 0);
+    }
+
+    @Benchmark
+    public int ignoredTap() {
+        mView.dispatchTouchEvent(mDown);
+        mView.dispatchTouchEvent(mUp);
+        return mClicks;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+/**
+ * Plain-JVM stand-in. Messages are enqueued into the {@link MessageQueue} of the Looper but never
+ * dispatched.
+ */
+public class Handler {
+    private final MessageQueue mQueue;
+
+    public Handler() {
+        this(Looper.myLooper());
+    }
+
+    public Handler(Looper looper) {
+        mQueue = looper.mQueue;
+    }
+
+    public void handleMessage(Message msg) {
+    }
+
+    public final boolean post(Runnable r) {
+        return postDelayed(r, 0L);
+    }
+
+    public final boolean postDelayed(Runnable r, long delayMillis) {
+        return postAtTime(r, SystemClock.uptimeMillis() + Math.max(0L, delayMillis));
+    }
+
+    public final boolean postAtTime(Runnable r, long uptimeMillis) {
+        Message msg = new Message();
+        msg.callback = r;
+        return sendMessageAtTime(msg, uptimeMillis);
+    }
+
+    public final boolean sendEmptyMessage(int what) {
+        return sendEmptyMessageDelayed(what, 0L);
+    }
+
+    public final boolean sendEmptyMessageDelayed(int what, long delayMillis) {
+        Message msg = new Message();
+        msg.what = what;
+        return sendMessageAtTime(msg, SystemClock.uptimeMillis() + Math.max(0L, delayMillis));
+    }
+
+    public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
+        msg.target = this;
+        mQueue.enqueueMessage(msg, uptimeMillis);
+        return true;
+    }
+
+    public final void removeCallbacks(Runnable r) {
+        mQueue.removeMessages(this, 0, r);
+    }
+
+    public final void removeMessages(int what) {
+        mQueue.removeMessages(this, what, null);
+    }
+
+    public final boolean hasMessages(int what) {
+        return mQueue.hasMessages(this, what);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+/**
+ * Plain-JVM stand-in mirroring the cost model of the platform MessageQueue: a synchronized singly
+ * linked list ordered by time, which is walked by every insertion, removal and query.
+ */
+public final class MessageQueue {
+    private Message mMessages;
+
+    synchronized void enqueueMessage(Message msg, long when) {
+        msg.when = when;
+        Message prev = null;
+        Message p = mMessages;
+        while (p != null && p.when <= when) {
+            prev = p;
+            p = p.next;
+        }
+        msg.next = p;
+        if (prev == null) {
+            mMessages = msg;
+        } else {
+            prev.next = msg;
+        }
+    }
+
+    synchronized boolean hasMessages(Handler h, int what) {
+        for (Message p = mMessages; p != null; p = p.next) {
+            if (p.target == h && p.callback == null && p.what == what) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized void removeMessages(Handler h, int what, Runnable r) {
+        Message prev = null;
+        Message p = mMessages;
+        while (p != null) {
+            Message next = p.next;
+            if (p.target == h && (r != null ? p.callback == r : p.callback == null && p.what == what)) {
+                if (prev == null) {
+                    mMessages = next;
+                } else {
+                    prev.next = next;
+                }
+            } else {
+                prev = p;
+            }
+            p = next;
+        }
+    }
+}
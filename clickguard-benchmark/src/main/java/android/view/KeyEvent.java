@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view;
+
+/**
+ * Plain-JVM stand-in of the platform KeyEvent, action and key code only.
+ */
+public class KeyEvent {
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_UP = 1;
+    public static final int KEYCODE_DPAD_CENTER = 23;
+    public static final int KEYCODE_ENTER = 66;
+
+    private final int mAction;
+    private final int mKeyCode;
+
+    public KeyEvent(int action, int code) {
+        mAction = action;
+        mKeyCode = code;
+    }
+
+    public final int getAction() {
+        return mAction;
+    }
+
+    public final int getKeyCode() {
+        return mKeyCode;
+    }
+}
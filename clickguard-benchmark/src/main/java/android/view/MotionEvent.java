@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view;
+
+/**
+ * Plain-JVM stand-in of the platform MotionEvent, single pointer only.
+ */
+public final class MotionEvent {
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_UP = 1;
+    public static final int ACTION_MOVE = 2;
+    public static final int ACTION_CANCEL = 3;
+
+    private long mDownTime;
+    private long mEventTime;
+    private int mAction;
+
+    private MotionEvent() {
+    }
+
+    public static MotionEvent obtain(long downTime, long eventTime, int action, float x, float y, int metaState) {
+        MotionEvent event = new MotionEvent();
+        event.mDownTime = downTime;
+        event.mEventTime = eventTime;
+        event.mAction = action;
+        return event;
+    }
+
+    public int getAction() {
+        return mAction;
+    }
+
+    public long getDownTime() {
+        return mDownTime;
+    }
+
+    public long getEventTime() {
+        return mEventTime;
+    }
+
+    public void recycle() {
+    }
+}
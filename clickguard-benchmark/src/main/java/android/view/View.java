@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Plain-JVM stand-in keeping the listener layout of the platform View since ICS, so that ClickGuard
+ * reflects on the same hidden fields as on a device.
+ */
+public class View {
+    public static final int NO_ID = -1;
+
+    ListenerInfo mListenerInfo;
+    ViewParent mParent;
+    private int mId = NO_ID;
+    private boolean mClickable;
+    private boolean mPressed;
+
+    static class ListenerInfo {
+        public OnClickListener mOnClickListener;
+        OnTouchListener mOnTouchListener;
+        OnKeyListener mOnKeyListener;
+        CopyOnWriteArrayList<OnAttachStateChangeListener> mOnAttachStateChangeListeners;
+    }
+
+    public interface OnClickListener {
+        void onClick(View v);
+    }
+
+    public interface OnTouchListener {
+        boolean onTouch(View v, MotionEvent event);
+    }
+
+    public interface OnKeyListener {
+        boolean onKey(View v, int keyCode, KeyEvent event);
+    }
+
+    public interface OnAttachStateChangeListener {
+        void onViewAttachedToWindow(View v);
+
+        void onViewDetachedFromWindow(View v);
+    }
+
+    public int getId() {
+        return mId;
+    }
+
+    public void setId(int id) {
+        mId = id;
+    }
+
+    public boolean isClickable() {
+        return mClickable;
+    }
+
+    public void setClickable(boolean clickable) {
+        mClickable = clickable;
+    }
+
+    public final ViewParent getParent() {
+        return mParent;
+    }
+
+    ListenerInfo getListenerInfo() {
+        if (mListenerInfo == null) {
+            mListenerInfo = new ListenerInfo();
+        }
+        return mListenerInfo;
+    }
+
+    public void setOnClickListener(OnClickListener l) {
+        if (!isClickable()) {
+            setClickable(true);
+        }
+        getListenerInfo().mOnClickListener = l;
+    }
+
+    public boolean hasOnClickListeners() {
+        ListenerInfo li = mListenerInfo;
+        return li != null && li.mOnClickListener != null;
+    }
+
+    public void addOnAttachStateChangeListener(OnAttachStateChangeListener listener) {
+        ListenerInfo li = getListenerInfo();
+        if (li.mOnAttachStateChangeListeners == null) {
+            li.mOnAttachStateChangeListeners
+                    = new CopyOnWriteArrayList<OnAttachStateChangeListener>();
+        }
+        li.mOnAttachStateChangeListeners.add(listener);
+    }
+
+    public void removeOnAttachStateChangeListener(OnAttachStateChangeListener listener) {
+        ListenerInfo li = mListenerInfo;
+        if (li == null || li.mOnAttachStateChangeListeners == null) {
+            return;
+        }
+        li.mOnAttachStateChangeListeners.remove(listener);
+    }
+
+    public void setOnTouchListener(OnTouchListener l) {
+        getListenerInfo().mOnTouchListener = l;
+    }
+
+    public void setOnKeyListener(OnKeyListener l) {
+        getListenerInfo().mOnKeyListener = l;
+    }
+
+    public boolean isPressed() {
+        return mPressed;
+    }
+
+    public void setPressed(boolean pressed) {
+        if (mPressed != pressed) {
+            mPressed = pressed;
+            refreshDrawableState();
+        }
+    }
+
+    public void refreshDrawableState() {
+        drawableStateChanged();
+        invalidate();
+    }
+
+    protected void drawableStateChanged() {
+    }
+
+    public void invalidate() {
+    }
+
+    /**
+     * Like the platform: the OnTouchListener comes first, then press state and click handling.
+     */
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        ListenerInfo li = mListenerInfo;
+        if (li != null && li.mOnTouchListener != null && li.mOnTouchListener.onTouch(this, event)) {
+            return true;
+        }
+        return onTouchEvent(event);
+    }
+
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!isClickable()) {
+            return false;
+        }
+        switch (event.getAction()) {
+            case MotionEvent.ACTION_DOWN:
+                setPressed(true);
+                break;
+            case MotionEvent.ACTION_UP:
+                if (mPressed) {
+                    performClick();
+                }
+                setPressed(false);
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                setPressed(false);
+                break;
+            default:
+                break;
+        }
+        return true;
+    }
+
+    public boolean performClick() {
+        ListenerInfo li = mListenerInfo;
+        if (li != null && li.mOnClickListener != null) {
+            li.mOnClickListener.onClick(this);
+            return true;
+        }
+        return false;
+    }
+}
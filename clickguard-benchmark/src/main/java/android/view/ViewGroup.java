@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view;
+
+import java.util.ArrayList;
+
+/**
+ * Plain-JVM stand-in.
+ */
+public class ViewGroup extends View implements ViewParent {
+    private final ArrayList<View> mChildren = new ArrayList<View>();
+
+    public void addView(View child) {
+        child.mParent = this;
+        mChildren.add(child);
+    }
+
+    public int getChildCount() {
+        return mChildren.size();
+    }
+
+    public View getChildAt(int index) {
+        return index >= 0 && index < mChildren.size() ? mChildren.get(index) : null;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.lang.model.element.TypeElement;
+
+/**
+ * The {@code @Guarded} methods of one target class, and the source of its binder.
+ */
+final class BindingClass {
+    static final String BINDER_SUFFIX = "_ClickGuard";
+
+    private final TypeElement mTarget;
+    private final String mPackageName;
+    private final String mBinderName;
+    private final List<MethodBinding> mMethods = new ArrayList<MethodBinding>();
+    private String mParentBinderName;
+
+    BindingClass(TypeElement target, String packageName) {
+        mTarget = target;
+        mPackageName = packageName;
+        mBinderName = binderNameOf(target, packageName);
+    }
+
+    private static String binderNameOf(TypeElement type, String packageName) {
+        String className = type.getQualifiedName().toString();
+        if (!packageName.isEmpty()) {
+            className = className.substring(packageName.length() + 1);
+        }
+        return className.replace('.', '$') + BINDER_SUFFIX;
+    }
+
+    /**
+     * @return The qualified name of the binder of {@code type}, whether it exists or not.
+     */
+    static String qualifiedBinderNameOf(TypeElement type, String packageName) {
+        String binderName = binderNameOf(type, packageName);
+        return packageName.isEmpty() ? binderName : packageName + "." + binderName;
+    }
+
+    TypeElement getTarget() {
+        return mTarget;
+    }
+
+    String getQualifiedBinderName() {
+        return mPackageName.isEmpty() ? mBinderName : mPackageName + "." + mBinderName;
+    }
+
+    /**
+     * @param parentBinderName The qualified name of the binder of the closest superclass with
+     *                         {@code @Guarded} methods, or {@code null}.
+     */
+    void setParentBinder(String parentBinderName) {
+        mParentBinderName = parentBinderName;
+    }
+
+    void addMethod(MethodBinding method) {
+        mMethods.add(method);
+    }
+
+    /**
+     * @return The name of the method already bound to {@code id}, or {@code null}.
+     */
+    String findMethodById(int id) {
+        for (MethodBinding method : mMethods) {
+            for (int i : method.mIds) {
+                if (i == id) {
+                    return method.mName;
+                }
+            }
+        }
+        return null;
+    }
+
+    String brewJava() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("// Generated code from ClickGuard. Do not modify!\n");
+        if (!mPackageName.isEmpty()) {
+            builder.append("package ").append(mPackageName).append(";\n\n");
+        }
+        builder.append("import android.view.View;\n");
+        builder.append("import clickguard.ClickGuard;\n\n");
+        builder.append("public final class ").append(mBinderName).append(" {\n");
+        builder.append("    private ").append(mBinderName).append("() {\n");
+        builder.append("    }\n\n");
+        builder.append("    public static void bind(final ").append(mTarget.getQualifiedName())
+                .append(" target, View source) {\n");
+        if (mParentBinderName != null) {
+            builder.append("        ").append(mParentBinderName).append(".bind(target, source);\n");
+        }
+        for (int i = 0; i < mMethods.size(); i++) {
+            emitMethod(builder, mMethods.get(i), i);
+        }
+        builder.append("    }\n\n");
+        builder.append("    private static View findView(View source, int id, String method) {\n");
+        builder.append("        View view = source.findViewById(id);\n");
+        builder.append("        if (view == null) {\n");
+        builder.append("            throw new IllegalStateException(\"View with id 0x\" + Integer.toHexString(id)\n");
+        builder.append("                    + \" for @Guarded method \" + method + \"() not found!\");\n");
+        builder.append("        }\n");
+        builder.append("        return view;\n");
+        builder.append("    }\n");
+        builder.append("}\n");
+        return builder.toString();
+    }
+
+    private static void emitMethod(StringBuilder builder, MethodBinding method, int index) {
+        final String guard = "guard" + index;
+        builder.append("        final ClickGuard ").append(guard).append(" = ClickGuard.newGuard(")
+                .append(method.mPeriodMillis).append("L);\n");
+        for (int i = 0; i < method.mIds.length; i++) {
+            // onClicked() isn't given the View, so every View gets a listener capturing it.
+            final String view = "view" + index + "_" + i;
+            final String call = "target." + method.mName + (method.mPassView ? "(" + view + ")" : "()");
+            builder.append("        final View ").append(view).append(" = findView(source, 0x")
+                    .append(Integer.toHexString(method.mIds[i])).append(", \"").append(method.mName)
+                    .append("\");\n");
+            builder.append("        ").append(view).append(".setOnClickListener(new ClickGuard.GuardedOnClickListener(")
+                    .append(guard).append(") {\n");
+            builder.append("            @Override\n");
+            builder.append("            public boolean onClicked() {\n");
+            if (method.mReturnsBoolean) {
+                builder.append("                return ").append(call).append(";\n");
+            } else {
+                builder.append("                ").append(call).append(";\n");
+                builder.append("                return true;\n");
+            }
+            builder.append("            }\n");
+            builder.append("        });\n");
+        }
+    }
+
+    /**
+     * A {@code @Guarded} method and the Views it is bound to.
+     */
+    static final class MethodBinding {
+        final String mName;
+        final int[] mIds;
+        final long mPeriodMillis;
+        final boolean mPassView;
+        final boolean mReturnsBoolean;
+
+        MethodBinding(String name, int[] ids, long periodMillis, boolean passView, boolean returnsBoolean) {
+            mName = name;
+            mIds = ids;
+            mPeriodMillis = periodMillis;
+            mPassView = passView;
+            mReturnsBoolean = returnsBoolean;
+        }
+    }
+}
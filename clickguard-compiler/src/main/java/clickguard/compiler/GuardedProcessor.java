@@ -0,0 +1,272 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Annotation processor generating a {@code <Target>_ClickGuard} binder for every class with
+ * {@code @Guarded} methods.
+ * <p/>
+ * The annotation is looked up by name, so this processor doesn't depend on the Android library.
+ * Misconfigured methods are reported as compile errors.
+ */
+public final class GuardedProcessor extends AbstractProcessor {
+    static final String GUARDED_TYPE = "clickguard.Guarded";
+    static final String VIEW_TYPE = "android.view.View";
+    static final long DEFAULT_WATCH_PERIOD_MILLIS = 1000L;
+
+    private Elements mElements;
+    private Types mTypes;
+    private Filer mFiler;
+    private Messager mMessager;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment env) {
+        super.init(env);
+        mElements = env.getElementUtils();
+        mTypes = env.getTypeUtils();
+        mFiler = env.getFiler();
+        mMessager = env.getMessager();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(GUARDED_TYPE);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement guarded = mElements.getTypeElement(GUARDED_TYPE);
+        if (guarded == null || !annotations.contains(guarded)) {
+            return false;
+        }
+        Map<TypeElement, BindingClass> bindings = new LinkedHashMap<TypeElement, BindingClass>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(guarded)) {
+            parseGuarded(element, guarded, bindings);
+        }
+        for (BindingClass binding : bindings.values()) {
+            binding.setParentBinder(findParentBinder(binding.getTarget(), bindings));
+        }
+        for (BindingClass binding : bindings.values()) {
+            write(binding);
+        }
+        return true;
+    }
+
+    private void parseGuarded(Element element, TypeElement guarded, Map<TypeElement, BindingClass> bindings) {
+        if (element.getKind() != ElementKind.METHOD) {
+            error(element, "@Guarded can only be applied to methods.");
+            return;
+        }
+        ExecutableElement method = (ExecutableElement) element;
+        TypeElement target = (TypeElement) method.getEnclosingElement();
+        String name = method.getSimpleName().toString();
+        boolean valid = isAccessible(method, target);
+
+        Set<Modifier> modifiers = method.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)) {
+            error(method, "@Guarded method %s() must not be private or static.", name);
+            valid = false;
+        }
+        List<? extends VariableElement> parameters = method.getParameters();
+        boolean passView = parameters.size() == 1;
+        if (parameters.size() > 1 || (passView && !isView(parameters.get(0).asType()))) {
+            error(method, "@Guarded method %s() can take no parameter or a single %s.", name, VIEW_TYPE);
+            valid = false;
+        }
+        TypeKind returnKind = method.getReturnType().getKind();
+        if (returnKind != TypeKind.VOID && returnKind != TypeKind.BOOLEAN) {
+            error(method, "@Guarded method %s() must return void or boolean.", name);
+            valid = false;
+        }
+
+        AnnotationMirror mirror = getAnnotationMirror(method, guarded);
+        int[] ids = getIds(mirror);
+        long period = getPeriod(mirror);
+        if (ids.length == 0) {
+            error(method, "@Guarded method %s() must have at least one id.", name);
+            valid = false;
+        }
+        if (period <= 0) {
+            error(method, "@Guarded method %s() must have a positive period.", name);
+            valid = false;
+        }
+        if (!valid) {
+            return;
+        }
+
+        BindingClass binding = bindings.get(target);
+        if (binding == null) {
+            binding = new BindingClass(target, mElements.getPackageOf(target).getQualifiedName().toString());
+            bindings.put(target, binding);
+        }
+        for (int id : ids) {
+            String existing = binding.findMethodById(id);
+            if (existing != null) {
+                error(method, "Id 0x%s of @Guarded method %s() is already bound to method %s().",
+                        Integer.toHexString(id), name, existing);
+                return;
+            }
+        }
+        binding.addMethod(new BindingClass.MethodBinding(name, ids, period, passView,
+                returnKind == TypeKind.BOOLEAN));
+    }
+
+    private boolean isAccessible(ExecutableElement method, TypeElement target) {
+        if (target.getKind() != ElementKind.CLASS) {
+            error(method, "@Guarded method %s() must be declared in a class.", method.getSimpleName());
+            return false;
+        }
+        if (!target.getTypeParameters().isEmpty()) {
+            error(method, "@Guarded method %s() must not be declared in a generic class.",
+                    method.getSimpleName());
+            return false;
+        }
+        for (Element e = target; e.getKind().isClass() || e.getKind().isInterface(); e = e.getEnclosingElement()) {
+            TypeElement type = (TypeElement) e;
+            if (type.getModifiers().contains(Modifier.PRIVATE)) {
+                error(method, "@Guarded method %s() must not be declared in a private class.",
+                        method.getSimpleName());
+                return false;
+            }
+            if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+                error(method, "@Guarded method %s() must not be declared in a local or anonymous class.",
+                        method.getSimpleName());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isView(TypeMirror type) {
+        TypeElement view = mElements.getTypeElement(VIEW_TYPE);
+        return view != null && mTypes.isSameType(type, view.asType());
+    }
+
+    /**
+     * @return The qualified name of the binder of the closest superclass with {@code @Guarded}
+     * methods, or {@code null}. Superclasses bound in this round are found in {@code bindings}, the
+     * ones bound in an earlier round or in another module by their generated binder.
+     */
+    private String findParentBinder(TypeElement type, Map<TypeElement, BindingClass> bindings) {
+        TypeMirror superclass = type.getSuperclass();
+        while (superclass.getKind() == TypeKind.DECLARED) {
+            TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+            BindingClass parent = bindings.get(element);
+            if (parent != null) {
+                return parent.getQualifiedBinderName();
+            }
+            String binderName = BindingClass.qualifiedBinderNameOf(element,
+                    mElements.getPackageOf(element).getQualifiedName().toString());
+            if (mElements.getTypeElement(binderName) != null) {
+                return binderName;
+            }
+            superclass = element.getSuperclass();
+        }
+        return null;
+    }
+
+    private static AnnotationMirror getAnnotationMirror(Element element, TypeElement annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (mirror.getAnnotationType().asElement().equals(annotation)) {
+                return mirror;
+            }
+        }
+        throw new IllegalStateException("Can't find @" + annotation.getSimpleName() + " on " + element);
+    }
+
+    private static int[] getIds(AnnotationMirror mirror) {
+        Object value = getValue(mirror, "value");
+        if (!(value instanceof List)) {
+            return new int[0];
+        }
+        List<?> values = (List<?>) value;
+        int[] ids = new int[values.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (Integer) ((AnnotationValue) values.get(i)).getValue();
+        }
+        return ids;
+    }
+
+    private static long getPeriod(AnnotationMirror mirror) {
+        Object value = getValue(mirror, "period");
+        return value instanceof Long ? (Long) value : DEFAULT_WATCH_PERIOD_MILLIS;
+    }
+
+    private static Object getValue(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    private void write(BindingClass binding) {
+        try {
+            JavaFileObject file = mFiler.createSourceFile(binding.getQualifiedBinderName(), binding.getTarget());
+            Writer writer = file.openWriter();
+            try {
+                writer.write(binding.brewJava());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            error(binding.getTarget(), "Unable to write binder for %s: %s", binding.getTarget(), e.getMessage());
+        }
+    }
+
+    private void error(Element element, String message, Object... args) {
+        mMessager.printMessage(Diagnostic.Kind.ERROR, String.format(message, args), element);
+    }
+}
@@ -0,0 +1,288 @@
+package clickguard.compiler;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class GuardedProcessorTest {
+
+    private static final JavaFileObject VIEW = source("android.view.View", ""
+            + "package android.view;\n"
+            + "public class View {\n"
+            + "    public interface OnClickListener {\n"
+            + "        void onClick(View v);\n"
+            + "    }\n"
+            + "    public View findViewById(int id) {\n"
+            + "        return null;\n"
+            + "    }\n"
+            + "    public void setOnClickListener(OnClickListener l) {\n"
+            + "    }\n"
+            + "}\n");
+
+    private static final JavaFileObject CLICK_GUARD = source("clickguard.ClickGuard", ""
+            + "package clickguard;\n"
+            + "import android.view.View;\n"
+            + "public abstract class ClickGuard {\n"
+            + "    public static ClickGuard newGuard(long watchPeriodMillis) {\n"
+            + "        return null;\n"
+            + "    }\n"
+            + "    public static abstract class GuardedOnClickListener implements View.OnClickListener {\n"
+            + "        public GuardedOnClickListener(ClickGuard guard) {\n"
+            + "        }\n"
+            + "        public final void onClick(View v) {\n"
+            + "        }\n"
+            + "        public abstract boolean onClicked();\n"
+            + "    }\n"
+            + "}\n");
+
+    private static final JavaFileObject GUARDED = source("clickguard.Guarded", ""
+            + "package clickguard;\n"
+            + "public @interface Guarded {\n"
+            + "    int[] value();\n"
+            + "    long period() default 1000L;\n"
+            + "}\n");
+
+    private static class Result {
+        final Map<String, String> generated = new HashMap<String, String>();
+        final List<String> errors = new ArrayList<String>();
+    }
+
+    @Test
+    public void generatesBinder() {
+        Result result = process(source("test.MainActivity", ""
+                + "package test;\n"
+                + "import android.view.View;\n"
+                + "import clickguard.Guarded;\n"
+                + "public class MainActivity {\n"
+                + "    @Guarded(value = {1, 2}, period = 600)\n"
+                + "    void onSubmit(View view) {\n"
+                + "    }\n"
+                + "    @Guarded(3)\n"
+                + "    boolean onCancel() {\n"
+                + "        return true;\n"
+                + "    }\n"
+                + "}\n"));
+
+        assertEquals(0, result.errors.size());
+        String binder = result.generated.get("test.MainActivity_ClickGuard");
+        assertTrue(binder.contains("public static void bind(final test.MainActivity target, View source)"));
+        assertTrue(binder.contains("ClickGuard.newGuard(600L)"));
+        assertTrue(binder.contains("final View view0_0 = findView(source, 0x1, \"onSubmit\");"));
+        assertTrue(binder.contains("final View view0_1 = findView(source, 0x2, \"onSubmit\");"));
+        assertTrue(binder.contains("view0_1.setOnClickListener(new ClickGuard.GuardedOnClickListener(guard0) {"));
+        assertTrue(binder.contains("target.onSubmit(view0_1);\n                return true;"));
+        assertTrue(binder.contains("ClickGuard.newGuard(1000L)"));
+        assertTrue(binder.contains("final View view1_0 = findView(source, 0x3, \"onCancel\");"));
+    }
+
+    @Test
+    public void generatesGuardedListenerReturningResultOfBooleanMethod() {
+        Result result = process(source("test.MainActivity", ""
+                + "package test;\n"
+                + "import android.view.View;\n"
+                + "import clickguard.Guarded;\n"
+                + "public class MainActivity {\n"
+                + "    @Guarded(1)\n"
+                + "    boolean onSubmit(View view) {\n"
+                + "        return false;\n"
+                + "    }\n"
+                + "}\n"));
+
+        assertEquals(0, result.errors.size());
+        String binder = result.generated.get("test.MainActivity_ClickGuard");
+        // The rejected click is undone by the listener itself, so it is never counted as accepted.
+        assertTrue(binder.contains("view0_0.setOnClickListener(new ClickGuard.GuardedOnClickListener(guard0) {"));
+        assertTrue(binder.contains("public boolean onClicked() {\n                return target.onSubmit(view0_0);\n"));
+        assertFalse(binder.contains("cancelWatch"));
+    }
+
+    @Test
+    public void generatesBinderOfNestedClassCallingParentBinder() {
+        Result result = process(source("test.Outer", ""
+                + "package test;\n"
+                + "import clickguard.Guarded;\n"
+                + "public class Outer {\n"
+                + "    public static class Base {\n"
+                + "        @Guarded(1)\n"
+                + "        void onBase() {\n"
+                + "        }\n"
+                + "    }\n"
+                + "    public static class Child extends Base {\n"
+                + "        @Guarded(2)\n"
+                + "        void onChild() {\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n"));
+
+        assertEquals(0, result.errors.size());
+        assertTrue(result.generated.containsKey("test.Outer$Base_ClickGuard"));
+        String binder = result.generated.get("test.Outer$Child_ClickGuard");
+        assertTrue(binder.contains("public static void bind(final test.Outer.Child target, View source)"));
+        assertTrue(binder.contains("test.Outer$Base_ClickGuard.bind(target, source);"));
+    }
+
+    @Test
+    public void generatesBinderCallingParentBinderFromClasspath() {
+        // The parent and its binder come from a library, so the parent isn't bound in this round.
+        Result result = process(source("lib.Base", ""
+                + "package lib;\n"
+                + "public class Base {\n"
+                + "}\n"), source("lib.Base_ClickGuard", ""
+                + "package lib;\n"
+                + "import android.view.View;\n"
+                + "public final class Base_ClickGuard {\n"
+                + "    public static void bind(Base target, View source) {\n"
+                + "    }\n"
+                + "}\n"), source("test.Middle", ""
+                + "package test;\n"
+                + "public class Middle extends lib.Base {\n"
+                + "}\n"), source("test.Child", ""
+                + "package test;\n"
+                + "import clickguard.Guarded;\n"
+                + "public class Child extends Middle {\n"
+                + "    @Guarded(2)\n"
+                + "    void onChild() {\n"
+                + "    }\n"
+                + "}\n"));
+
+        assertEquals(0, result.errors.size());
+        String binder = result.generated.get("test.Child_ClickGuard");
+        assertTrue(binder.contains("lib.Base_ClickGuard.bind(target, source);"));
+    }
+
+    @Test
+    public void failsOnMisconfiguredMethods() {
+        Result result = process(source("test.Broken", ""
+                + "package test;\n"
+                + "import clickguard.Guarded;\n"
+                + "public class Broken {\n"
+                + "    @Guarded(1)\n"
+                + "    private void onPrivate() {\n"
+                + "    }\n"
+                + "    @Guarded(2)\n"
+                + "    void onWrongParameter(String s) {\n"
+                + "    }\n"
+                + "    @Guarded(3)\n"
+                + "    int onWrongReturn() {\n"
+                + "        return 0;\n"
+                + "    }\n"
+                + "    @Guarded(value = 4, period = 0)\n"
+                + "    void onZeroPeriod() {\n"
+                + "    }\n"
+                + "    @Guarded({})\n"
+                + "    void onNoId() {\n"
+                + "    }\n"
+                + "    @Guarded(5)\n"
+                + "    void onFive() {\n"
+                + "    }\n"
+                + "    @Guarded(5)\n"
+                + "    void onFiveAgain() {\n"
+                + "    }\n"
+                + "}\n"));
+
+        assertEquals(6, result.errors.size());
+        assertTrue(result.errors.get(0).contains("onPrivate() must not be private or static"));
+        assertTrue(result.errors.get(1).contains("onWrongParameter() can take no parameter"));
+        assertTrue(result.errors.get(2).contains("onWrongReturn() must return void or boolean"));
+        assertTrue(result.errors.get(3).contains("onZeroPeriod() must have a positive period"));
+        assertTrue(result.errors.get(4).contains("onNoId() must have at least one id"));
+        assertTrue(result.errors.get(5).contains("is already bound to method onFive()"));
+    }
+
+    @Test
+    public void failsOnPrivateClass() {
+        Result result = process(source("test.Outer", ""
+                + "package test;\n"
+                + "import clickguard.Guarded;\n"
+                + "public class Outer {\n"
+                + "    private static class Hidden {\n"
+                + "        @Guarded(1)\n"
+                + "        void onClick() {\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n"));
+
+        assertEquals(1, result.errors.size());
+        assertTrue(result.errors.get(0).contains("must not be declared in a private class"));
+    }
+
+    private static Result process(JavaFileObject... sources) {
+        final Result result = new Result();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, Locale.ROOT, null);
+        JavaFileManager fileManager = new ForwardingJavaFileManager<JavaFileManager>(standard) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, final String className,
+                                                       final JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/')
+                        + kind.extension), kind) {
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        // Generated sources are parsed again in the next round.
+                        return result.generated.get(className);
+                    }
+
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return new ByteArrayOutputStream() {
+                            @Override
+                            public void close() throws IOException {
+                                super.close();
+                                if (kind == JavaFileObject.Kind.SOURCE) {
+                                    result.generated.put(className, toString("UTF-8"));
+                                }
+                            }
+                        };
+                    }
+                };
+            }
+        };
+        List<JavaFileObject> units = new ArrayList<JavaFileObject>(Arrays.asList(VIEW, CLICK_GUARD, GUARDED));
+        units.addAll(Arrays.asList(sources));
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                null, null, units);
+        task.setProcessors(Arrays.asList(new GuardedProcessor()));
+        task.call();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                result.errors.add(diagnostic.getMessage(Locale.ROOT));
+            }
+        }
+        return result;
+    }
+
+    private static JavaFileObject source(String className, final String code) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/')
+                + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+}
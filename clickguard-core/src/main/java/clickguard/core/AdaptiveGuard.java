@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.core;
+
+/**
+ * Guard whose watch period adapts to the observed intervals between repeated events.
+ * <p/>
+ * Intervals shorter than the maximum watch period are taken as accidental repeats. The watch
+ * period is kept at a percentile of them, as estimated in constant memory, and bounded by the
+ * minimum and the maximum watch period. Until enough events are observed, the watch period is the
+ * maximum one. Events are observed through {@link #tryWatch()}.
+ */
+public final class AdaptiveGuard extends Guard {
+    private static final long NONE = Long.MIN_VALUE;
+    private final StreamingQuantile mIntervals;
+    private final long mMinWatchPeriodMillis;
+    private final long mMaxWatchPeriodMillis;
+    private long mWatchPeriodMillis;
+    private long mWatchStartMillis = NONE;
+    private long mLastEventMillis = NONE;
+
+    /**
+     * @param clock                The Clock of the Guard.
+     * @param percentile           Share of accidental repeats to cover, in (0, 1).
+     * @param minWatchPeriodMillis The lower bound of the watch period.
+     * @param maxWatchPeriodMillis The upper bound of the watch period.
+     */
+    public AdaptiveGuard(Clock clock, double percentile, long minWatchPeriodMillis, long maxWatchPeriodMillis) {
+        super(clock);
+        if (minWatchPeriodMillis < 0 || maxWatchPeriodMillis < minWatchPeriodMillis) {
+            throw new IllegalArgumentException("Illegal watch period bounds: ["
+                    + minWatchPeriodMillis + ", " + maxWatchPeriodMillis + "]");
+        }
+        mIntervals = new StreamingQuantile(percentile);
+        mMinWatchPeriodMillis = minWatchPeriodMillis;
+        mMaxWatchPeriodMillis = maxWatchPeriodMillis;
+        mWatchPeriodMillis = maxWatchPeriodMillis;
+    }
+
+    @Override
+    public void watch() {
+        mWatchStartMillis = mClock.uptimeMillis();
+    }
+
+    @Override
+    public void rest() {
+        mWatchStartMillis = NONE;
+    }
+
+    @Override
+    public void rearm(long claim) {
+        if (mWatchStartMillis != NONE) {
+            watch();
+        }
+    }
+
+    @Override
+    public boolean isWatching() {
+        return isWatching(mClock.uptimeMillis());
+    }
+
+    private boolean isWatching(long now) {
+        return mWatchStartMillis != NONE && now - mWatchStartMillis < mWatchPeriodMillis;
+    }
+
+    @Override
+    public long getWatchPeriodMillis() {
+        return mWatchPeriodMillis;
+    }
+
+    @Override
+    public boolean tryWatch() {
+        final long now = mClock.uptimeMillis();
+        observe(now);
+        if (isWatching(now)) {
+            return false;
+        }
+        mWatchStartMillis = now;
+        return true;
+    }
+
+    private void observe(long now) {
+        final long lastEvent = mLastEventMillis;
+        mLastEventMillis = now;
+        if (lastEvent == NONE) {
+            return;
+        }
+        final long interval = now - lastEvent;
+        if (interval >= mMaxWatchPeriodMillis) {
+            // A deliberate event.
+            return;
+        }
+        mIntervals.add(interval);
+        final double estimate = mIntervals.estimate();
+        if (!Double.isNaN(estimate)) {
+            // Cover the estimated interval itself, the watch period is exclusive.
+            final long period = (long) Math.ceil(estimate) + 1L;
+            mWatchPeriodMillis = Math.max(mMinWatchPeriodMillis, Math.min(mMaxWatchPeriodMillis, period));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.core;
+
+/**
+ * Source of the current time used by the guards.
+ * <p/>
+ * Only differences between readings are meaningful. The time is never negative and never goes
+ * backwards.
+ */
+public interface Clock {
+    /**
+     * Clock based on {@link System#nanoTime()}, counting from the first use of this Clock.
+     */
+    Clock SYSTEM = new NanoClock();
+
+    /**
+     * @return The current time in millis.
+     */
+    long uptimeMillis();
+}
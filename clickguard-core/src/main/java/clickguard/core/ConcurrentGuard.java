@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Guard which keeps its state as an atomic expiry timestamp. It can be used from any thread, and
+ * {@link #tryClaim()} lets exactly one caller win per watch period.
+ * <p/>
+ * The state also counts the watch periods started, so every claim is distinct and
+ * {@link #cancelClaim(long)} and {@link #rearm(long)} act only on the watch period the claim
+ * started, even if another caller has replaced it since, ending on the very same tick. The expiry
+ * timestamp keeps its upper 48 bits, which hold any uptime.
+ */
+public final class ConcurrentGuard extends Guard {
+    private static final int SEQUENCE_BITS = 16;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long NOT_WATCHING = Long.MIN_VALUE >> SEQUENCE_BITS;
+    private final AtomicLong mState = new AtomicLong(encode(NOT_WATCHING, 0));
+    private final long mWatchPeriodMillis;
+    // Claim of the last successful tryWatch(), for cancelWatch().
+    private volatile long mLastClaim = NO_CLAIM;
+
+    public ConcurrentGuard(Clock clock, long watchPeriodMillis) {
+        super(clock);
+        mWatchPeriodMillis = watchPeriodMillis;
+    }
+
+    @Override
+    public void watch() {
+        replace(mClock.uptimeMillis() + mWatchPeriodMillis);
+    }
+
+    @Override
+    public void rest() {
+        replace(NOT_WATCHING);
+    }
+
+    @Override
+    public boolean isWatching() {
+        return mClock.uptimeMillis() < watchEndOf(mState.get());
+    }
+
+    @Override
+    public long getWatchPeriodMillis() {
+        return mWatchPeriodMillis;
+    }
+
+    @Override
+    public boolean tryWatch() {
+        return tryClaim() != NO_CLAIM;
+    }
+
+    @Override
+    public long tryClaim() {
+        final long now = mClock.uptimeMillis();
+        final long state = mState.get();
+        final long claim = encode(now + mWatchPeriodMillis, sequenceOf(state) + 1);
+        // Losing the race means another caller has just started watching.
+        if (now < watchEndOf(state) || !mState.compareAndSet(state, claim)) {
+            return NO_CLAIM;
+        }
+        mLastClaim = claim;
+        return claim;
+    }
+
+    /**
+     * Undo the last successful {@link #tryWatch()} of any thread. Callers sharing the Guard
+     * between threads should use {@link #tryClaim()} and {@link #cancelClaim(long)} instead.
+     */
+    @Override
+    public void cancelWatch() {
+        cancelClaim(mLastClaim);
+    }
+
+    /**
+     * Undo the watch period started by {@code claim}. Nothing is undone if it has been replaced
+     * since, like by a newer period won by another thread.
+     */
+    @Override
+    public void cancelClaim(long claim) {
+        if (claim != NO_CLAIM) {
+            mState.compareAndSet(claim, encode(NOT_WATCHING, sequenceOf(claim)));
+        }
+    }
+
+    /**
+     * Restart the watch period started by {@code claim} from now. Nothing is restarted if it has
+     * been replaced since.
+     */
+    @Override
+    public void rearm(long claim) {
+        if (claim != NO_CLAIM) {
+            mState.compareAndSet(claim, encode(mClock.uptimeMillis() + mWatchPeriodMillis,
+                    sequenceOf(claim)));
+        }
+    }
+
+    private void replace(long watchEnd) {
+        long state;
+        do {
+            state = mState.get();
+        } while (!mState.compareAndSet(state, encode(watchEnd, sequenceOf(state) + 1)));
+    }
+
+    private static long encode(long watchEnd, long sequence) {
+        return watchEnd << SEQUENCE_BITS | sequence & SEQUENCE_MASK;
+    }
+
+    private static long watchEndOf(long state) {
+        return state >> SEQUENCE_BITS;
+    }
+
+    private static long sequenceOf(long state) {
+        return state & SEQUENCE_MASK;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.core;
+
+/**
+ * State machine deciding which clicks, or any other repeated events, are accepted.
+ * <p/>
+ * A Guard is either resting, when the next event is accepted, or watching, when events are
+ * ignored. Accepting an event lets the Guard start watching. All the time readings go through a
+ * {@link Clock}, so a Guard doesn't depend on any platform and can be driven in virtual time.
+ * <p/>
+ * Unless stated otherwise, a Guard is confined to one thread.
+ */
+public abstract class Guard {
+    /**
+     * Claim returned by {@link #tryClaim()} when the event isn't accepted.
+     */
+    public static final long NO_CLAIM = Long.MIN_VALUE;
+
+    protected final Clock mClock;
+
+    protected Guard(Clock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock shouldn't be null!");
+        }
+        mClock = clock;
+    }
+
+    /**
+     * Let the Guard to start watching.
+     */
+    public abstract void watch();
+
+    /**
+     * Let the Guard to have a rest.
+     */
+    public abstract void rest();
+
+    /**
+     * Determine whether the Guard is on duty.
+     *
+     * @return Whether the Guard is watching.
+     */
+    public abstract boolean isWatching();
+
+    /**
+     * @return The current watch period in millis.
+     */
+    public abstract long getWatchPeriodMillis();
+
+    /**
+     * Let the Guard to start watching if it isn't watching. This is what accepting an event means.
+     * <p/>
+     * The default implementation is a plain {@link #isWatching()} check followed by {@link #watch()}.
+     *
+     * @return Whether the Guard started watching because of this call.
+     */
+    public boolean tryWatch() {
+        if (isWatching()) {
+            return false;
+        }
+        watch();
+        return true;
+    }
+
+    /**
+     * Undo the last successful {@link #tryWatch()}, as if its event hadn't been accepted.
+     * <p/>
+     * The default implementation is {@link #rest()}, which is exact for Guards accepting one event
+     * per watch period. Guards accepting several events, or arming other Guards, undo only what
+     * that call did.
+     */
+    public void cancelWatch() {
+        rest();
+    }
+
+    /**
+     * Like {@link #tryWatch()}, but the accepted event is identified by the returned claim, which
+     * is handed back to {@link #cancelClaim(long)} and {@link #rearm(long)} once it is handled.
+     * <p/>
+     * The default implementation returns {@code 0} if {@link #tryWatch()} succeeds. Guards shared
+     * between threads return distinct claims, so that the events of different threads can't be
+     * mistaken for each other.
+     *
+     * @return The claim of the accepted event, or {@link #NO_CLAIM} if it isn't accepted.
+     */
+    public long tryClaim() {
+        return tryWatch() ? 0L : NO_CLAIM;
+    }
+
+    /**
+     * Undo the acceptance of the event claimed by {@code claim}, as if it hadn't been accepted.
+     * <p/>
+     * The default implementation is {@link #cancelWatch()}.
+     *
+     * @param claim The claim returned by {@link #tryClaim()}.
+     */
+    public void cancelClaim(long claim) {
+        cancelWatch();
+    }
+
+    /**
+     * Restart the watch period started by the event claimed by {@code claim}, once the event has
+     * been handled, unless it has been cancelled or the Guard has rested since. The watch period
+     * then covers a handler slower than the period itself.
+     * <p/>
+     * The default implementation does nothing. Guards watching for a fixed period from the
+     * accepted event restart it.
+     *
+     * @param claim The claim returned by {@link #tryClaim()}.
+     */
+    public void rearm(long claim) {
+    }
+
+    /**
+     * @return The Clock of this Guard.
+     */
+    public final Clock getClock() {
+        return mClock;
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.core;
+
+/**
+ * Guard of events per key, like the item id of a list.
+ * <p/>
+ * Each key is watched separately, as if it had its own {@link Guard}. Instead of allocating a
+ * Guard per key, the watch period of every key is kept in an open-addressing table of primitive
+ * longs with a bounded capacity. Expired keys are evicted lazily. When the table is full, the key
+ * whose watch period ends first is evicted.
+ * <p/>
+ * The slots are also linked in the order their watch periods end, which is the order they were
+ * watched in, as every key has the same watch period. Finding the key to evict is then a look at
+ * the head of that list, so every operation costs O(1) even when the table is full.
+ * <p/>
+ * A KeyedGuard is confined to one thread, and its Clock must never go back.
+ */
+public final class KeyedGuard {
+
+    // Watch end of an empty slot. Watch ends are always positive, as the time is never negative.
+    private static final long EMPTY = 0L;
+    // End of the list of slots.
+    private static final int NONE = -1;
+
+    private final Clock mClock;
+    private final long mWatchPeriodMillis;
+    private final int mCapacity;
+    private final int mMask;
+    private final long[] mKeys;
+    private final long[] mWatchEnds;
+    // Links of the slots in watch end order, from the head which ends first to the tail.
+    private final int[] mPrevs;
+    private final int[] mNexts;
+    private int mHead = NONE;
+    private int mTail = NONE;
+    private int mSize;
+
+    /**
+     * @param clock             The Clock of the Guard.
+     * @param watchPeriodMillis The watch period of every key.
+     * @param capacity          The maximum number of keys watched at the same time.
+     */
+    public KeyedGuard(Clock clock, long watchPeriodMillis, int capacity) {
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock shouldn't be null!");
+        }
+        if (watchPeriodMillis <= 0) {
+            throw new IllegalArgumentException("Watch period should be positive!");
+        }
+        if (capacity <= 0 || capacity > (1 << 28)) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        mClock = clock;
+        mWatchPeriodMillis = watchPeriodMillis;
+        mCapacity = capacity;
+        // Keep the load factor under 0.5 so that probe sequences stay short.
+        int tableSize = Integer.highestOneBit(capacity) << 2;
+        mMask = tableSize - 1;
+        mKeys = new long[tableSize];
+        mWatchEnds = new long[tableSize];
+        mPrevs = new int[tableSize];
+        mNexts = new int[tableSize];
+    }
+
+    /**
+     * Let the Guard to start watching {@code key}.
+     */
+    public void watch(long key) {
+        final long now = mClock.uptimeMillis();
+        int index = indexOf(key);
+        if (index < 0) {
+            insert(key, now + mWatchPeriodMillis);
+        } else {
+            rewatchAt(index, now + mWatchPeriodMillis);
+        }
+    }
+
+    /**
+     * Let the Guard to start watching {@code key} if {@code key} isn't watched.
+     *
+     * @return Whether the Guard started watching {@code key} because of this call.
+     */
+    public boolean tryWatch(long key) {
+        final long now = mClock.uptimeMillis();
+        int index = indexOf(key);
+        if (index < 0) {
+            insert(key, now + mWatchPeriodMillis);
+        } else if (now < mWatchEnds[index]) {
+            return false;
+        } else {
+            rewatchAt(index, now + mWatchPeriodMillis);
+        }
+        return true;
+    }
+
+    /**
+     * Let the Guard to have a rest on {@code key}.
+     */
+    public void rest(long key) {
+        final int index = indexOf(key);
+        if (index >= 0) {
+            removeAt(index);
+        }
+    }
+
+    /**
+     * Let the Guard to have a rest on all the keys.
+     */
+    public void rest() {
+        for (int i = 0; i <= mMask; i++) {
+            mKeys[i] = 0L;
+            mWatchEnds[i] = EMPTY;
+        }
+        mHead = NONE;
+        mTail = NONE;
+        mSize = 0;
+    }
+
+    /**
+     * Determine whether {@code key} is watched.
+     *
+     * @return Whether {@code key} is watched.
+     */
+    public boolean isWatching(long key) {
+        final int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        if (mClock.uptimeMillis() < mWatchEnds[index]) {
+            return true;
+        }
+        removeAt(index);
+        return false;
+    }
+
+    /**
+     * @return The watch period of every key in millis.
+     */
+    public long getWatchPeriodMillis() {
+        return mWatchPeriodMillis;
+    }
+
+    /**
+     * @return The number of keys in the table, including expired keys which are not evicted yet.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return The maximum number of keys watched at the same time.
+     */
+    public int capacity() {
+        return mCapacity;
+    }
+
+    private int indexOf(long key) {
+        int index = hash(key) & mMask;
+        while (mWatchEnds[index] != EMPTY) {
+            if (mKeys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mMask;
+        }
+        return -1;
+    }
+
+    // Insert an absent key, making room if the table is full.
+    private void insert(long key, long watchEnd) {
+        if (mSize >= mCapacity) {
+            // The head ends first, whether it has expired or not.
+            removeAt(mHead);
+        }
+        int index = hash(key) & mMask;
+        while (mWatchEnds[index] != EMPTY) {
+            index = (index + 1) & mMask;
+        }
+        mKeys[index] = key;
+        mWatchEnds[index] = watchEnd;
+        linkLast(index);
+        mSize++;
+    }
+
+    // The new watch end is the latest one, so the slot moves to the tail.
+    private void rewatchAt(int index, long watchEnd) {
+        mWatchEnds[index] = watchEnd;
+        if (index != mTail) {
+            unlink(index);
+            linkLast(index);
+        }
+    }
+
+    private void linkLast(int index) {
+        mPrevs[index] = mTail;
+        mNexts[index] = NONE;
+        if (mTail != NONE) {
+            mNexts[mTail] = index;
+        } else {
+            mHead = index;
+        }
+        mTail = index;
+    }
+
+    private void unlink(int index) {
+        final int prev = mPrevs[index];
+        final int next = mNexts[index];
+        if (prev != NONE) {
+            mNexts[prev] = next;
+        } else {
+            mHead = next;
+        }
+        if (next != NONE) {
+            mPrevs[next] = prev;
+        } else {
+            mTail = prev;
+        }
+    }
+
+    // Put the slot an entry is shifted to in the place of the slot it is shifted from.
+    private void relink(int from, int to) {
+        final int prev = mPrevs[from];
+        final int next = mNexts[from];
+        mPrevs[to] = prev;
+        mNexts[to] = next;
+        if (prev != NONE) {
+            mNexts[prev] = to;
+        } else {
+            mHead = to;
+        }
+        if (next != NONE) {
+            mPrevs[next] = to;
+        } else {
+            mTail = to;
+        }
+    }
+
+    // Backward shift deletion, so that no tombstone is left in the probe sequences.
+    private void removeAt(int index) {
+        unlink(index);
+        int hole = index;
+        int next = index;
+        while (true) {
+            next = (next + 1) & mMask;
+            if (mWatchEnds[next] == EMPTY) {
+                break;
+            }
+            final int home = hash(mKeys[next]) & mMask;
+            if (((next - home) & mMask) >= ((next - hole) & mMask)) {
+                mKeys[hole] = mKeys[next];
+                mWatchEnds[hole] = mWatchEnds[next];
+                relink(next, hole);
+                hole = next;
+            }
+        }
+        mKeys[hole] = 0L;
+        mWatchEnds[hole] = EMPTY;
+        mSize--;
+    }
+
+    private static int hash(long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.core;
+
+/**
+ * {@link Clock#SYSTEM}. {@link System#nanoTime()} can be negative, so it is read relative to an
+ * origin taken when this class is initialized.
+ */
+final class NanoClock implements Clock {
+    private static final long ORIGIN_NANOS = System.nanoTime();
+
+    @Override
+    public long uptimeMillis() {
+        return (System.nanoTime() - ORIGIN_NANOS) / 1000000L;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.core;
+
+/**
+ * Guard of one scope in a hierarchy of scopes, like the app, a screen and a view.
+ * <p/>
+ * An event is accepted only if neither this scope nor any of its ancestors is watching. Accepting
+ * it arms this scope, and its ancestors up to the first scope which isn't set to arm its parent:
+ * <pre><code>
+ * ScopedGuard app = new ScopedGuard(clock, 500);
+ * ScopedGuard screen = app.newChild(1000, true);
+ * ScopedGuard button = screen.newChild(1000, false);
+ * </code></pre>
+ * <p/>
+ * Every scope caches the time its watch period ends, so {@link #isWatching()} compares one
+ * timestamp per level of the chain and never allocates. Scopes of one hierarchy share the Clock of
+ * the root and are confined to one thread.
+ */
+public final class ScopedGuard extends Guard {
+    private static final long NOT_WATCHING = Long.MIN_VALUE;
+    private final ScopedGuard mParent;
+    private final boolean mArmsParent;
+    private final long mWatchPeriodMillis;
+    private long mWatchEndMillis = NOT_WATCHING;
+
+    /**
+     * Create a root scope.
+     *
+     * @param clock             The Clock of the hierarchy.
+     * @param watchPeriodMillis The watch period of this scope.
+     */
+    public ScopedGuard(Clock clock, long watchPeriodMillis) {
+        this(clock, null, watchPeriodMillis, false);
+    }
+
+    private ScopedGuard(Clock clock, ScopedGuard parent, long watchPeriodMillis, boolean armsParent) {
+        super(clock);
+        if (watchPeriodMillis < 0) {
+            throw new IllegalArgumentException("Watch period shouldn't be negative!");
+        }
+        mParent = parent;
+        mArmsParent = armsParent;
+        mWatchPeriodMillis = watchPeriodMillis;
+    }
+
+    /**
+     * Create a child scope of this scope.
+     *
+     * @param watchPeriodMillis The watch period of the child scope.
+     * @param armsParent        Whether accepting an event in the child scope arms this scope too.
+     * @return The created child scope.
+     */
+    public ScopedGuard newChild(long watchPeriodMillis, boolean armsParent) {
+        return new ScopedGuard(mClock, this, watchPeriodMillis, armsParent);
+    }
+
+    /**
+     * @return The parent scope, or {@code null} for a root scope.
+     */
+    public ScopedGuard getParent() {
+        return mParent;
+    }
+
+    /**
+     * Let this scope, and the ancestors it is set to arm, to start watching.
+     */
+    @Override
+    public void watch() {
+        arm(mClock.uptimeMillis());
+    }
+
+    /**
+     * Let this scope to have a rest. Its ancestors keep watching.
+     */
+    @Override
+    public void rest() {
+        mWatchEndMillis = NOT_WATCHING;
+    }
+
+    /**
+     * Let this scope, and the ancestors it arms, to have a rest. They weren't watching when the
+     * event was accepted, so this is exactly what {@link #tryWatch()} armed.
+     */
+    @Override
+    public void cancelWatch() {
+        ScopedGuard scope = this;
+        while (true) {
+            scope.mWatchEndMillis = NOT_WATCHING;
+            if (!scope.mArmsParent) {
+                return;
+            }
+            scope = scope.mParent;
+        }
+    }
+
+    /**
+     * Restart the watch period of this scope, and the ancestors it arms, unless the event has been
+     * cancelled or this scope has rested since.
+     */
+    @Override
+    public void rearm(long claim) {
+        if (mWatchEndMillis != NOT_WATCHING) {
+            arm(mClock.uptimeMillis());
+        }
+    }
+
+    /**
+     * @return Whether this scope or any of its ancestors is watching.
+     */
+    @Override
+    public boolean isWatching() {
+        return isWatching(mClock.uptimeMillis());
+    }
+
+    /**
+     * @return Whether one of the ancestors is watching while this scope itself isn't.
+     */
+    public boolean isBlockedByAncestor() {
+        final long now = mClock.uptimeMillis();
+        return now >= mWatchEndMillis && mParent != null && mParent.isWatching(now);
+    }
+
+    @Override
+    public long getWatchPeriodMillis() {
+        return mWatchPeriodMillis;
+    }
+
+    @Override
+    public boolean tryWatch() {
+        final long now = mClock.uptimeMillis();
+        if (isWatching(now)) {
+            return false;
+        }
+        arm(now);
+        return true;
+    }
+
+    private boolean isWatching(long now) {
+        for (ScopedGuard scope = this; scope != null; scope = scope.mParent) {
+            if (now < scope.mWatchEndMillis) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void arm(long now) {
+        ScopedGuard scope = this;
+        while (true) {
+            scope.mWatchEndMillis = now + scope.mWatchPeriodMillis;
+            if (!scope.mArmsParent) {
+                return;
+            }
+            scope = scope.mParent;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.core;
+
+/**
+ * Guard which accepts at most {@code maxEvents} events in any window of {@code windowMillis}.
+ * <p/>
+ * Only the counts of the current and of the previous fixed window are kept, and the count of the
+ * sliding window is interpolated between them: the previous count is weighted by the part of the
+ * previous window the sliding window still covers. An event is accepted while the interpolated
+ * count is below {@code maxEvents}.
+ * <p/>
+ * {@link #watch()} counts the current window as full. This blocks the rest of it, and part of the
+ * next window as well, as the full count still weighs on it: an event at a fraction {@code f} into
+ * the next window is accepted only if {@code (1 - f) * maxEvents}, plus the events already
+ * accepted in that window, is below {@code maxEvents}. {@link #rest()} clears both counts.
+ * {@link #cancelWatch()} takes the last accepted event off the count.
+ */
+public final class SlidingWindowGuard extends Guard {
+    private static final long NONE = Long.MIN_VALUE;
+    private final int mMaxEvents;
+    private final long mWindowMillis;
+    private long mWindowStartMillis = NONE;
+    private int mPreviousCount;
+    private int mCurrentCount;
+
+    /**
+     * @param clock        The Clock of the Guard.
+     * @param maxEvents    The maximum number of events accepted in a window.
+     * @param windowMillis The length of the window.
+     */
+    public SlidingWindowGuard(Clock clock, int maxEvents, long windowMillis) {
+        super(clock);
+        if (maxEvents <= 0) {
+            throw new IllegalArgumentException("Max events should be positive!");
+        }
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("Window should be positive!");
+        }
+        mMaxEvents = maxEvents;
+        mWindowMillis = windowMillis;
+    }
+
+    @Override
+    public void watch() {
+        roll(mClock.uptimeMillis());
+        mCurrentCount = Math.max(mCurrentCount, mMaxEvents);
+    }
+
+    @Override
+    public void rest() {
+        mPreviousCount = 0;
+        mCurrentCount = 0;
+    }
+
+    @Override
+    public void cancelWatch() {
+        roll(mClock.uptimeMillis());
+        // The event may have been counted in what has just become the previous window.
+        if (mCurrentCount > 0) {
+            mCurrentCount--;
+        } else if (mPreviousCount > 0) {
+            mPreviousCount--;
+        }
+    }
+
+    @Override
+    public boolean isWatching() {
+        return isFull(mClock.uptimeMillis());
+    }
+
+    @Override
+    public long getWatchPeriodMillis() {
+        return mWindowMillis;
+    }
+
+    @Override
+    public boolean tryWatch() {
+        final long now = mClock.uptimeMillis();
+        if (isFull(now)) {
+            return false;
+        }
+        mCurrentCount++;
+        return true;
+    }
+
+    private boolean isFull(long now) {
+        roll(now);
+        // The previous window is weighted by the part of it the sliding window still covers.
+        final long remaining = mWindowMillis - (now - mWindowStartMillis);
+        return mPreviousCount * remaining + mCurrentCount * mWindowMillis >= mMaxEvents * mWindowMillis;
+    }
+
+    private void roll(long now) {
+        if (mWindowStartMillis == NONE || now - mWindowStartMillis >= 2 * mWindowMillis) {
+            mWindowStartMillis = now;
+            mPreviousCount = 0;
+            mCurrentCount = 0;
+        } else if (now - mWindowStartMillis >= mWindowMillis) {
+            mWindowStartMillis += mWindowMillis;
+            mPreviousCount = mCurrentCount;
+            mCurrentCount = 0;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.core;
+
+import java.util.Arrays;
+
+/**
+ * Constant-memory streaming estimate of a quantile, using the P-square algorithm of Jain and
+ * Chlamtac. Five markers are kept and adjusted on every observation, nothing is allocated after
+ * construction.
+ */
+final class StreamingQuantile {
+    private static final int MARKERS = 5;
+
+    private final double mQuantile;
+    // Marker heights.
+    private final double[] mHeights = new double[MARKERS];
+    // Actual marker positions.
+    private final double[] mPositions = new double[MARKERS];
+    // Desired marker positions.
+    private final double[] mDesired = new double[MARKERS];
+    // Increments of the desired marker positions.
+    private final double[] mIncrements = new double[MARKERS];
+    private int mCount;
+
+    StreamingQuantile(double quantile) {
+        if (!(quantile > 0d && quantile < 1d)) {
+            throw new IllegalArgumentException("Quantile should be in (0, 1): " + quantile);
+        }
+        mQuantile = quantile;
+        reset();
+    }
+
+    void reset() {
+        mCount = 0;
+        final double p = mQuantile;
+        for (int i = 0; i < MARKERS; i++) {
+            mHeights[i] = 0d;
+            mPositions[i] = i;
+        }
+        mDesired[0] = 0d;
+        mDesired[1] = 2d * p;
+        mDesired[2] = 4d * p;
+        mDesired[3] = 2d + 2d * p;
+        mDesired[4] = 4d;
+        mIncrements[0] = 0d;
+        mIncrements[1] = p / 2d;
+        mIncrements[2] = p;
+        mIncrements[3] = (1d + p) / 2d;
+        mIncrements[4] = 1d;
+    }
+
+    void add(double x) {
+        final double[] q = mHeights;
+        final double[] n = mPositions;
+        if (mCount < MARKERS) {
+            q[mCount++] = x;
+            if (mCount == MARKERS) {
+                Arrays.sort(q);
+            }
+            return;
+        }
+        mCount++;
+        int k;
+        if (x < q[0]) {
+            q[0] = x;
+            k = 0;
+        } else if (x >= q[4]) {
+            q[4] = x;
+            k = 3;
+        } else {
+            k = 0;
+            while (x >= q[k + 1]) {
+                k++;
+            }
+        }
+        for (int i = k + 1; i < MARKERS; i++) {
+            n[i]++;
+        }
+        for (int i = 0; i < MARKERS; i++) {
+            mDesired[i] += mIncrements[i];
+        }
+        for (int i = 1; i <= 3; i++) {
+            final double d = mDesired[i] - n[i];
+            if ((d >= 1d && n[i + 1] - n[i] > 1d) || (d <= -1d && n[i - 1] - n[i] < -1d)) {
+                final int s = d >= 0d ? 1 : -1;
+                final double parabolic = q[i] + s / (n[i + 1] - n[i - 1])
+                        * ((n[i] - n[i - 1] + s) * (q[i + 1] - q[i]) / (n[i + 1] - n[i])
+                        + (n[i + 1] - n[i] - s) * (q[i] - q[i - 1]) / (n[i] - n[i - 1]));
+                if (q[i - 1] < parabolic && parabolic < q[i + 1]) {
+                    q[i] = parabolic;
+                } else {
+                    q[i] = q[i] + s * (q[i + s] - q[i]) / (n[i + s] - n[i]);
+                }
+                n[i] += s;
+            }
+        }
+    }
+
+    int count() {
+        return mCount;
+    }
+
+    /**
+     * @return The estimated quantile, or {@code NaN} until five values have been observed.
+     */
+    double estimate() {
+        return mCount < MARKERS ? Double.NaN : mHeights[2];
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.core;
+
+/**
+ * Guard which keeps its state as the timestamp of the last accepted event. Watching and checking
+ * never allocate.
+ */
+public final class TimestampGuard extends Guard {
+    private static final long NOT_WATCHING = Long.MIN_VALUE;
+    private final long mWatchPeriodMillis;
+    private long mWatchStartMillis = NOT_WATCHING;
+
+    public TimestampGuard(Clock clock, long watchPeriodMillis) {
+        super(clock);
+        mWatchPeriodMillis = watchPeriodMillis;
+    }
+
+    @Override
+    public void watch() {
+        mWatchStartMillis = mClock.uptimeMillis();
+    }
+
+    @Override
+    public void rest() {
+        mWatchStartMillis = NOT_WATCHING;
+    }
+
+    @Override
+    public void rearm(long claim) {
+        if (mWatchStartMillis != NOT_WATCHING) {
+            watch();
+        }
+    }
+
+    @Override
+    public boolean isWatching() {
+        return mWatchStartMillis != NOT_WATCHING
+                && mClock.uptimeMillis() - mWatchStartMillis < mWatchPeriodMillis;
+    }
+
+    @Override
+    public long getWatchPeriodMillis() {
+        return mWatchPeriodMillis;
+    }
+}
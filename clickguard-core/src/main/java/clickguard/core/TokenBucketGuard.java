@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.core;
+
+/**
+ * Guard which accepts bursts of events, limited by a token bucket.
+ * <p/>
+ * The bucket holds up to {@code capacity} tokens and gains one token every
+ * {@code refillPeriodMillis}. Each accepted event takes a token, and the Guard is watching while
+ * the bucket is empty. {@link #watch()} empties the bucket and {@link #rest()} fills it up.
+ * {@link #cancelWatch()} gives back the one token taken by the last accepted event.
+ * <p/>
+ * The bucket is tracked by the time it will be full again, as in the generic cell rate algorithm,
+ * so no refill timer is needed.
+ */
+public final class TokenBucketGuard extends Guard {
+    private static final long FULL = Long.MIN_VALUE / 2;
+    private final long mRefillPeriodMillis;
+    private final long mEmptyBucketMillis;
+    private final long mBurstMillis;
+    private long mFullAtMillis = FULL;
+
+    /**
+     * @param clock              The Clock of the Guard.
+     * @param capacity           The maximum number of events accepted in a burst.
+     * @param refillPeriodMillis The period to gain one token.
+     */
+    public TokenBucketGuard(Clock clock, int capacity, long refillPeriodMillis) {
+        super(clock);
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity should be positive!");
+        }
+        if (refillPeriodMillis <= 0) {
+            throw new IllegalArgumentException("Refill period should be positive!");
+        }
+        mRefillPeriodMillis = refillPeriodMillis;
+        mEmptyBucketMillis = capacity * refillPeriodMillis;
+        mBurstMillis = mEmptyBucketMillis - refillPeriodMillis;
+    }
+
+    @Override
+    public void watch() {
+        mFullAtMillis = Math.max(mFullAtMillis, mClock.uptimeMillis() + mEmptyBucketMillis);
+    }
+
+    @Override
+    public void rest() {
+        mFullAtMillis = FULL;
+    }
+
+    @Override
+    public void cancelWatch() {
+        mFullAtMillis = Math.max(FULL, mFullAtMillis - mRefillPeriodMillis);
+    }
+
+    @Override
+    public boolean isWatching() {
+        return mClock.uptimeMillis() < mFullAtMillis - mBurstMillis;
+    }
+
+    @Override
+    public long getWatchPeriodMillis() {
+        return mRefillPeriodMillis;
+    }
+
+    @Override
+    public boolean tryWatch() {
+        final long now = mClock.uptimeMillis();
+        if (now < mFullAtMillis - mBurstMillis) {
+            return false;
+        }
+        mFullAtMillis = Math.max(mFullAtMillis, now) + mRefillPeriodMillis;
+        return true;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.core;
+
+/**
+ * Clock which only moves when it is told to, used to drive the guards in simulations and tests.
+ */
+public final class VirtualClock implements Clock {
+    private volatile long mNowMillis;
+
+    public VirtualClock() {
+        this(0L);
+    }
+
+    public VirtualClock(long nowMillis) {
+        if (nowMillis < 0) {
+            throw new IllegalArgumentException("Time can't be negative: " + nowMillis);
+        }
+        mNowMillis = nowMillis;
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return mNowMillis;
+    }
+
+    /**
+     * Move the time forward by {@code millis}.
+     */
+    public synchronized void advance(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Time can't go backwards: " + millis);
+        }
+        mNowMillis += millis;
+    }
+}
@@ -0,0 +1,277 @@
+package clickguard.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class GuardTest {
+
+    @Test
+    public void timestampGuardWatchesForPeriod() {
+        VirtualClock clock = new VirtualClock();
+        Guard guard = new TimestampGuard(clock, 1000);
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+        clock.advance(999);
+        assertTrue(guard.isWatching());
+        clock.advance(1);
+        assertFalse(guard.isWatching());
+        assertTrue(guard.tryWatch());
+        guard.rest();
+        assertFalse(guard.isWatching());
+    }
+
+    @Test
+    public void timestampGuardRearmStartsPeriodOver() {
+        VirtualClock clock = new VirtualClock();
+        Guard guard = new TimestampGuard(clock, 1000);
+        long claim = guard.tryClaim();
+        clock.advance(1500);
+        guard.rearm(claim);
+        clock.advance(999);
+        assertFalse(guard.tryWatch());
+        clock.advance(1);
+        claim = guard.tryClaim();
+        guard.cancelClaim(claim);
+        guard.rearm(claim);
+        assertFalse(guard.isWatching());
+    }
+
+    @Test
+    public void concurrentGuardLetsOneCallerWinPerPeriod() throws Exception {
+        final VirtualClock clock = new VirtualClock();
+        final Guard guard = new ConcurrentGuard(clock, 1000);
+        final int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 20; round++) {
+                final CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+                for (int i = 0; i < threads; i++) {
+                    results.add(executor.submit(new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() throws Exception {
+                            start.await();
+                            return guard.tryWatch();
+                        }
+                    }));
+                }
+                start.countDown();
+                int winners = 0;
+                for (Future<Boolean> result : results) {
+                    if (result.get()) {
+                        winners++;
+                    }
+                }
+                assertEquals(1, winners);
+                clock.advance(1000);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void concurrentGuardCancelClaimLeavesNewerPeriodAlone() {
+        VirtualClock clock = new VirtualClock();
+        Guard guard = new ConcurrentGuard(clock, 1000);
+        long first = guard.tryClaim();
+        // The first period expires while its click is still being handled.
+        clock.advance(1000);
+        long second = guard.tryClaim();
+        assertTrue(second != Guard.NO_CLAIM);
+        guard.cancelClaim(first);
+        guard.rearm(first);
+        assertTrue(guard.isWatching());
+        assertFalse(guard.tryWatch());
+        clock.advance(999);
+        assertTrue(guard.isWatching());
+    }
+
+    @Test
+    public void concurrentGuardTellsClaimsEndingOnSameTickApart() {
+        VirtualClock clock = new VirtualClock();
+        Guard guard = new ConcurrentGuard(clock, 1000);
+        long first = guard.tryClaim();
+        guard.rest();
+        long second = guard.tryClaim();
+        assertTrue(first != second);
+        guard.cancelClaim(first);
+        assertTrue(guard.isWatching());
+        guard.cancelClaim(second);
+        assertFalse(guard.isWatching());
+    }
+
+    @Test
+    public void concurrentGuardCancelClaimUndoesOwnPeriod() {
+        VirtualClock clock = new VirtualClock();
+        Guard guard = new ConcurrentGuard(clock, 1000);
+        guard.cancelClaim(guard.tryClaim());
+        assertFalse(guard.isWatching());
+        assertTrue(guard.tryWatch());
+        guard.cancelWatch();
+        assertFalse(guard.isWatching());
+    }
+
+    @Test
+    public void concurrentGuardRearmStartsPeriodOver() {
+        VirtualClock clock = new VirtualClock();
+        Guard guard = new ConcurrentGuard(clock, 1000);
+        long claim = guard.tryClaim();
+        clock.advance(1500);
+        guard.rearm(claim);
+        clock.advance(999);
+        assertFalse(guard.tryWatch());
+        clock.advance(1);
+        claim = guard.tryClaim();
+        guard.cancelClaim(claim);
+        guard.rearm(claim);
+        assertFalse(guard.isWatching());
+    }
+
+    @Test
+    public void adaptiveGuardShrinksToObservedIntervals() {
+        VirtualClock clock = new VirtualClock();
+        Guard guard = new AdaptiveGuard(clock, 0.95, 50, 1000);
+        assertEquals(1000, guard.getWatchPeriodMillis());
+        for (int i = 0; i < 200; i++) {
+            guard.tryWatch();
+            clock.advance(100);
+            guard.tryWatch();
+            clock.advance(2000);
+        }
+        assertEquals(101, guard.getWatchPeriodMillis());
+    }
+
+    @Test
+    public void adaptiveGuardStaysWithinBounds() {
+        VirtualClock clock = new VirtualClock();
+        Guard guard = new AdaptiveGuard(clock, 0.95, 200, 1000);
+        for (int i = 0; i < 100; i++) {
+            guard.tryWatch();
+            clock.advance(10);
+        }
+        assertEquals(200, guard.getWatchPeriodMillis());
+    }
+
+    @Test
+    public void tokenBucketGuardAcceptsBurstsAndRefills() {
+        VirtualClock clock = new VirtualClock();
+        Guard guard = new TokenBucketGuard(clock, 3, 100);
+        assertTrue(guard.tryWatch());
+        assertTrue(guard.tryWatch());
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+        clock.advance(99);
+        assertFalse(guard.tryWatch());
+        clock.advance(1);
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+        clock.advance(300);
+        assertTrue(guard.tryWatch());
+        assertTrue(guard.tryWatch());
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+        guard.rest();
+        assertTrue(guard.tryWatch());
+    }
+
+    @Test
+    public void slidingWindowGuardLimitsClicksPerWindow() {
+        VirtualClock clock = new VirtualClock();
+        Guard guard = new SlidingWindowGuard(clock, 2, 1000);
+        assertTrue(guard.tryWatch());
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+        clock.advance(1000);
+        // The previous window is fully weighted at its end.
+        assertFalse(guard.tryWatch());
+        clock.advance(500);
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+        clock.advance(2000);
+        assertTrue(guard.tryWatch());
+    }
+
+    @Test
+    public void slidingWindowGuardWatchWeighsOnNextWindow() {
+        VirtualClock clock = new VirtualClock();
+        Guard guard = new SlidingWindowGuard(clock, 2, 1000);
+        assertTrue(guard.tryWatch());
+        guard.watch();
+        clock.advance(999);
+        assertFalse(guard.tryWatch());
+        // At the boundary the full window is still fully covered.
+        clock.advance(1);
+        assertFalse(guard.tryWatch());
+        clock.advance(1);
+        assertTrue(guard.tryWatch());
+        // One event in, the full window keeps blocking until half of it has slid out.
+        clock.advance(499);
+        assertFalse(guard.tryWatch());
+        clock.advance(1);
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+    }
+
+    @Test
+    public void tokenBucketGuardCancelWatchRefundsOneToken() {
+        VirtualClock clock = new VirtualClock();
+        Guard guard = new TokenBucketGuard(clock, 3, 100);
+        assertTrue(guard.tryWatch());
+        assertTrue(guard.tryWatch());
+        assertTrue(guard.tryWatch());
+        guard.cancelWatch();
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+        clock.advance(100);
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+    }
+
+    @Test
+    public void slidingWindowGuardCancelWatchUncountsOneEvent() {
+        VirtualClock clock = new VirtualClock();
+        Guard guard = new SlidingWindowGuard(clock, 2, 1000);
+        assertTrue(guard.tryWatch());
+        assertTrue(guard.tryWatch());
+        guard.cancelWatch();
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+    }
+
+    @Test
+    public void guardsRunOnVirtualTimeAtScale() {
+        VirtualClock clock = new VirtualClock();
+        Guard guard = new TimestampGuard(clock, 1000);
+        int accepted = 0;
+        // One click per virtual milli.
+        for (int i = 0; i < 10000000; i++) {
+            if (guard.tryWatch()) {
+                accepted++;
+            }
+            clock.advance(1);
+        }
+        assertEquals(10000, accepted);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenClockIsNull() {
+        new TimestampGuard(null, 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenTokenBucketCapacityIsNotPositive() {
+        new TokenBucketGuard(new VirtualClock(), 0, 100);
+    }
+}
@@ -0,0 +1,97 @@
+package clickguard.core;
+
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class KeyedGuardTest {
+
+    @Test
+    public void keysAreWatchedSeparately() {
+        VirtualClock clock = new VirtualClock();
+        KeyedGuard guard = new KeyedGuard(clock, 1000, 16);
+        assertTrue(guard.tryWatch(1L));
+        assertFalse(guard.tryWatch(1L));
+        assertTrue(guard.tryWatch(2L));
+        clock.advance(500);
+        assertTrue(guard.tryWatch(3L));
+        clock.advance(500);
+        assertFalse(guard.isWatching(1L));
+        assertFalse(guard.isWatching(2L));
+        assertTrue(guard.isWatching(3L));
+        assertEquals(1, guard.size());
+    }
+
+    @Test
+    public void earliestKeyIsEvictedWhenFullOfWatchedKeys() {
+        VirtualClock clock = new VirtualClock();
+        KeyedGuard guard = new KeyedGuard(clock, 1000, 4);
+        for (long key = 0; key < 4; key++) {
+            guard.watch(key);
+            clock.advance(10);
+        }
+        guard.watch(4L);
+        assertEquals(4, guard.size());
+        assertFalse(guard.isWatching(0L));
+        for (long key = 1; key <= 4; key++) {
+            assertTrue(guard.isWatching(key));
+        }
+    }
+
+    @Test
+    public void matchesPerKeyTimestampsOnRandomClicks() {
+        VirtualClock clock = new VirtualClock();
+        KeyedGuard guard = new KeyedGuard(clock, 100, 64);
+        long[] watchEnds = new long[32];
+        Random random = new Random(42);
+        for (int i = 0; i < 1000000; i++) {
+            int key = random.nextInt(watchEnds.length);
+            boolean expected = clock.uptimeMillis() >= watchEnds[key];
+            assertEquals(expected, guard.tryWatch(key));
+            if (expected) {
+                watchEnds[key] = clock.uptimeMillis() + 100;
+            }
+            clock.advance(random.nextInt(4));
+        }
+    }
+
+    @Test
+    public void fullTableEvictsInWatchEndOrderOnRandomClicks() {
+        VirtualClock clock = new VirtualClock();
+        KeyedGuard guard = new KeyedGuard(clock, 100, 8);
+        // Watch ends by key, in the order they were set.
+        Map<Long, Long> watchEnds = new LinkedHashMap<Long, Long>();
+        Random random = new Random(42);
+        for (int i = 0; i < 1000000; i++) {
+            long key = random.nextInt(32);
+            long now = clock.uptimeMillis();
+            Long watchEnd = watchEnds.get(key);
+            boolean expected = watchEnd == null || now >= watchEnd;
+            assertEquals(expected, guard.tryWatch(key));
+            if (expected) {
+                if (watchEnd != null) {
+                    watchEnds.remove(key);
+                } else if (watchEnds.size() == 8) {
+                    Iterator<Long> earliest = watchEnds.keySet().iterator();
+                    earliest.next();
+                    earliest.remove();
+                }
+                watchEnds.put(key, now + 100);
+            }
+            assertEquals(watchEnds.size(), guard.size());
+            clock.advance(random.nextInt(4));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenCapacityIsNotPositive() {
+        new KeyedGuard(new VirtualClock(), 1000, 0);
+    }
+}
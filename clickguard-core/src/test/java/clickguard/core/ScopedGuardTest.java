@@ -0,0 +1,117 @@
+package clickguard.core;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class ScopedGuardTest {
+
+    @Test
+    public void watchingAncestorBlocksDescendants() {
+        VirtualClock clock = new VirtualClock();
+        ScopedGuard app = new ScopedGuard(clock, 500);
+        ScopedGuard screen = app.newChild(1000, false);
+        ScopedGuard view = screen.newChild(200, false);
+
+        app.watch();
+        assertTrue(screen.isWatching());
+        assertTrue(view.isWatching());
+        assertFalse(view.tryWatch());
+        clock.advance(500);
+        assertFalse(view.isWatching());
+        assertTrue(view.tryWatch());
+        assertFalse(screen.isWatching());
+    }
+
+    @Test
+    public void blockedByAncestorOnlyWhileScopeItselfRests() {
+        VirtualClock clock = new VirtualClock();
+        ScopedGuard app = new ScopedGuard(clock, 500);
+        ScopedGuard view = app.newChild(200, false);
+
+        assertFalse(view.isBlockedByAncestor());
+        app.watch();
+        assertTrue(view.isBlockedByAncestor());
+        app.rest();
+        view.watch();
+        app.watch();
+        assertFalse(view.isBlockedByAncestor());
+        assertFalse(app.isBlockedByAncestor());
+    }
+
+    @Test
+    public void acceptingArmsConfiguredAncestors() {
+        VirtualClock clock = new VirtualClock();
+        ScopedGuard app = new ScopedGuard(clock, 500);
+        ScopedGuard screen = app.newChild(1000, true);
+        ScopedGuard navigation = screen.newChild(200, true);
+        ScopedGuard like = screen.newChild(200, false);
+
+        assertTrue(navigation.tryWatch());
+        assertTrue(app.isWatching());
+        assertTrue(screen.isWatching());
+        assertFalse(like.tryWatch());
+
+        clock.advance(500);
+        assertFalse(app.isWatching());
+        assertTrue(screen.isWatching());
+        clock.advance(500);
+        assertTrue(like.tryWatch());
+        assertFalse(screen.isWatching());
+        assertTrue(like.isWatching());
+        assertFalse(navigation.isWatching());
+    }
+
+    @Test
+    public void cancelWatchDisarmsArmedAncestors() {
+        VirtualClock clock = new VirtualClock();
+        ScopedGuard app = new ScopedGuard(clock, 500);
+        ScopedGuard screen = app.newChild(1000, true);
+        ScopedGuard navigation = screen.newChild(200, true);
+        ScopedGuard dialog = app.newChild(300, false);
+
+        dialog.watch();
+        assertTrue(navigation.tryWatch());
+        navigation.cancelWatch();
+        assertFalse(app.isWatching());
+        assertFalse(screen.isWatching());
+        assertFalse(navigation.isWatching());
+        assertTrue(dialog.isWatching());
+    }
+
+    @Test
+    public void rearmStartsArmedScopesOver() {
+        VirtualClock clock = new VirtualClock();
+        ScopedGuard app = new ScopedGuard(clock, 500);
+        ScopedGuard screen = app.newChild(1000, true);
+
+        long claim = screen.tryClaim();
+        clock.advance(1500);
+        screen.rearm(claim);
+        clock.advance(999);
+        assertTrue(screen.isWatching());
+        assertFalse(screen.isBlockedByAncestor());
+        clock.advance(1);
+        assertFalse(screen.isWatching());
+
+        claim = screen.tryClaim();
+        screen.cancelClaim(claim);
+        screen.rearm(claim);
+        assertFalse(app.isWatching());
+        assertFalse(screen.isWatching());
+    }
+
+    @Test
+    public void restOnlyRestsItsOwnScope() {
+        VirtualClock clock = new VirtualClock();
+        ScopedGuard app = new ScopedGuard(clock, 500);
+        ScopedGuard screen = app.newChild(1000, true);
+
+        screen.watch();
+        screen.rest();
+        assertTrue(screen.isWatching());
+        app.rest();
+        assertFalse(screen.isWatching());
+    }
+}
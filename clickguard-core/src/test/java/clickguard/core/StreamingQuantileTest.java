@@ -0,0 +1,43 @@
+package clickguard.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class StreamingQuantileTest {
+
+    @Test
+    public void estimateIsUnknownUntilFiveValues() {
+        StreamingQuantile quantile = new StreamingQuantile(0.5);
+        for (int i = 0; i < 4; i++) {
+            quantile.add(i);
+            assertTrue(Double.isNaN(quantile.estimate()));
+        }
+        quantile.add(4);
+        assertEquals(2d, quantile.estimate());
+        assertEquals(5, quantile.count());
+    }
+
+    @Test
+    public void estimateIsCloseToExactQuantile() {
+        StreamingQuantile quantile = new StreamingQuantile(0.95);
+        Random random = new Random(7);
+        double[] values = new double[100000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian() * 30d + 150d;
+            quantile.add(values[i]);
+        }
+        Arrays.sort(values);
+        double exact = values[(int) (values.length * 0.95)];
+        assertEquals(exact, quantile.estimate(), 2d);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenQuantileIsOutOfRange() {
+        new StreamingQuantile(1d);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.weaver;
+
+/**
+ * A {@code setOnClickListener} call site in compiled code.
+ */
+public final class CallSite {
+    private final String mClassName;
+    private final String mMethodName;
+    private final int mLineNumber;
+    private final long mWatchPeriodMillis;
+
+    CallSite(String className, String methodName, int lineNumber, long watchPeriodMillis) {
+        mClassName = className;
+        mMethodName = methodName;
+        mLineNumber = lineNumber;
+        mWatchPeriodMillis = watchPeriodMillis;
+    }
+
+    /**
+     * @return Fully qualified name of the class containing the call site.
+     */
+    public String getClassName() {
+        return mClassName;
+    }
+
+    /**
+     * @return Name of the method containing the call site.
+     */
+    public String getMethodName() {
+        return mMethodName;
+    }
+
+    /**
+     * @return Source line of the call site, or -1 if the class has no line numbers.
+     */
+    public int getLineNumber() {
+        return mLineNumber;
+    }
+
+    /**
+     * @return Watch period the call site is woven with, or -1 if it isn't woven.
+     */
+    public long getWatchPeriodMillis() {
+        return mWatchPeriodMillis;
+    }
+
+    /**
+     * @return Whether the call site is woven.
+     */
+    public boolean isWoven() {
+        return mWatchPeriodMillis >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return mClassName + "." + mMethodName
+                + (mLineNumber >= 0 ? "(line " + mLineNumber + ")" : "(unknown line)")
+                + (isWoven() ? ": " + mWatchPeriodMillis + "ms" : ": not woven");
+    }
+}
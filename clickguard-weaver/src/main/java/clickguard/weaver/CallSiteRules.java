@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.weaver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Rules deciding which classes get their {@code setOnClickListener} call sites woven, and with which
+ * watch period.
+ * <p/>
+ * Patterns match fully qualified class names. {@code *} matches any part of a package or class
+ * name, and {@code **} matches any number of packages. Nested and anonymous classes match the
+ * patterns of their top-level class. A class is woven if it matches an include pattern, or if there
+ * is none, and doesn't match any exclude pattern. Its watch period is the one of the first period
+ * rule it matches, or the default one.
+ * <p/>
+ * Classes of ClickGuard itself are never woven.
+ */
+public final class CallSiteRules {
+    private static final Pattern CLICK_GUARD = compile("clickguard.**");
+
+    private final long mWatchPeriodMillis;
+    private final List<Pattern> mIncludes = new ArrayList<Pattern>();
+    private final List<Pattern> mExcludes = new ArrayList<Pattern>();
+    private final Map<Pattern, Long> mPeriods = new LinkedHashMap<Pattern, Long>();
+    private final String mDescription;
+
+    /**
+     * @param watchPeriodMillis The default watch period.
+     * @param includes          Patterns of the classes to weave. Empty to weave all the classes.
+     * @param excludes          Patterns of the classes not to weave.
+     * @param periods           Watch periods of the classes matching each pattern, in order.
+     */
+    public CallSiteRules(long watchPeriodMillis, List<String> includes, List<String> excludes,
+                         Map<String, Long> periods) {
+        if (watchPeriodMillis < 0) {
+            throw new IllegalArgumentException("Watch period shouldn't be negative!");
+        }
+        mWatchPeriodMillis = watchPeriodMillis;
+        for (String include : includes) {
+            mIncludes.add(compile(include));
+        }
+        for (String exclude : excludes) {
+            mExcludes.add(compile(exclude));
+        }
+        for (Map.Entry<String, Long> period : periods.entrySet()) {
+            if (period.getValue() < 0) {
+                throw new IllegalArgumentException("Watch period of '" + period.getKey()
+                        + "' shouldn't be negative!");
+            }
+            mPeriods.put(compile(period.getKey()), period.getValue());
+        }
+        mDescription = "CallSiteRules{watchPeriodMillis=" + watchPeriodMillis
+                + ", includes=" + includes
+                + ", excludes=" + excludes
+                + ", periods=" + periods
+                + "}";
+    }
+
+    /**
+     * @param className Fully qualified name of a class, like {@code com.example.MainActivity$1}.
+     * @return Whether the call sites of the class are woven.
+     */
+    public boolean isWoven(String className) {
+        final String name = topLevelName(className);
+        if (CLICK_GUARD.matcher(name).matches()) {
+            return false;
+        }
+        if (!mIncludes.isEmpty() && !matchesAny(mIncludes, name)) {
+            return false;
+        }
+        return !matchesAny(mExcludes, name);
+    }
+
+    /**
+     * @param className Fully qualified name of a class.
+     * @return The watch period of the call sites of the class.
+     */
+    public long getWatchPeriodMillis(String className) {
+        final String name = topLevelName(className);
+        for (Map.Entry<Pattern, Long> period : mPeriods.entrySet()) {
+            if (period.getKey().matcher(name).matches()) {
+                return period.getValue();
+            }
+        }
+        return mWatchPeriodMillis;
+    }
+
+    @Override
+    public String toString() {
+        return mDescription;
+    }
+
+    private static boolean matchesAny(List<Pattern> patterns, String name) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(name).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String topLevelName(String className) {
+        final int index = className.indexOf('$');
+        return index < 0 ? className : className.substring(0, index);
+    }
+
+    static Pattern compile(String pattern) {
+        if (pattern == null || pattern.length() == 0) {
+            throw new IllegalArgumentException("Pattern shouldn't be empty!");
+        }
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            if (c == '*') {
+                if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i++;
+                } else {
+                    regex.append("[^.]*");
+                }
+            } else if (Character.isLetterOrDigit(c) || c == '_') {
+                regex.append(c);
+            } else {
+                regex.append('\\').append(c);
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.weaver;
+
+import org.objectweb.asm.ClassReader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Tells whether a class is {@code android.view.View} or one of its subclasses, so that only the
+ * {@code setOnClickListener} calls on Views are woven, not those of adapters or helpers with a
+ * setter of the same signature.
+ * <p/>
+ * Superclasses are read from the headers of the class files added with {@link #add(byte[])}, then
+ * from the classpath, like {@code android.jar} and the libraries. Answers are cached. A class which
+ * can't be found is taken as not being a View.
+ */
+public final class ClassHierarchy implements Closeable {
+    static final String VIEW = "android/view/View";
+    private static final String OBJECT = "java/lang/Object";
+    // Super name of a class which can't be found.
+    private static final String UNKNOWN = "";
+
+    private final List<File> mDirectories = new ArrayList<File>();
+    private final List<ZipFile> mJars = new ArrayList<ZipFile>();
+    private final Map<String, String> mSuperNames = new HashMap<String, String>();
+    private final Map<String, Boolean> mViews = new HashMap<String, Boolean>();
+
+    /**
+     * @param classpath Directories and jars the superclasses are looked up in.
+     * @throws IOException If a jar can't be opened.
+     */
+    public ClassHierarchy(Iterable<File> classpath) throws IOException {
+        if (classpath == null) {
+            throw new IllegalArgumentException("Classpath shouldn't be null!");
+        }
+        try {
+            for (File entry : classpath) {
+                if (entry.isDirectory()) {
+                    mDirectories.add(entry);
+                } else if (entry.isFile()) {
+                    mJars.add(new ZipFile(entry));
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Add a class which isn't on the classpath, like a class being woven.
+     *
+     * @param classBytes The class file.
+     */
+    public void add(byte[] classBytes) {
+        final ClassReader reader = new ClassReader(classBytes);
+        mSuperNames.put(reader.getClassName(), superNameOf(reader));
+    }
+
+    /**
+     * @param internalName The internal name of a class, like {@code android/widget/Button}.
+     * @return Whether the class is {@code android.view.View} or one of its subclasses.
+     */
+    public boolean isView(String internalName) {
+        final Boolean cached = mViews.get(internalName);
+        if (cached != null) {
+            return cached;
+        }
+        final boolean view;
+        if (VIEW.equals(internalName)) {
+            view = true;
+        } else {
+            final String superName = getSuperName(internalName);
+            view = superName != UNKNOWN && isView(superName);
+        }
+        mViews.put(internalName, view);
+        return view;
+    }
+
+    private String getSuperName(String internalName) {
+        String superName = mSuperNames.get(internalName);
+        if (superName == null) {
+            superName = load(internalName);
+            mSuperNames.put(internalName, superName);
+        }
+        return superName;
+    }
+
+    private String load(String internalName) {
+        final String path = internalName + ".class";
+        try {
+            for (File directory : mDirectories) {
+                final File file = new File(directory, path);
+                if (file.isFile()) {
+                    final InputStream in = new FileInputStream(file);
+                    try {
+                        return superNameOf(new ClassReader(in));
+                    } finally {
+                        in.close();
+                    }
+                }
+            }
+            for (ZipFile jar : mJars) {
+                final ZipEntry entry = jar.getEntry(path);
+                if (entry != null) {
+                    final InputStream in = jar.getInputStream(entry);
+                    try {
+                        return superNameOf(new ClassReader(in));
+                    } finally {
+                        in.close();
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // Taken as not found.
+        }
+        return UNKNOWN;
+    }
+
+    private static String superNameOf(ClassReader reader) {
+        final String superName = reader.getSuperName();
+        // Interfaces and java.lang.Object end the chain.
+        return superName != null && !OBJECT.equals(superName) ? superName : UNKNOWN;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (ZipFile jar : mJars) {
+            try {
+                jar.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        mJars.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
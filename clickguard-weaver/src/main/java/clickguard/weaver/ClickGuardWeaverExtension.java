@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.weaver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code clickguard} block configuring the weaving:
+ * <pre><code>
+ * clickguard {
+ *     watchPeriod 600
+ *     include 'com.example.**'
+ *     exclude 'com.example.debug.**'
+ *     period 'com.example.checkout.**', 2000
+ * }
+ * </code></pre>
+ *
+ * @see CallSiteRules
+ */
+public class ClickGuardWeaverExtension {
+    private boolean mEnabled = true;
+    private long mWatchPeriodMillis = 1000L;
+    private final List<String> mIncludes = new ArrayList<String>();
+    private final List<String> mExcludes = new ArrayList<String>();
+    private final Map<String, Long> mPeriods = new LinkedHashMap<String, Long>();
+
+    /**
+     * Turn weaving on or off. It is on by default.
+     */
+    public void enabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Set the default watch period of the woven call sites. It is 1000 milliseconds by default.
+     */
+    public void watchPeriod(long watchPeriodMillis) {
+        mWatchPeriodMillis = watchPeriodMillis;
+    }
+
+    /**
+     * Weave only the classes matching one of the included patterns.
+     */
+    public void include(String... patterns) {
+        mIncludes.addAll(Arrays.asList(patterns));
+    }
+
+    /**
+     * Don't weave the classes matching one of the excluded patterns.
+     */
+    public void exclude(String... patterns) {
+        mExcludes.addAll(Arrays.asList(patterns));
+    }
+
+    /**
+     * Weave the classes matching {@code pattern} with a specific watch period. The first matching
+     * pattern wins.
+     */
+    public void period(String pattern, long watchPeriodMillis) {
+        if (!mPeriods.containsKey(pattern)) {
+            mPeriods.put(pattern, watchPeriodMillis);
+        }
+    }
+
+    /**
+     * @return The rules described by this configuration.
+     */
+    public CallSiteRules toRules() {
+        return new CallSiteRules(mWatchPeriodMillis, mIncludes, mExcludes, mPeriods);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.weaver;
+
+import com.android.build.gradle.AppExtension;
+import com.android.build.gradle.AppPlugin;
+import com.android.build.gradle.BaseExtension;
+import com.android.build.gradle.LibraryExtension;
+import com.android.build.gradle.LibraryPlugin;
+import com.android.build.gradle.api.ApplicationVariant;
+import com.android.build.gradle.api.BaseVariant;
+import com.android.build.gradle.api.LibraryVariant;
+
+import org.gradle.api.Action;
+import org.gradle.api.GradleException;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.tasks.compile.AbstractCompile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Gradle plugin guarding the {@code setOnClickListener} call sites of an Android application or
+ * library at build time:
+ * <pre><code>
+ * apply plugin: 'com.android.application'
+ * apply plugin: 'clickguard-weaver'
+ * </code></pre>
+ * <p/>
+ * The classes compiled by each variant are woven by {@link ClickWeaver} right after compilation,
+ * following the rules of the {@code clickguard} block. Nothing is left to do at runtime: no view
+ * lookup and no reflection. {@code list<Variant>WovenCallSites} lists the woven call sites.
+ *
+ * @see ClickGuardWeaverExtension
+ */
+public class ClickGuardWeaverPlugin implements Plugin<Project> {
+    static final String EXTENSION_NAME = "clickguard";
+
+    @Override
+    public void apply(final Project project) {
+        final ClickGuardWeaverExtension extension
+                = project.getExtensions().create(EXTENSION_NAME, ClickGuardWeaverExtension.class);
+        final Task listAll = project.getTasks().create("listWovenCallSites");
+        listAll.setGroup("verification");
+        listAll.setDescription("Lists the woven setOnClickListener call sites of all variants.");
+
+        project.getPlugins().withType(AppPlugin.class, new Action<AppPlugin>() {
+            @Override
+            public void execute(AppPlugin plugin) {
+                project.getExtensions().getByType(AppExtension.class).getApplicationVariants()
+                        .all(new Action<ApplicationVariant>() {
+                            @Override
+                            public void execute(ApplicationVariant variant) {
+                                configure(project, extension, variant, listAll);
+                            }
+                        });
+            }
+        });
+        project.getPlugins().withType(LibraryPlugin.class, new Action<LibraryPlugin>() {
+            @Override
+            public void execute(LibraryPlugin plugin) {
+                project.getExtensions().getByType(LibraryExtension.class).getLibraryVariants()
+                        .all(new Action<LibraryVariant>() {
+                            @Override
+                            public void execute(LibraryVariant variant) {
+                                configure(project, extension, variant, listAll);
+                            }
+                        });
+            }
+        });
+    }
+
+    private static void configure(Project project, final ClickGuardWeaverExtension extension,
+                                  BaseVariant variant, Task listAll) {
+        final AbstractCompile javaCompile = variant.getJavaCompile();
+        final BaseExtension android = project.getExtensions().getByType(BaseExtension.class);
+        // Where the superclasses of the call site owners are found, resolved at execution.
+        final FileCollection classpath = project.files(new Callable<List<File>>() {
+            @Override
+            public List<File> call() {
+                return android.getBootClasspath();
+            }
+        }, javaCompile.getClasspath());
+        // Classes woven with other rules must be compiled again.
+        javaCompile.getInputs().property("clickguardEnabled", extension.isEnabled());
+        javaCompile.getInputs().property("clickguardRules", extension.toRules().toString());
+        javaCompile.doLast(new Action<Task>() {
+            @Override
+            public void execute(Task task) {
+                if (!extension.isEnabled()) {
+                    return;
+                }
+                final File classesDir = javaCompile.getDestinationDir();
+                try {
+                    final ClassHierarchy hierarchy = new ClassHierarchy(classpath.getFiles());
+                    try {
+                        final List<CallSite> woven = new ClickWeaver(extension.toRules(), hierarchy)
+                                .weaveDirectory(classesDir);
+                        task.getLogger().info("ClickGuard wove " + woven.size()
+                                + " call site(s) in " + classesDir);
+                    } finally {
+                        hierarchy.close();
+                    }
+                } catch (IOException e) {
+                    throw new GradleException("Failed to weave " + classesDir, e);
+                }
+            }
+        });
+
+        final String name = variant.getName();
+        final ListWovenCallSitesTask list = project.getTasks().create(
+                "list" + Character.toUpperCase(name.charAt(0)) + name.substring(1) + "WovenCallSites",
+                ListWovenCallSitesTask.class);
+        list.setGroup("verification");
+        list.setDescription("Lists the woven setOnClickListener call sites of the "
+                + name + " variant.");
+        list.setExtension(extension);
+        list.setClassesDir(javaCompile.getDestinationDir());
+        list.setClasspath(classpath);
+        list.setReportFile(new File(project.getBuildDir(),
+                "outputs/clickguard/" + variant.getDirName() + "/woven-call-sites.txt"));
+        list.dependsOn(javaCompile);
+        listAll.dependsOn(list);
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.weaver;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites the {@code setOnClickListener} call sites of compiled classes, so that
+ * <pre><code>
+ * view.setOnClickListener(listener);
+ * </code></pre>
+ * runs as
+ * <pre><code>
+ * view.setOnClickListener(ClickGuard.wrapCallSite(listener, watchPeriodMillis));
+ * </code></pre>
+ * The setter is still invoked virtually, so Views overriding it keep working. Only the calls on
+ * {@code android.view.View} and its subclasses are woven, as resolved by a {@link ClassHierarchy},
+ * so other classes declaring a setter of the same signature are left alone. Classes which are
+ * already woven are left as they are, so weaving the output of an incremental build is safe.
+ */
+public final class ClickWeaver {
+    static final String SETTER_NAME = "setOnClickListener";
+    static final String SETTER_DESC = "(Landroid/view/View$OnClickListener;)V";
+    static final String HELPER_OWNER = "clickguard/ClickGuard";
+    static final String HELPER_NAME = "wrapCallSite";
+    static final String HELPER_DESC
+            = "(Landroid/view/View$OnClickListener;J)Landroid/view/View$OnClickListener;";
+
+    private final CallSiteRules mRules;
+    private final ClassHierarchy mHierarchy;
+
+    /**
+     * @param rules     The rules selecting the classes to weave and their watch periods.
+     * @param hierarchy The hierarchy telling which call sites are on Views. The classes to weave
+     *                  should be added to it, or be on its classpath.
+     */
+    public ClickWeaver(CallSiteRules rules, ClassHierarchy hierarchy) {
+        if (rules == null) {
+            throw new IllegalArgumentException("Rules shouldn't be null!");
+        }
+        if (hierarchy == null) {
+            throw new IllegalArgumentException("Hierarchy shouldn't be null!");
+        }
+        mRules = rules;
+        mHierarchy = hierarchy;
+    }
+
+    /**
+     * Weave the call sites of a class.
+     *
+     * @param classBytes     The class file.
+     * @param wovenCallSites The list which the woven call sites are added to.
+     * @return The woven class file, or {@code null} if there is nothing to weave.
+     */
+    public byte[] weave(byte[] classBytes, List<CallSite> wovenCallSites) {
+        final ClassReader reader = new ClassReader(classBytes);
+        final String className = reader.getClassName().replace('/', '.');
+        if (!mRules.isWoven(className)) {
+            return null;
+        }
+        final List<CallSite> callSites = new ArrayList<CallSite>();
+        reader.accept(new ScanningClassVisitor(className, mHierarchy, callSites),
+                ClassReader.SKIP_FRAMES);
+        if (callSites.isEmpty()) {
+            return null;
+        }
+        for (CallSite callSite : callSites) {
+            if (callSite.isWoven()) {
+                return null;
+            }
+        }
+        final long watchPeriodMillis = mRules.getWatchPeriodMillis(className);
+        final ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+        reader.accept(new WeavingClassVisitor(writer, className, mHierarchy, watchPeriodMillis,
+                wovenCallSites), 0);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Weave all the class files under a directory in place. They are added to the hierarchy first.
+     *
+     * @param classesDir The directory of the compiled classes.
+     * @return The woven call sites.
+     * @throws IOException If a class file can't be read or written.
+     */
+    public List<CallSite> weaveDirectory(File classesDir) throws IOException {
+        final List<File> files = listClassFiles(classesDir, new ArrayList<File>());
+        final List<byte[]> classes = new ArrayList<byte[]>(files.size());
+        for (File file : files) {
+            final byte[] classBytes = read(file);
+            mHierarchy.add(classBytes);
+            classes.add(classBytes);
+        }
+        final List<CallSite> wovenCallSites = new ArrayList<CallSite>();
+        for (int i = 0; i < files.size(); i++) {
+            final byte[] woven = weave(classes.get(i), wovenCallSites);
+            if (woven != null) {
+                write(files.get(i), woven);
+            }
+        }
+        return wovenCallSites;
+    }
+
+    /**
+     * Find the {@code setOnClickListener} call sites on Views of a class, woven or not.
+     *
+     * @param classBytes The class file.
+     * @param hierarchy  The hierarchy telling which call sites are on Views.
+     * @param callSites  The list which the call sites are added to.
+     */
+    public static void scan(byte[] classBytes, ClassHierarchy hierarchy, List<CallSite> callSites) {
+        final ClassReader reader = new ClassReader(classBytes);
+        final String className = reader.getClassName().replace('/', '.');
+        reader.accept(new ScanningClassVisitor(className, hierarchy, callSites),
+                ClassReader.SKIP_FRAMES);
+    }
+
+    /**
+     * Find the {@code setOnClickListener} call sites on Views of all the class files under a
+     * directory. They are added to the hierarchy first.
+     *
+     * @param classesDir The directory of the compiled classes.
+     * @param hierarchy  The hierarchy telling which call sites are on Views.
+     * @return The call sites, woven or not.
+     * @throws IOException If a class file can't be read.
+     */
+    public static List<CallSite> scanDirectory(File classesDir, ClassHierarchy hierarchy)
+            throws IOException {
+        final List<byte[]> classes = new ArrayList<byte[]>();
+        for (File file : listClassFiles(classesDir, new ArrayList<File>())) {
+            final byte[] classBytes = read(file);
+            hierarchy.add(classBytes);
+            classes.add(classBytes);
+        }
+        final List<CallSite> callSites = new ArrayList<CallSite>();
+        for (byte[] classBytes : classes) {
+            scan(classBytes, hierarchy, callSites);
+        }
+        return callSites;
+    }
+
+    private static List<File> listClassFiles(File dir, List<File> out) {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    listClassFiles(file, out);
+                } else if (file.getName().endsWith(".class")) {
+                    out.add(file);
+                }
+            }
+        }
+        return out;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        final InputStream in = new FileInputStream(file);
+        try {
+            final byte[] bytes = new byte[(int) file.length()];
+            int offset = 0;
+            while (offset < bytes.length) {
+                final int read = in.read(bytes, offset, bytes.length - offset);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+                offset += read;
+            }
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static boolean isSetter(ClassHierarchy hierarchy, int opcode, String owner, String name,
+                                    String desc) {
+        return opcode == Opcodes.INVOKEVIRTUAL && SETTER_NAME.equals(name) && SETTER_DESC.equals(desc)
+                && hierarchy.isView(owner);
+    }
+
+    private static boolean isHelper(int opcode, String owner, String name, String desc) {
+        return opcode == Opcodes.INVOKESTATIC && HELPER_OWNER.equals(owner)
+                && HELPER_NAME.equals(name) && HELPER_DESC.equals(desc);
+    }
+
+    private static class ScanningClassVisitor extends ClassVisitor {
+        private final String mClassName;
+        private final ClassHierarchy mHierarchy;
+        private final List<CallSite> mCallSites;
+
+        ScanningClassVisitor(String className, ClassHierarchy hierarchy, List<CallSite> callSites) {
+            super(Opcodes.ASM5);
+            mClassName = className;
+            mHierarchy = hierarchy;
+            mCallSites = callSites;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                                         String[] exceptions) {
+            return new ScanningMethodVisitor(mClassName, name, mHierarchy, mCallSites);
+        }
+    }
+
+    /**
+     * Finds the setter invocations, and whether each one is directly preceded by the woven
+     * {@code LDC period; INVOKESTATIC wrapCallSite} sequence.
+     */
+    private static class ScanningMethodVisitor extends MethodVisitor {
+        private final String mClassName;
+        private final String mMethodName;
+        private final ClassHierarchy mHierarchy;
+        private final List<CallSite> mCallSites;
+        private int mLineNumber = -1;
+        private long mLastPeriod = -1;
+        private long mHelperPeriod = -1;
+
+        ScanningMethodVisitor(String className, String methodName, ClassHierarchy hierarchy,
+                              List<CallSite> callSites) {
+            super(Opcodes.ASM5);
+            mClassName = className;
+            mMethodName = methodName;
+            mHierarchy = hierarchy;
+            mCallSites = callSites;
+        }
+
+        private void onInsn() {
+            mLastPeriod = -1;
+            mHelperPeriod = -1;
+        }
+
+        @Override
+        public void visitLineNumber(int line, Label start) {
+            mLineNumber = line;
+        }
+
+        @Override
+        public void visitLdcInsn(Object cst) {
+            onInsn();
+            if (cst instanceof Long) {
+                mLastPeriod = (Long) cst;
+            }
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            onInsn();
+            if (opcode == Opcodes.LCONST_0 || opcode == Opcodes.LCONST_1) {
+                mLastPeriod = opcode - Opcodes.LCONST_0;
+            }
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+            final long lastPeriod = mLastPeriod;
+            final long helperPeriod = mHelperPeriod;
+            onInsn();
+            if (isHelper(opcode, owner, name, desc)) {
+                mHelperPeriod = lastPeriod;
+            } else if (isSetter(mHierarchy, opcode, owner, name, desc)) {
+                mCallSites.add(new CallSite(mClassName, mMethodName, mLineNumber, helperPeriod));
+            }
+        }
+
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            onInsn();
+        }
+
+        @Override
+        public void visitVarInsn(int opcode, int var) {
+            onInsn();
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            onInsn();
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+            onInsn();
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+            onInsn();
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            onInsn();
+        }
+
+        @Override
+        public void visitLabel(Label label) {
+            onInsn();
+        }
+
+        @Override
+        public void visitIincInsn(int var, int increment) {
+            onInsn();
+        }
+
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+            onInsn();
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+            onInsn();
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String desc, int dims) {
+            onInsn();
+        }
+    }
+
+    private static class WeavingClassVisitor extends ClassVisitor {
+        private final String mClassName;
+        private final ClassHierarchy mHierarchy;
+        private final long mWatchPeriodMillis;
+        private final List<CallSite> mWovenCallSites;
+
+        WeavingClassVisitor(ClassVisitor cv, String className, ClassHierarchy hierarchy,
+                            long watchPeriodMillis, List<CallSite> wovenCallSites) {
+            super(Opcodes.ASM5, cv);
+            mClassName = className;
+            mHierarchy = hierarchy;
+            mWatchPeriodMillis = watchPeriodMillis;
+            mWovenCallSites = wovenCallSites;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, final String name, String desc, String signature,
+                                         String[] exceptions) {
+            final MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
+            return new MethodVisitor(Opcodes.ASM5, mv) {
+                private int mLineNumber = -1;
+
+                @Override
+                public void visitLineNumber(int line, Label start) {
+                    mLineNumber = line;
+                    super.visitLineNumber(line, start);
+                }
+
+                @Override
+                public void visitMethodInsn(int opcode, String owner, String methodName, String desc,
+                                            boolean itf) {
+                    if (isSetter(mHierarchy, opcode, owner, methodName, desc)) {
+                        super.visitLdcInsn(mWatchPeriodMillis);
+                        super.visitMethodInsn(Opcodes.INVOKESTATIC, HELPER_OWNER, HELPER_NAME,
+                                HELPER_DESC, false);
+                        mWovenCallSites.add(
+                                new CallSite(mClassName, name, mLineNumber, mWatchPeriodMillis));
+                    }
+                    super.visitMethodInsn(opcode, owner, methodName, desc, itf);
+                }
+            };
+        }
+    }
+}
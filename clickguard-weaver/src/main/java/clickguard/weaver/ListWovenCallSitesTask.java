@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard.weaver;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Verification task listing every woven {@code setOnClickListener} call site of a variant. The
+ * list is printed and written to {@link #getReportFile()}.
+ * <p/>
+ * The task reads the compiled classes, not the weaving rules, so it shows what really ships. It
+ * fails if a class the rules say should be woven still has a plain call site.
+ */
+public class ListWovenCallSitesTask extends DefaultTask {
+    private File mClassesDir;
+    private FileCollection mClasspath;
+    private File mReportFile;
+    private ClickGuardWeaverExtension mExtension;
+
+    @InputDirectory
+    public File getClassesDir() {
+        return mClassesDir;
+    }
+
+    public void setClassesDir(File classesDir) {
+        mClassesDir = classesDir;
+    }
+
+    /**
+     * @return The classpath the superclasses of the call site owners are found in.
+     */
+    @InputFiles
+    public FileCollection getClasspath() {
+        return mClasspath;
+    }
+
+    public void setClasspath(FileCollection classpath) {
+        mClasspath = classpath;
+    }
+
+    @OutputFile
+    public File getReportFile() {
+        return mReportFile;
+    }
+
+    public void setReportFile(File reportFile) {
+        mReportFile = reportFile;
+    }
+
+    void setExtension(ClickGuardWeaverExtension extension) {
+        mExtension = extension;
+    }
+
+    @TaskAction
+    public void list() throws IOException {
+        final CallSiteRules rules = mExtension.toRules();
+        final List<CallSite> woven = new ArrayList<CallSite>();
+        final List<CallSite> missed = new ArrayList<CallSite>();
+        final ClassHierarchy hierarchy = new ClassHierarchy(mClasspath.getFiles());
+        try {
+            for (CallSite callSite : ClickWeaver.scanDirectory(mClassesDir, hierarchy)) {
+                if (callSite.isWoven()) {
+                    woven.add(callSite);
+                } else if (mExtension.isEnabled() && rules.isWoven(callSite.getClassName())) {
+                    missed.add(callSite);
+                }
+            }
+        } finally {
+            hierarchy.close();
+        }
+
+        mReportFile.getParentFile().mkdirs();
+        final Writer writer = new FileWriter(mReportFile);
+        try {
+            for (CallSite callSite : woven) {
+                getLogger().lifecycle(callSite.toString());
+                writer.write(callSite + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        getLogger().lifecycle(woven.size() + " woven call site(s), listed in " + mReportFile);
+
+        if (!missed.isEmpty()) {
+            StringBuilder message = new StringBuilder("Call sites which should be woven aren't:");
+            for (CallSite callSite : missed) {
+                message.append("\n    ").append(callSite);
+            }
+            throw new GradleException(message.toString());
+        }
+    }
+}
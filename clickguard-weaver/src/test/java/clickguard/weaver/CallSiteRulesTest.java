@@ -0,0 +1,78 @@
+package clickguard.weaver;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class CallSiteRulesTest {
+
+    private static final List<String> NONE = Collections.emptyList();
+    private static final Map<String, Long> NO_PERIOD = Collections.emptyMap();
+
+    @Test
+    public void allClassesButClickGuardAreWovenByDefault() {
+        CallSiteRules rules = new CallSiteRules(1000, NONE, NONE, NO_PERIOD);
+        assertTrue(rules.isWoven("com.example.MainActivity"));
+        assertTrue(rules.isWoven("MainActivity"));
+        assertFalse(rules.isWoven("clickguard.ClickGuard"));
+        assertFalse(rules.isWoven("clickguard.ClickGuard$GuardedOnClickListener"));
+        assertEquals(1000, rules.getWatchPeriodMillis("com.example.MainActivity"));
+    }
+
+    @Test
+    public void singleStarDoesNotCrossPackages() {
+        CallSiteRules rules = new CallSiteRules(1000, Arrays.asList("com.example.*"), NONE, NO_PERIOD);
+        assertTrue(rules.isWoven("com.example.MainActivity"));
+        assertFalse(rules.isWoven("com.example.ui.MainActivity"));
+        assertFalse(rules.isWoven("com.examples.MainActivity"));
+    }
+
+    @Test
+    public void excludesWinOverIncludes() {
+        CallSiteRules rules = new CallSiteRules(1000, Arrays.asList("com.example.**"),
+                Arrays.asList("com.example.debug.**", "**Test"), NO_PERIOD);
+        assertTrue(rules.isWoven("com.example.ui.MainActivity"));
+        assertFalse(rules.isWoven("com.example.debug.DebugActivity"));
+        assertFalse(rules.isWoven("com.example.ui.MainActivityTest"));
+        assertFalse(rules.isWoven("org.example.MainActivity"));
+    }
+
+    @Test
+    public void nestedClassesFollowTheirTopLevelClass() {
+        Map<String, Long> periods = new LinkedHashMap<String, Long>();
+        periods.put("com.example.CheckoutActivity", 3000L);
+        CallSiteRules rules = new CallSiteRules(1000, NONE,
+                Arrays.asList("com.example.DebugActivity"), periods);
+        assertFalse(rules.isWoven("com.example.DebugActivity$1"));
+        assertEquals(3000, rules.getWatchPeriodMillis("com.example.CheckoutActivity$Holder$1"));
+    }
+
+    @Test
+    public void firstMatchingPeriodWins() {
+        Map<String, Long> periods = new LinkedHashMap<String, Long>();
+        periods.put("com.example.checkout.*", 3000L);
+        periods.put("com.example.**", 600L);
+        CallSiteRules rules = new CallSiteRules(1000, NONE, NONE, periods);
+        assertEquals(3000, rules.getWatchPeriodMillis("com.example.checkout.PayActivity"));
+        assertEquals(600, rules.getWatchPeriodMillis("com.example.checkout.ui.PayFragment"));
+        assertEquals(1000, rules.getWatchPeriodMillis("org.example.MainActivity"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenPeriodIsNegative() {
+        new CallSiteRules(1000, NONE, NONE, Collections.singletonMap("com.**", -1L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenPatternIsEmpty() {
+        new CallSiteRules(1000, Arrays.asList(""), NONE, NO_PERIOD);
+    }
+}
@@ -0,0 +1,346 @@
+package clickguard.weaver;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+public class ClickWeaverTest {
+
+    private static final JavaFileObject VIEW = source("android.view.View", ""
+            + "package android.view;\n"
+            + "public class View {\n"
+            + "    public interface OnClickListener {\n"
+            + "        void onClick(View v);\n"
+            + "    }\n"
+            + "    public OnClickListener listener;\n"
+            + "    public void setOnClickListener(OnClickListener l) {\n"
+            + "        listener = l;\n"
+            + "    }\n"
+            + "}\n");
+
+    private static final JavaFileObject BUTTON = source("android.widget.Button", ""
+            + "package android.widget;\n"
+            + "public class Button extends android.view.View {\n"
+            + "    @Override\n"
+            + "    public void setOnClickListener(OnClickListener l) {\n"
+            + "        super.setOnClickListener(l);\n"
+            + "    }\n"
+            + "}\n");
+
+    private static final JavaFileObject CLICK_GUARD = source("clickguard.ClickGuard", ""
+            + "package clickguard;\n"
+            + "import android.view.View;\n"
+            + "public abstract class ClickGuard {\n"
+            + "    public static class Wrapper implements View.OnClickListener {\n"
+            + "        public final View.OnClickListener wrapped;\n"
+            + "        public final long period;\n"
+            + "        Wrapper(View.OnClickListener wrapped, long period) {\n"
+            + "            this.wrapped = wrapped;\n"
+            + "            this.period = period;\n"
+            + "        }\n"
+            + "        public void onClick(View v) {\n"
+            + "        }\n"
+            + "    }\n"
+            + "    public static View.OnClickListener wrapCallSite(View.OnClickListener l, long p) {\n"
+            + "        return new Wrapper(l, p);\n"
+            + "    }\n"
+            + "}\n");
+
+    private static final JavaFileObject MAIN_ACTIVITY = source("test.MainActivity", ""
+            + "package test;\n"
+            + "import android.view.View;\n"
+            + "import android.widget.Button;\n"
+            + "public class MainActivity {\n"
+            + "    public static void bind(View view, View.OnClickListener listener) {\n"
+            + "        view.setOnClickListener(listener);\n"
+            + "    }\n"
+            + "    public static void bindButton(Button button, View.OnClickListener listener) {\n"
+            + "        button.setOnClickListener(listener);\n"
+            + "    }\n"
+            + "    public static class Nested {\n"
+            + "        public static void bind(View view) {\n"
+            + "            view.setOnClickListener(new View.OnClickListener() {\n"
+            + "                public void onClick(View v) {\n"
+            + "                }\n"
+            + "            });\n"
+            + "        }\n"
+            + "    }\n"
+            + "}\n");
+
+    private static final JavaFileObject DEBUG_ACTIVITY = source("test.debug.DebugActivity", ""
+            + "package test.debug;\n"
+            + "import android.view.View;\n"
+            + "public class DebugActivity {\n"
+            + "    public static void bind(View view, View.OnClickListener listener) {\n"
+            + "        view.setOnClickListener(listener);\n"
+            + "    }\n"
+            + "}\n");
+
+    private static final JavaFileObject WIDGETS = source("test.Widgets", ""
+            + "package test;\n"
+            + "import android.view.View;\n"
+            + "import android.widget.Button;\n"
+            + "public class Widgets {\n"
+            + "    public static class FancyButton extends Button {\n"
+            + "    }\n"
+            + "    public static class Adapter {\n"
+            + "        public void setOnClickListener(View.OnClickListener l) {\n"
+            + "        }\n"
+            + "    }\n"
+            + "    public static void bind(FancyButton button, Adapter adapter, View.OnClickListener l) {\n"
+            + "        button.setOnClickListener(l);\n"
+            + "        adapter.setOnClickListener(l);\n"
+            + "    }\n"
+            + "}\n");
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void wovenCallSitesWrapTheListener() throws Exception {
+        Map<String, byte[]> classes = compile();
+        List<CallSite> woven = weaveAll(new ClickWeaver(rules(600), hierarchy(classes)), classes);
+
+        assertEquals(4, woven.size());
+        assertEquals("test.MainActivity.bind(line 6): 600ms", woven.get(0).toString());
+        assertEquals("test.MainActivity.bindButton(line 9): 600ms", woven.get(1).toString());
+        assertEquals("test.MainActivity$Nested.bind(line 13): 600ms", woven.get(2).toString());
+        assertEquals("test.debug.DebugActivity.bind(line 5): 600ms", woven.get(3).toString());
+
+        ClassLoader loader = new MemoryClassLoader(classes);
+        Class<?> viewType = loader.loadClass("android.view.View");
+        Class<?> buttonType = loader.loadClass("android.widget.Button");
+        Class<?> listenerType = loader.loadClass("android.view.View$OnClickListener");
+        Class<?> activityType = loader.loadClass("test.MainActivity");
+        Object listener = Proxy.newProxyInstance(loader, new Class<?>[]{listenerType},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return null;
+                    }
+                });
+
+        Object view = viewType.newInstance();
+        activityType.getMethod("bind", viewType, listenerType).invoke(null, view, listener);
+        assertWrapped(listener, 600L, viewType.getField("listener").get(view));
+
+        // Overridden setters are still called.
+        Object button = buttonType.newInstance();
+        activityType.getMethod("bindButton", buttonType, listenerType).invoke(null, button, listener);
+        assertWrapped(listener, 600L, viewType.getField("listener").get(button));
+    }
+
+    @Test
+    public void rulesSelectClassesAndPeriods() throws Exception {
+        Map<String, byte[]> classes = compile();
+        CallSiteRules rules = new CallSiteRules(600, Collections.<String>emptyList(),
+                Collections.singletonList("test.debug.**"),
+                Collections.singletonMap("test.MainActivity", 2000L));
+        List<CallSite> woven = weaveAll(new ClickWeaver(rules, hierarchy(classes)), classes);
+
+        assertEquals(3, woven.size());
+        for (CallSite callSite : woven) {
+            assertTrue(callSite.getClassName().startsWith("test.MainActivity"));
+            assertEquals(2000L, callSite.getWatchPeriodMillis());
+        }
+        List<CallSite> callSites = new ArrayList<CallSite>();
+        ClickWeaver.scan(classes.get("test.debug.DebugActivity"), hierarchy(classes), callSites);
+        assertEquals(1, callSites.size());
+        assertFalse(callSites.get(0).isWoven());
+    }
+
+    @Test
+    public void wovenClassesAreNotWovenAgain() throws Exception {
+        Map<String, byte[]> classes = compile();
+        ClassHierarchy hierarchy = hierarchy(classes);
+        ClickWeaver weaver = new ClickWeaver(rules(600), hierarchy);
+        List<CallSite> callSites = new ArrayList<CallSite>();
+        byte[] woven = weaver.weave(classes.get("test.MainActivity"), callSites);
+        assertEquals(2, callSites.size());
+
+        assertNull(weaver.weave(woven, callSites));
+        assertEquals(2, callSites.size());
+        callSites.clear();
+        ClickWeaver.scan(woven, hierarchy, callSites);
+        assertEquals(2, callSites.size());
+        assertTrue(callSites.get(0).isWoven());
+        assertEquals(600L, callSites.get(0).getWatchPeriodMillis());
+        assertEquals(6, callSites.get(0).getLineNumber());
+    }
+
+    @Test
+    public void onlyCallsOnViewsAreWoven() throws Exception {
+        Map<String, byte[]> classes = compile(WIDGETS);
+        List<CallSite> woven = new ArrayList<CallSite>();
+        byte[] widgets = new ClickWeaver(rules(600), hierarchy(classes))
+                .weave(classes.get("test.Widgets"), woven);
+
+        assertEquals(1, woven.size());
+        assertEquals("test.Widgets.bind(line 12): 600ms", woven.get(0).toString());
+        List<CallSite> callSites = new ArrayList<CallSite>();
+        ClickWeaver.scan(widgets, hierarchy(classes), callSites);
+        assertEquals(1, callSites.size());
+
+        // Owners which can't be resolved aren't taken as Views.
+        ClassHierarchy empty = new ClassHierarchy(Collections.<File>emptyList());
+        assertNull(new ClickWeaver(rules(600), empty).weave(classes.get("test.Widgets"), woven));
+        assertTrue(empty.isView("android/view/View"));
+        assertFalse(empty.isView("android/widget/Button"));
+    }
+
+    @Test
+    public void weavesDirectoryInPlace() throws Exception {
+        File classesDir = mTemporaryFolder.newFolder("classes");
+        // The Android classes are only on the classpath, like android.jar.
+        File libraryDir = mTemporaryFolder.newFolder("library");
+        for (Map.Entry<String, byte[]> entry : compile().entrySet()) {
+            File dir = entry.getKey().startsWith("test.") ? classesDir : libraryDir;
+            File file = new File(dir, entry.getKey().replace('.', '/') + ".class");
+            file.getParentFile().mkdirs();
+            OutputStream out = new FileOutputStream(file);
+            try {
+                out.write(entry.getValue());
+            } finally {
+                out.close();
+            }
+        }
+        CallSiteRules rules = new CallSiteRules(600, Collections.singletonList("test.*"),
+                Collections.<String>emptyList(), Collections.<String, Long>emptyMap());
+
+        ClassHierarchy hierarchy = new ClassHierarchy(Collections.singletonList(libraryDir));
+        assertEquals(3, new ClickWeaver(rules, hierarchy).weaveDirectory(classesDir).size());
+        assertEquals(0, new ClickWeaver(rules, hierarchy).weaveDirectory(classesDir).size());
+        int woven = 0;
+        for (CallSite callSite : ClickWeaver.scanDirectory(classesDir, hierarchy)) {
+            assertEquals(rules.isWoven(callSite.getClassName()), callSite.isWoven());
+            woven += callSite.isWoven() ? 1 : 0;
+        }
+        assertEquals(3, woven);
+    }
+
+    private static void assertWrapped(Object listener, long period, Object wrapper) throws Exception {
+        assertEquals("clickguard.ClickGuard$Wrapper", wrapper.getClass().getName());
+        assertSame(listener, wrapper.getClass().getField("wrapped").get(wrapper));
+        assertEquals(period, wrapper.getClass().getField("period").get(wrapper));
+    }
+
+    private static CallSiteRules rules(long watchPeriodMillis) {
+        return new CallSiteRules(watchPeriodMillis, Collections.<String>emptyList(),
+                Collections.<String>emptyList(), Collections.<String, Long>emptyMap());
+    }
+
+    private static ClassHierarchy hierarchy(Map<String, byte[]> classes) throws IOException {
+        ClassHierarchy hierarchy = new ClassHierarchy(Collections.<File>emptyList());
+        for (byte[] bytes : classes.values()) {
+            hierarchy.add(bytes);
+        }
+        return hierarchy;
+    }
+
+    private static List<CallSite> weaveAll(ClickWeaver weaver, Map<String, byte[]> classes) {
+        List<CallSite> woven = new ArrayList<CallSite>();
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            byte[] bytes = weaver.weave(entry.getValue(), woven);
+            if (bytes != null) {
+                entry.setValue(bytes);
+            }
+        }
+        return woven;
+    }
+
+    private static Map<String, byte[]> compile(JavaFileObject... extraSources) {
+        final Map<String, byte[]> classes = new TreeMap<String, byte[]>();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaFileManager fileManager = new ForwardingJavaFileManager<JavaFileManager>(
+                compiler.getStandardFileManager(null, null, null)) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, final String className,
+                                                       JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/')
+                        + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return new ByteArrayOutputStream() {
+                            @Override
+                            public void close() throws IOException {
+                                super.close();
+                                classes.put(className, toByteArray());
+                            }
+                        };
+                    }
+                };
+            }
+        };
+        // Class files like those of an Android build, without the nest attributes of Java 11.
+        List<String> options = Arrays.asList("-g", "-source", "1.7", "-target", "1.7");
+        boolean success = compiler.getTask(null, fileManager, null, options, null,
+                sources(extraSources)).call();
+        assertTrue(success);
+        return classes;
+    }
+
+    private static List<JavaFileObject> sources(JavaFileObject... extraSources) {
+        List<JavaFileObject> sources = new ArrayList<JavaFileObject>(
+                Arrays.asList(VIEW, BUTTON, CLICK_GUARD, MAIN_ACTIVITY, DEBUG_ACTIVITY));
+        sources.addAll(Arrays.asList(extraSources));
+        return sources;
+    }
+
+    private static JavaFileObject source(String className, final String code) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/')
+                + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+
+    private static class MemoryClassLoader extends ClassLoader {
+        private final Map<String, byte[]> mClasses;
+
+        MemoryClassLoader(Map<String, byte[]> classes) {
+            super(MemoryClassLoader.class.getClassLoader());
+            mClasses = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = mClasses.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -19,10 +19,34 @@ package clickguard;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.View.OnClickListener;
+import android.view.View.OnKeyListener;
+import android.view.View.OnTouchListener;
+import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.AdapterView.OnItemClickListener;
+
+import clickguard.core.AdaptiveGuard;
+import clickguard.core.ConcurrentGuard;
+import clickguard.core.Guard;
+import clickguard.core.ScopedGuard;
+import clickguard.core.SlidingWindowGuard;
+import clickguard.core.TimestampGuard;
+import clickguard.core.TokenBucketGuard;
 
 import java.lang.reflect.Field;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Class used to guard a view to avoid multiple rapid clicks.
@@ -46,6 +70,12 @@ import java.lang.reflect.Field;
  * ClickGuard.newGuard(600); // Create a ClickGuard with 600ms watch period.
  * </code></pre>
  * <p/>
+ * A ClickGuard which keeps its state in a timestamp instead of the main thread's message queue can
+ * be created like this:
+ * <pre><code>
+ * ClickGuard.newGuard(600, ClickGuard.MODE_TIMESTAMP);
+ * </code></pre>
+ * <p/>
  * Multiple views can be guarded by a ClickGuard simultaneously:
  * <pre><code>
  * ClickGuard.guard(view1, view2, view3);
@@ -55,6 +85,17 @@ import java.lang.reflect.Field;
  * ClickGuard to watch. And all upcoming clicks on any of the guarded views will be ignored until
  * the watch period ends.
  * <p/>
+ * All the clickable views with an OnClickListener in a view hierarchy can be guarded in one pass:
+ * <pre><code>
+ * ClickGuard.guardTree(rootView);
+ * </code></pre>
+ * <p/>
+ * Views which are seldom used can be guarded lazily. Their OnClickListeners are wrapped only when
+ * they are first touched:
+ * <pre><code>
+ * ClickGuard.guardLazily(view1, view2, view3);
+ * </code></pre>
+ * <p/>
  * Another way to guard a view is using a {@linkplain GuardedOnClickListener GuardedOnClickListener}
  * instead of {@linkplain android.view.View.OnClickListener OnClickListener}:
  * <pre><code>
@@ -73,6 +114,31 @@ import java.lang.reflect.Field;
  * <pre><code>
  * button.setOnClickListener(ClickGuard.wrap(onClickListener));
  * </code></pre>
+ * <p/>
+ * A view stops being guarded with {@link #remove(android.view.View)}, and a guard cancels its
+ * pending work with {@link #release()}. The latter can be done automatically once the last of its
+ * views is detached from its window:
+ * <pre><code>
+ * ClickGuard.releaseOnDetach(view);
+ * </code></pre>
+ * <p/>
+ * Taps arriving while a guard is watching can be dropped before they change the pressed state of a
+ * view:
+ * <pre><code>
+ * ClickGuard.guard(view).suppressTouches(view);
+ * </code></pre>
+ * <p/>
+ * The clicks seen by a guard can be consumed as a stream:
+ * <pre><code>
+ * ClickGuard.guardTree(rootView).clicks().throttleFirst().subscribe(subscriber);
+ * </code></pre>
+ * <p/>
+ * All the guards of the process can be frozen at once, for example during a transition:
+ * <pre><code>
+ * ClickGuard.freeze();
+ * // ...
+ * ClickGuard.unfreeze();
+ * </code></pre>
  */
 public abstract class ClickGuard {
 
@@ -81,6 +147,43 @@ public abstract class ClickGuard {
      */
     public static final long DEFAULT_WATCH_PERIOD_MILLIS = 1000L;
 
+    /**
+     * Guard mode. The watching state is kept in a timing wheel shared by all the guards of this
+     * mode, which is driven by a single Handler on the main thread. This is the default mode.
+     * <p/>
+     * The wheel is confined to the main thread. {@link #watch()} and {@link #rest()} called on
+     * other threads are posted to the main thread, so they take effect once it handles them, and
+     * {@link #isWatching()} may not see them until then. Use {@link #MODE_CONCURRENT} or
+     * {@link #newGuard(long, android.os.Looper)} for guards shared between threads.
+     */
+    public static final int MODE_HANDLER = 0;
+
+    /**
+     * Guard mode. The watching state is kept as the timestamp of the last accepted click. Watching
+     * and checking never touch the message queue and never allocate.
+     */
+    public static final int MODE_TIMESTAMP = 1;
+
+    /**
+     * Guard mode. The watching state is kept as an atomic expiry timestamp. The guard can be used
+     * from any thread, and {@link #tryWatch()} lets exactly one caller win per watch period. Like
+     * the other modes, the watch period starts over once the accepted click has been handled, and
+     * a click of one thread never cancels or restarts the period won by another.
+     */
+    public static final int MODE_CONCURRENT = 2;
+
+    private static final long UNKNOWN = Long.MIN_VALUE;
+    private static final long NOT_FROZEN = Long.MIN_VALUE;
+
+    // The end of the global freeze. Checked by every click with one volatile read.
+    private static volatile long sFrozenUntilMillis = NOT_FROZEN;
+
+    private ClickGuardMetrics mMetrics;
+    private LazyInstaller mLazyInstaller;
+    private ReleaseOnDetachListener mReleaseOnDetach;
+    private ClickStream mClicks;
+    private long mLastAcceptedMillis = UNKNOWN;
+
     private ClickGuard() {
         // private
     }
@@ -104,7 +207,162 @@ public abstract class ClickGuard {
      * @return The created ClickGuard instance.
      */
     public static ClickGuard newGuard(long watchPeriodMillis) {
-        return new ClickGuardImpl(watchPeriodMillis);
+        return newGuard(watchPeriodMillis, MODE_HANDLER);
+    }
+
+    /**
+     * Utility method. Create a ClickGuard with specific watch period: {@code watchPeriodMillis} and
+     * specific mode: {@code mode}.
+     *
+     * @param watchPeriodMillis The specific watch period.
+     * @param mode              One of {@link #MODE_HANDLER}, {@link #MODE_TIMESTAMP} and
+     *                          {@link #MODE_CONCURRENT}.
+     * @return The created ClickGuard instance.
+     */
+    public static ClickGuard newGuard(long watchPeriodMillis, int mode) {
+        switch (mode) {
+            case MODE_HANDLER:
+                return new ClickGuardImpl(watchPeriodMillis);
+            case MODE_TIMESTAMP:
+                return new CoreClickGuard(new TimestampGuard(UptimeClock.INSTANCE, watchPeriodMillis));
+            case MODE_CONCURRENT:
+                return new CoreClickGuard(new ConcurrentGuard(UptimeClock.INSTANCE, watchPeriodMillis));
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+    }
+
+    /**
+     * Utility method. Create a ClickGuard whose watch period adapts to the observed intervals
+     * between repeated clicks.
+     * <p/>
+     * Intervals shorter than {@code maxWatchPeriodMillis} are taken as accidental repeated clicks. The
+     * watch period is kept at the {@code percentile} of them, as estimated in constant memory, and
+     * bounded by {@code minWatchPeriodMillis} and {@code maxWatchPeriodMillis}. Until enough clicks
+     * are observed, the watch period is {@code maxWatchPeriodMillis}.
+     * <p/>
+     * Clicks are observed through {@link #tryWatch()}, which is what {@link GuardedOnClickListener}
+     * calls for every click. The current watch period is given by {@link #getWatchPeriodMillis()}.
+     *
+     * @param percentile           Share of accidental repeated clicks to cover, in (0, 1).
+     * @param minWatchPeriodMillis The lower bound of the watch period.
+     * @param maxWatchPeriodMillis The upper bound of the watch period.
+     * @return The created ClickGuard instance.
+     */
+    public static ClickGuard newAdaptiveGuard(double percentile, long minWatchPeriodMillis,
+                                              long maxWatchPeriodMillis) {
+        return new CoreClickGuard(new AdaptiveGuard(UptimeClock.INSTANCE, percentile,
+                minWatchPeriodMillis, maxWatchPeriodMillis));
+    }
+
+    /**
+     * Utility method. Create a ClickGuard which accepts bursts of clicks, limited by a token bucket.
+     * <p/>
+     * The bucket holds up to {@code capacity} tokens and gains one token every
+     * {@code refillPeriodMillis}. Each accepted click takes a token, and the guard is watching while
+     * the bucket is empty. For example, at most 3 clicks per second:
+     * <pre><code>
+     * ClickGuard.newTokenBucketGuard(3, 333);
+     * </code></pre>
+     * {@link #watch()} empties the bucket and {@link #rest()} fills it up. A click rejected by
+     * {@link GuardedOnClickListener#onClicked()} gives its token back.
+     *
+     * @param capacity           The maximum number of clicks accepted in a burst.
+     * @param refillPeriodMillis The period to gain one token.
+     * @return The created ClickGuard instance.
+     */
+    public static ClickGuard newTokenBucketGuard(int capacity, long refillPeriodMillis) {
+        return new CoreClickGuard(new TokenBucketGuard(UptimeClock.INSTANCE, capacity, refillPeriodMillis));
+    }
+
+    /**
+     * Utility method. Create a ClickGuard which accepts at most {@code maxClicks} clicks in any
+     * window of {@code windowMillis}.
+     * <p/>
+     * Only the counts of the current and of the previous fixed window are kept, and the count of
+     * the sliding window is interpolated between them. {@link #watch()} counts the current window
+     * as full, which blocks the rest of it and, as that count fades out of the sliding window, part
+     * of the next window. {@link #rest()} clears both counts. A click rejected by
+     * {@link GuardedOnClickListener#onClicked()} isn't counted.
+     *
+     * @param maxClicks    The maximum number of clicks accepted in a window.
+     * @param windowMillis The length of the window.
+     * @return The created ClickGuard instance.
+     */
+    public static ClickGuard newSlidingWindowGuard(int maxClicks, long windowMillis) {
+        return new CoreClickGuard(new SlidingWindowGuard(UptimeClock.INSTANCE, maxClicks, windowMillis));
+    }
+
+    /**
+     * Utility method. Create a ClickGuard of a root scope, like the whole app, with specific watch
+     * period: {@code watchPeriodMillis}.
+     *
+     * @param watchPeriodMillis The specific watch period.
+     * @return The created ClickGuard instance.
+     * @see #newScope(ClickGuard, long, boolean)
+     */
+    public static ClickGuard newScope(long watchPeriodMillis) {
+        return new CoreClickGuard(new ScopedGuard(UptimeClock.INSTANCE, watchPeriodMillis));
+    }
+
+    /**
+     * Utility method. Create a ClickGuard of a child scope of {@code parent}, like a screen of the
+     * app or a view of a screen.
+     * <p/>
+     * A click is accepted only if neither the child scope nor any of its ancestors is watching.
+     * Accepting it lets the child scope start watching, and {@code parent} as well if
+     * {@code armsParent} is {@code true}:
+     * <pre><code>
+     * ClickGuard app = ClickGuard.newScope(500);
+     * ClickGuard screen = ClickGuard.newScope(app, 1000, true);
+     * screen.add(navigationButton);
+     * ClickGuard.newScope(screen, 600, false).add(likeButton);
+     * </code></pre>
+     * A click rejected by {@link GuardedOnClickListener#onClicked()} disarms the ancestors it armed
+     * as well, and an accepted one restarts their watch periods once it has been handled. Whether a scope is watching is answered from the cached watch period ends along the
+     * chain, without touching the message queue.
+     *
+     * @param parent            The parent scope, created by one of the {@code newScope} methods.
+     * @param watchPeriodMillis The specific watch period.
+     * @param armsParent        Whether accepting a click in the child scope arms {@code parent}.
+     * @return The created ClickGuard instance.
+     */
+    public static ClickGuard newScope(ClickGuard parent, long watchPeriodMillis, boolean armsParent) {
+        if (!(parent instanceof CoreClickGuard) || !(((CoreClickGuard) parent).mGuard instanceof ScopedGuard)) {
+            throw new IllegalArgumentException("Parent should be a scope created by newScope()!");
+        }
+        ScopedGuard scope = (ScopedGuard) ((CoreClickGuard) parent).mGuard;
+        return new CoreClickGuard(scope.newChild(watchPeriodMillis, armsParent));
+    }
+
+    /**
+     * Utility method. Create a ClickGuard whose watching state is kept by a {@link Guard} of the
+     * core module, for example one with its own {@link clickguard.core.Clock}.
+     *
+     * @param guard The Guard deciding which clicks are accepted.
+     * @return The created ClickGuard instance.
+     */
+    public static ClickGuard newGuard(Guard guard) {
+        if (guard == null) {
+            throw new IllegalArgumentException("Guard shouldn't be null!");
+        }
+        return new CoreClickGuard(guard);
+    }
+
+    /**
+     * Utility method. Create a ClickGuard with specific watch period: {@code watchPeriodMillis},
+     * whose watching state is kept as a delayed message in the message queue of {@code looper}.
+     * The created ClickGuard can be used from any thread.
+     *
+     * @param watchPeriodMillis The specific watch period.
+     * @param looper            The Looper the ClickGuard is bound to.
+     * @return The created ClickGuard instance.
+     */
+    public static ClickGuard newGuard(long watchPeriodMillis, Looper looper) {
+        if (looper == null) {
+            throw new IllegalArgumentException("Looper shouldn't be null!");
+        }
+        return new LooperClickGuard(watchPeriodMillis, looper);
     }
 
     /**
@@ -145,6 +403,22 @@ public abstract class ClickGuard {
         return guard.wrapOnClickListener(onClickListener);
     }
 
+    /**
+     * Utility method. Entry point of the {@code setOnClickListener} call sites woven by the
+     * {@code clickguard-weaver} Gradle plugin. Like {@link #wrap(long, android.view.View.OnClickListener)},
+     * but {@code null} and listeners which are already guarded are returned as they are.
+     *
+     * @param onClickListener   The listener passed to {@code setOnClickListener}. Can be null.
+     * @param watchPeriodMillis The watch period configured for the call site.
+     * @return The listener to be set.
+     */
+    public static OnClickListener wrapCallSite(OnClickListener onClickListener, long watchPeriodMillis) {
+        if (onClickListener == null || onClickListener instanceof GuardedOnClickListener) {
+            return onClickListener;
+        }
+        return wrap(watchPeriodMillis, onClickListener);
+    }
+
     /**
      * Utility method. Use a new ClickGuard with default watch period {@link #DEFAULT_WATCH_PERIOD_MILLIS}
      * to guard View(s).
@@ -182,6 +456,33 @@ public abstract class ClickGuard {
         return guard.addAll(view, others);
     }
 
+    /**
+     * Utility method. Use a new ClickGuard with default watch period {@link #DEFAULT_WATCH_PERIOD_MILLIS}
+     * to guard View(s) lazily.
+     *
+     * @param view   The View to be guarded.
+     * @param others More Views to be guarded.
+     * @return The created ClickedGuard.
+     * @see #addLazily(android.view.View, android.view.View...)
+     */
+    public static ClickGuard guardLazily(View view, View... others) {
+        return guardLazily(DEFAULT_WATCH_PERIOD_MILLIS, view, others);
+    }
+
+    /**
+     * Utility method. Use a new ClickGuard with specific guard period {@code watchPeriodMillis} to
+     * guard View(s) lazily.
+     *
+     * @param watchPeriodMillis The specific watch period.
+     * @param view              The View to be guarded.
+     * @param others            More Views to be guarded.
+     * @return The created ClickedGuard.
+     * @see #addLazily(android.view.View, android.view.View...)
+     */
+    public static ClickGuard guardLazily(long watchPeriodMillis, View view, View... others) {
+        return newGuard(watchPeriodMillis).addLazily(view, others);
+    }
+
     /**
      * Utility method. Use a new ClickGuard with default watch period {@link #DEFAULT_WATCH_PERIOD_MILLIS}
      * to guard a series of Views.
@@ -216,6 +517,100 @@ public abstract class ClickGuard {
         return guard.addAll(views);
     }
 
+    /**
+     * Utility method. Use a new ClickGuard with default watch period {@link #DEFAULT_WATCH_PERIOD_MILLIS}
+     * to guard all the clickable Views with an OnClickListener in a view hierarchy.
+     *
+     * @param root The root of the view hierarchy.
+     * @return The created ClickedGuard.
+     * @see #addTree(android.view.ViewGroup, ViewFilter)
+     */
+    public static ClickGuard guardTree(ViewGroup root) {
+        return guardTree(DEFAULT_WATCH_PERIOD_MILLIS, root);
+    }
+
+    /**
+     * Utility method. Use a new ClickGuard with specific guard period {@code watchPeriodMillis} to
+     * guard all the clickable Views with an OnClickListener in a view hierarchy.
+     *
+     * @param watchPeriodMillis The specific watch period.
+     * @param root              The root of the view hierarchy.
+     * @return The created ClickedGuard.
+     * @see #addTree(android.view.ViewGroup, ViewFilter)
+     */
+    public static ClickGuard guardTree(long watchPeriodMillis, ViewGroup root) {
+        return guardTree(newGuard(watchPeriodMillis), root, null);
+    }
+
+    /**
+     * Utility method. Use a specific ClickGuard {@code guard} to guard the clickable Views with an
+     * OnClickListener in a view hierarchy, which are accepted by {@code filter}.
+     *
+     * @param guard  The ClickGuard used to guard.
+     * @param root   The root of the view hierarchy.
+     * @param filter The filter used to select Views. Can be null.
+     * @return The given ClickedGuard itself.
+     * @see #addTree(android.view.ViewGroup, ViewFilter)
+     */
+    public static ClickGuard guardTree(ClickGuard guard, ViewGroup root, ViewFilter filter) {
+        return guard.addTree(root, filter);
+    }
+
+    /**
+     * Utility method. Use a new ClickGuard with default watch period {@link #DEFAULT_WATCH_PERIOD_MILLIS}
+     * to guard the item clicks of an AdapterView, all the items sharing the ClickGuard.
+     *
+     * @param adapterView The AdapterView whose item clicks are guarded.
+     * @return The created ClickedGuard.
+     * @see #addItems(android.widget.AdapterView)
+     * @see KeyedClickGuard#addItems(android.widget.AdapterView)
+     */
+    public static ClickGuard guardItems(AdapterView<?> adapterView) {
+        return newGuard().addItems(adapterView);
+    }
+
+    /**
+     * Utility method. Create a {@link ViewFilter} which accepts Views with one of the given ids.
+     *
+     * @param ids The ids of Views to be accepted.
+     * @return The created ViewFilter.
+     */
+    public static ViewFilter idFilter(final int... ids) {
+        return new ViewFilter() {
+            @Override
+            public boolean accept(View view) {
+                final int id = view.getId();
+                for (int i : ids) {
+                    if (i == id) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Utility method. Create a {@link ViewFilter} which accepts Views which are instances of one of
+     * the given classes.
+     *
+     * @param classes The classes of Views to be accepted.
+     * @return The created ViewFilter.
+     */
+    public static ViewFilter classFilter(final Class<?>... classes) {
+        return new ViewFilter() {
+            @Override
+            public boolean accept(View view) {
+                for (Class<?> clazz : classes) {
+                    if (clazz.isInstance(view)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
     /**
      * Utility method. Get the ClickGuard from a guarded View.
      *
@@ -230,6 +625,54 @@ public abstract class ClickGuard {
         throw new IllegalStateException("The view (id: 0x" + view.getId() + ") isn't guarded by ClickGuard!");
     }
 
+    /**
+     * Utility method. Release the ClickGuard of a guarded View once the View, and every other View
+     * of the ClickGuard registered here, is detached from its window, so that nothing of the
+     * View's screen is left pending in the message queue. The clicks still pending for the View
+     * itself are dropped as soon as it is detached.
+     * <p/>
+     * The View stays guarded, and a released ClickGuard can still be used, so a View attached
+     * again is guarded as before. Views guarded by {@link #addLazily(View, View...)} are covered
+     * as well, whether their OnClickListener has been wrapped yet or not.
+     * <p/>
+     * Requires API 12 (Honeycomb MR1) and above. Nothing happens on lower API levels.
+     *
+     * @param view A View guarded by ClickGuard.
+     * @see #release()
+     */
+    public static void releaseOnDetach(View view) {
+        if (view == null) {
+            throw new IllegalArgumentException("View shouldn't be null!");
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1) {
+            ClickGuard guard = findGuard(view);
+            if (guard == null) {
+                throw new IllegalStateException("The view (id: 0x" + view.getId() + ") isn't guarded by ClickGuard!");
+            }
+            if (guard.mReleaseOnDetach == null) {
+                guard.mReleaseOnDetach = new ReleaseOnDetachListener(guard);
+            }
+            guard.mReleaseOnDetach.add(view);
+        }
+    }
+
+    // The ClickGuard of a View, including one still waiting to wrap its OnClickListener lazily.
+    private static ClickGuard findGuard(View view) {
+        OnClickListener listener = retrieveOnClickListener(view);
+        if (listener instanceof GuardedOnClickListener) {
+            return ((GuardedOnClickListener) listener).getClickGuard();
+        }
+        if (!ListenerGetter.hasTouchAndKeyListeners()) {
+            return null;
+        }
+        // A TouchSuppressor may have taken the touch slot since, but not the key slot.
+        Object lazy = ListenerGetter.getKeyListener(view);
+        if (lazy instanceof ChainedLazyInstaller) {
+            lazy = ((ChainedLazyInstaller) lazy).mInstaller;
+        }
+        return lazy instanceof LazyInstaller ? ((LazyInstaller) lazy).mGuard : null;
+    }
+
     /**
      * Utility method. Retrieve {@linkplain android.view.View.OnClickListener OnClickListener} from
      * a View.
@@ -244,6 +687,51 @@ public abstract class ClickGuard {
         return ListenerGetter.get(view);
     }
 
+    /**
+     * Utility method. Freeze all the guards of the process until {@link #unfreeze()} is called, for
+     * example during an activity transition. Clicks on all the guarded Views are ignored meanwhile.
+     * <p/>
+     * Freezing costs one volatile write, however many guards there are, and posts nothing to the
+     * message queue.
+     */
+    public static synchronized void freeze() {
+        sFrozenUntilMillis = Long.MAX_VALUE;
+    }
+
+    /**
+     * Utility method. Freeze all the guards of the process for {@code durationMillis}, or longer if
+     * they are already frozen for longer.
+     *
+     * @param durationMillis The duration of the freeze.
+     * @see #freeze()
+     */
+    public static synchronized void freeze(long durationMillis) {
+        if (durationMillis < 0) {
+            throw new IllegalArgumentException("Duration shouldn't be negative!");
+        }
+        final long until = SystemClock.uptimeMillis() + durationMillis;
+        if (until > sFrozenUntilMillis) {
+            sFrozenUntilMillis = until;
+        }
+    }
+
+    /**
+     * Utility method. Unfreeze all the guards of the process, however they were frozen.
+     */
+    public static synchronized void unfreeze() {
+        sFrozenUntilMillis = NOT_FROZEN;
+    }
+
+    /**
+     * Utility method. Determine whether all the guards of the process are frozen.
+     *
+     * @return Whether the guards are frozen.
+     */
+    public static boolean isFrozen() {
+        final long frozenUntil = sFrozenUntilMillis;
+        return frozenUntil != NOT_FROZEN && SystemClock.uptimeMillis() < frozenUntil;
+    }
+
     // ---------------------------------------------------------------------------------------------
     //                                  Utility methods end
     // ---------------------------------------------------------------------------------------------
@@ -256,6 +744,11 @@ public abstract class ClickGuard {
      * @see #addAll(android.view.View, android.view.View...)
      */
     public ClickGuard add(View view) {
+        add(view, null);
+        return this;
+    }
+
+    private void add(View view, WrapperCache cache) {
         if (view == null) {
             throw new IllegalArgumentException("View shouldn't be null!");
         }
@@ -264,12 +757,12 @@ public abstract class ClickGuard {
             throw new IllegalStateException("Haven't set an OnClickListener to View (id: 0x"
                     + Integer.toHexString(view.getId()) + ")!");
         }
-        view.setOnClickListener(wrapOnClickListener(listener));
-        return this;
+        view.setOnClickListener(cache != null ? cache.wrap(this, listener) : wrapOnClickListener(listener));
     }
 
     /**
      * Like {@link #add(android.view.View)}. Let a series of views to be guarded by this ClickGuard.
+     * Views sharing the same OnClickListener share the same GuardedOnClickListener as well.
      *
      * @param view   The view to be guarded.
      * @param others More views to be guarded.
@@ -277,142 +770,1381 @@ public abstract class ClickGuard {
      * @see #add(android.view.View)
      */
     public ClickGuard addAll(View view, View... others) {
-        add(view);
+        WrapperCache cache = new WrapperCache();
+        add(view, cache);
         for (View v : others) {
-            add(v);
+            add(v, cache);
         }
         return this;
     }
 
     /**
      * Like {@link #add(android.view.View)}. Let a series of views to be guarded by this ClickGuard.
+     * Views sharing the same OnClickListener share the same GuardedOnClickListener as well.
      *
      * @param views The views to be guarded.
      * @return This ClickGuard instance.
      * @see #add(android.view.View)
      */
     public ClickGuard addAll(Iterable<View> views) {
+        WrapperCache cache = new WrapperCache();
         for (View v : views) {
-            add(v);
+            add(v, cache);
         }
         return this;
     }
 
     /**
-     * Let the provided {@link android.view.View.OnClickListener} to be a {@link GuardedOnClickListener}
-     * which will be guarded by this ClickGuard.
+     * Like {@link #addAll(android.view.View, android.view.View...)}, but the OnClickListener of a
+     * view is only looked up and wrapped when the view receives its first touch or key event. Until
+     * then, the view just refers to a listener shared by all the views added lazily to this
+     * ClickGuard, so guarding views which are never used costs next to nothing.
+     * <p/>
+     * The OnTouchListener and OnKeyListener of the views are taken over until the OnClickListener
+     * is wrapped, and restored then. They still receive every event meanwhile. Views which already
+     * have one of them cost one small chaining listener each. Views without an OnClickListener at
+     * that time are left unguarded.
+     * Clicks which come without a touch or key event first, like {@link View#performClick()}
+     * called by code, aren't guarded until the OnClickListener is wrapped.
+     * <p/>
+     * On platforms where the OnTouchListener or OnKeyListener of a view can't be retrieved, the
+     * OnClickListener is wrapped at once instead.
      *
-     * @param onClickListener onClickListener
-     * @return A GuardedOnClickListener instance.
+     * @param view   The view to be guarded.
+     * @param others More views to be guarded.
+     * @return This ClickGuard instance.
      */
-    public GuardedOnClickListener wrapOnClickListener(OnClickListener onClickListener) {
-        if (onClickListener == null) {
-            throw new IllegalArgumentException("onClickListener shouldn't be null!");
+    public ClickGuard addLazily(View view, View... others) {
+        if (mLazyInstaller == null) {
+            mLazyInstaller = new LazyInstaller(this);
         }
-        if (onClickListener instanceof GuardedOnClickListener) {
-            throw new IllegalArgumentException("Can't wrap GuardedOnClickListener!");
+        mLazyInstaller.attach(view);
+        for (View v : others) {
+            mLazyInstaller.attach(v);
         }
-        return new InnerGuardedOnClickListener(onClickListener, this);
+        return this;
     }
 
     /**
-     * Let the Guard to start watching.
+     * Let the clickable Views with an OnClickListener in a view hierarchy to be guarded by this
+     * ClickGuard. Unlike {@link #add(android.view.View)}, Views without an OnClickListener and Views
+     * which are already guarded are skipped instead of causing an exception.
+     * <p/>
+     * The hierarchy is walked iteratively in a single pass, {@code root} included.
+     *
+     * @param root   The root of the view hierarchy.
+     * @param filter The filter used to select Views. Can be null.
+     * @return This ClickGuard instance.
      */
-    public abstract void watch();
+    public ClickGuard addTree(ViewGroup root, ViewFilter filter) {
+        if (root == null) {
+            throw new IllegalArgumentException("Root shouldn't be null!");
+        }
+        WrapperCache cache = new WrapperCache();
+        addIfGuardable(root, filter, cache);
+        // Indices of the next child to visit, one per level of depth.
+        int[] indices = new int[8];
+        int depth = 0;
+        ViewGroup group = root;
+        while (group != null) {
+            final int index = indices[depth];
+            if (index < group.getChildCount()) {
+                indices[depth] = index + 1;
+                View child = group.getChildAt(index);
+                addIfGuardable(child, filter, cache);
+                if (child instanceof ViewGroup) {
+                    if (++depth == indices.length) {
+                        int[] grown = new int[indices.length * 2];
+                        System.arraycopy(indices, 0, grown, 0, indices.length);
+                        indices = grown;
+                    }
+                    indices[depth] = 0;
+                    group = (ViewGroup) child;
+                }
+            } else if (depth > 0) {
+                depth--;
+                group = (ViewGroup) group.getParent();
+            } else {
+                group = null;
+            }
+        }
+        return this;
+    }
 
     /**
-     * Let the Guard to have a rest.
+     * Let the item clicks of an AdapterView to be guarded by this ClickGuard, all the items sharing
+     * it. The OnItemClickListener of the AdapterView is wrapped once, so binding the items of the
+     * AdapterView allocates nothing.
+     *
+     * @param adapterView The AdapterView whose item clicks are guarded.
+     * @return This ClickGuard instance.
+     * @see KeyedClickGuard#addItems(android.widget.AdapterView)
      */
-    public abstract void rest();
+    public ClickGuard addItems(AdapterView<?> adapterView) {
+        if (adapterView == null) {
+            throw new IllegalArgumentException("AdapterView shouldn't be null!");
+        }
+        OnItemClickListener listener = adapterView.getOnItemClickListener();
+        if (listener == null) {
+            throw new IllegalStateException("Haven't set an OnItemClickListener to AdapterView (id: 0x"
+                    + Integer.toHexString(adapterView.getId()) + ")!");
+        }
+        adapterView.setOnItemClickListener(wrapOnItemClickListener(listener));
+        return this;
+    }
 
     /**
-     * Determine whether the Guard is on duty.
+     * Let the provided {@link android.widget.AdapterView.OnItemClickListener} to be guarded by this
+     * ClickGuard.
      *
-     * @return Whether the Guard is watching.
+     * @param onItemClickListener The listener to be wrapped.
+     * @return The wrapping OnItemClickListener.
      */
-    public abstract boolean isWatching();
-
-    private static class ClickGuardImpl extends ClickGuard {
-        private static final int WATCHING = 0;
-        private final Handler mHandler = new Handler(Looper.getMainLooper());
-        private final long mWatchPeriodMillis;
-
-        ClickGuardImpl(long watchPeriodMillis) {
-            mWatchPeriodMillis = watchPeriodMillis;
+    public OnItemClickListener wrapOnItemClickListener(OnItemClickListener onItemClickListener) {
+        if (onItemClickListener == null) {
+            throw new IllegalArgumentException("onItemClickListener shouldn't be null!");
         }
-
-        @Override
-        public void watch() {
-            mHandler.sendEmptyMessageDelayed(WATCHING, mWatchPeriodMillis);
+        if (onItemClickListener instanceof GuardedOnItemClickListener) {
+            throw new IllegalArgumentException("Can't wrap a guarded OnItemClickListener!");
         }
+        return new GuardedOnItemClickListener(this, onItemClickListener);
+    }
 
-        @Override
-        public void rest() {
-            mHandler.removeMessages(WATCHING);
+    private void addIfGuardable(View view, ViewFilter filter, WrapperCache cache) {
+        if (!view.isClickable() || (filter != null && !filter.accept(view))) {
+            return;
         }
-
+        OnClickListener listener = retrieveOnClickListener(view);
+        if (listener != null && !(listener instanceof GuardedOnClickListener)) {
+            view.setOnClickListener(cache.wrap(this, listener));
+        }
+    }
+
+    /**
+     * Let a view guarded by this ClickGuard not to be guarded anymore. The OnClickListener wrapped
+     * by {@link #add(android.view.View)} is restored. A {@link GuardedOnClickListener} set directly
+     * is the original listener itself, so it is left in place.
+     *
+     * @param view The guarded view.
+     * @return This ClickGuard instance.
+     */
+    public ClickGuard remove(View view) {
+        if (view == null) {
+            throw new IllegalArgumentException("View shouldn't be null!");
+        }
+        OnClickListener listener = retrieveOnClickListener(view);
+        if (!(listener instanceof GuardedOnClickListener)
+                || ((GuardedOnClickListener) listener).getClickGuard() != this) {
+            throw new IllegalStateException("The view (id: 0x" + Integer.toHexString(view.getId())
+                    + ") isn't guarded by this ClickGuard!");
+        }
+        ((GuardedOnClickListener) listener).onRemoved();
+        OnClickListener wrapped = ((GuardedOnClickListener) listener).getWrapped();
+        if (wrapped != null) {
+            view.setOnClickListener(wrapped);
+        }
+        return this;
+    }
+
+    /**
+     * Let the taps on a view which start while this ClickGuard is watching to be dropped at touch
+     * dispatch. A dropped tap doesn't change the pressed state of the view, so nothing is redrawn,
+     * and it never reaches {@link View#performClick()}, so no click sound or accessibility event
+     * is emitted either. Clicks from other sources are still guarded by the OnClickListener.
+     * <p/>
+     * The OnTouchListener of the view is wrapped by a {@link TouchSuppressor}, which passes it the
+     * events of the taps which aren't dropped.
+     *
+     * @param view The view whose taps are suppressed, usually a view guarded by this ClickGuard.
+     * @return This ClickGuard instance.
+     */
+    public ClickGuard suppressTouches(View view) {
+        if (view == null) {
+            throw new IllegalArgumentException("View shouldn't be null!");
+        }
+        view.setOnTouchListener(new TouchSuppressor(this, ListenerGetter.getTouchListener(view)));
+        return this;
+    }
+
+    /**
+     * Let the provided {@link android.view.View.OnClickListener} to be a {@link GuardedOnClickListener}
+     * which will be guarded by this ClickGuard.
+     *
+     * @param onClickListener onClickListener
+     * @return A GuardedOnClickListener instance.
+     */
+    public GuardedOnClickListener wrapOnClickListener(OnClickListener onClickListener) {
+        if (onClickListener == null) {
+            throw new IllegalArgumentException("onClickListener shouldn't be null!");
+        }
+        if (onClickListener instanceof GuardedOnClickListener) {
+            throw new IllegalArgumentException("Can't wrap GuardedOnClickListener!");
+        }
+        return new InnerGuardedOnClickListener(onClickListener, this);
+    }
+
+    /**
+     * Collect metrics of the clicks accepted and ignored by this ClickGuard into {@code metrics}.
+     * Clicks are recorded in the global metrics as well, if they are enabled.
+     *
+     * @param metrics The metrics, or {@code null} to stop collecting.
+     * @return This ClickGuard instance.
+     * @see ClickGuardMetrics#enableGlobal()
+     */
+    public ClickGuard setMetrics(ClickGuardMetrics metrics) {
+        mMetrics = metrics;
+        return this;
+    }
+
+    /**
+     * @return The metrics set by {@link #setMetrics(ClickGuardMetrics)}, or {@code null}.
+     */
+    public ClickGuardMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * @return The stream of the clicks seen by this ClickGuard, accepted and ignored ones alike.
+     * Taps dropped by a {@link TouchSuppressor} are published as ignored clicks, when they go down.
+     * Clicks are only published while the stream or one of its operators has subscribers.
+     */
+    public ClickStream clicks() {
+        if (mClicks == null) {
+            mClicks = new ClickStream(this, null);
+        }
+        return mClicks;
+    }
+
+    void publish(View view, boolean accepted) {
+        final ClickStream clicks = mClicks;
+        if (clicks != null && clicks.hasSinks()) {
+            clicks.emit(view, SystemClock.uptimeMillis(), accepted);
+        }
+    }
+
+    // Called when a click has claimed this guard, before it is handled.
+    void recordClaimed() {
+        if (mMetrics != null || ClickGuardMetrics.global() != null) {
+            mLastAcceptedMillis = SystemClock.uptimeMillis();
+        }
+    }
+
+    // Called once the handling of a claimed click has confirmed it.
+    void recordAccepted() {
+        final ClickGuardMetrics metrics = mMetrics;
+        final ClickGuardMetrics global = ClickGuardMetrics.global();
+        if (metrics != null) {
+            metrics.recordAccepted();
+        }
+        if (global != null) {
+            global.recordAccepted();
+        }
+    }
+
+    void recordIgnored() {
+        final ClickGuardMetrics metrics = mMetrics;
+        final ClickGuardMetrics global = ClickGuardMetrics.global();
+        if (metrics == null && global == null) {
+            return;
+        }
+        if (isFrozen() || isBlockedByAncestor()) {
+            // No watch period of this guard ignored the click.
+            if (metrics != null) {
+                metrics.recordBlocked();
+            }
+            if (global != null) {
+                global.recordBlocked();
+            }
+            return;
+        }
+        final long lastAccepted = mLastAcceptedMillis;
+        final long sinceWatchStart = lastAccepted != UNKNOWN ? SystemClock.uptimeMillis() - lastAccepted : -1L;
+        if (metrics != null) {
+            metrics.recordIgnored(sinceWatchStart);
+        }
+        if (global != null) {
+            global.recordIgnored(sinceWatchStart);
+        }
+    }
+
+    // Whether an ancestor scope is watching while this guard itself isn't.
+    boolean isBlockedByAncestor() {
+        return false;
+    }
+
+    /**
+     * Let the Guard to start watching.
+     */
+    public abstract void watch();
+
+    /**
+     * Let the Guard to have a rest.
+     */
+    public abstract void rest();
+
+    /**
+     * Determine whether the Guard is on duty.
+     *
+     * @return Whether the Guard is watching.
+     */
+    public abstract boolean isWatching();
+
+    /**
+     * @return The current watch period in millis.
+     */
+    public abstract long getWatchPeriodMillis();
+
+    /**
+     * Let the Guard to start watching if it isn't watching.
+     * <p/>
+     * The default implementation is a plain {@link #isWatching()} check followed by {@link #watch()}.
+     * Guards which can be shared between threads make it atomic, so that exactly one caller wins per
+     * watch period.
+     *
+     * @return Whether the Guard started watching because of this call.
+     */
+    public boolean tryWatch() {
+        if (isWatching()) {
+            return false;
+        }
+        watch();
+        return true;
+    }
+
+    /**
+     * Undo the last successful {@link #tryWatch()}, as if its click hadn't been accepted. This is
+     * what happens when {@link GuardedOnClickListener#onClicked()} returns {@code false}.
+     * <p/>
+     * The default implementation is {@link #rest()}, which is exact for guards accepting one click
+     * per watch period. Guards accepting bursts of clicks give back one click only, and scopes
+     * disarm the ancestors they armed.
+     */
+    public void cancelWatch() {
+        rest();
+    }
+
+    /**
+     * {@link #tryWatch()} identifying the accepted click by the returned claim, which is handed
+     * back to {@link #cancelClaim(long)} or {@link #rearm(long)} once the click is handled. Guards
+     * shared between threads thus never mistake the click of another thread for their own.
+     *
+     * @return The claim of the accepted click, or {@link Guard#NO_CLAIM} if it isn't accepted.
+     */
+    long tryClaim() {
+        return tryWatch() ? 0L : Guard.NO_CLAIM;
+    }
+
+    /**
+     * {@link #cancelWatch()} of the click claimed by {@code claim}.
+     */
+    void cancelClaim(long claim) {
+        cancelWatch();
+    }
+
+    /**
+     * Restart the watch period started by the click claimed by {@code claim} once the click has
+     * been handled, unless it was cancelled since. Guards watching for a fixed period count it
+     * from the end of the handler, as a slow handler would use it up otherwise.
+     */
+    void rearm(long claim) {
+    }
+
+    /**
+     * Let the Guard to stop watching and cancel its pending work, like a timer message, so that it
+     * is no longer referenced from the message queue. The Guard can still be used afterwards.
+     * <p/>
+     * The default implementation is {@link #rest()}.
+     */
+    public void release() {
+        rest();
+    }
+
+    private static class ClickGuardImpl extends ClickGuard {
+        private final TimingWheel.Timeout mTimeout = new TimingWheel.Timeout();
+        private final long mWatchPeriodMillis;
+        // Posted by calls from other threads than the main thread. Created on first such call.
+        private Runnable mPostedWatch;
+        private Runnable mPostedRest;
+        // Whether the click accepted by the last tryWatch() is yet to be rearmed.
+        private boolean mAccepted;
+
+        ClickGuardImpl(long watchPeriodMillis) {
+            mWatchPeriodMillis = watchPeriodMillis;
+        }
+
+        @Override
+        public void watch() {
+            final TimingWheel wheel = TimingWheel.mainWheel();
+            if (wheel.isConfinedThread()) {
+                wheel.schedule(mTimeout, mWatchPeriodMillis);
+                return;
+            }
+            if (mPostedWatch == null) {
+                mPostedWatch = new Runnable() {
+                    @Override
+                    public void run() {
+                        watch();
+                    }
+                };
+            }
+            wheel.post(mPostedWatch);
+        }
+
+        @Override
+        public void rest() {
+            final TimingWheel wheel = TimingWheel.mainWheel();
+            if (wheel.isConfinedThread()) {
+                wheel.cancel(mTimeout);
+                return;
+            }
+            if (mPostedRest == null) {
+                mPostedRest = new Runnable() {
+                    @Override
+                    public void run() {
+                        rest();
+                    }
+                };
+            }
+            wheel.post(mPostedRest);
+        }
+
+        @Override
+        public boolean isWatching() {
+            return mTimeout.isScheduled();
+        }
+
+        @Override
+        public boolean tryWatch() {
+            if (!super.tryWatch()) {
+                return false;
+            }
+            mAccepted = true;
+            return true;
+        }
+
+        @Override
+        public void cancelWatch() {
+            mAccepted = false;
+            super.cancelWatch();
+        }
+
+        @Override
+        void rearm(long claim) {
+            if (mAccepted) {
+                mAccepted = false;
+                watch();
+            }
+        }
+
+        @Override
+        public long getWatchPeriodMillis() {
+            return mWatchPeriodMillis;
+        }
+    }
+
+    // Adapter of a Guard of the core module.
+    private static class CoreClickGuard extends ClickGuard {
+        private final Guard mGuard;
+
+        CoreClickGuard(Guard guard) {
+            mGuard = guard;
+        }
+
+        @Override
+        public void watch() {
+            mGuard.watch();
+        }
+
+        @Override
+        public void rest() {
+            mGuard.rest();
+        }
+
+        @Override
+        public boolean isWatching() {
+            return mGuard.isWatching();
+        }
+
+        @Override
+        public long getWatchPeriodMillis() {
+            return mGuard.getWatchPeriodMillis();
+        }
+
+        @Override
+        public boolean tryWatch() {
+            return mGuard.tryWatch();
+        }
+
+        @Override
+        public void cancelWatch() {
+            mGuard.cancelWatch();
+        }
+
+        @Override
+        long tryClaim() {
+            return mGuard.tryClaim();
+        }
+
+        @Override
+        void cancelClaim(long claim) {
+            mGuard.cancelClaim(claim);
+        }
+
+        @Override
+        void rearm(long claim) {
+            mGuard.rearm(claim);
+        }
+
+        @Override
+        boolean isBlockedByAncestor() {
+            return mGuard instanceof ScopedGuard && ((ScopedGuard) mGuard).isBlockedByAncestor();
+        }
+    }
+
+    private static class LooperClickGuard extends ClickGuard {
+        private static final int WATCHING = 0;
+        private final Handler mHandler;
+        private final long mWatchPeriodMillis;
+        // Whether the click accepted by the last tryWatch() is yet to be rearmed.
+        private boolean mAccepted;
+
+        LooperClickGuard(long watchPeriodMillis, Looper looper) {
+            mWatchPeriodMillis = watchPeriodMillis;
+            mHandler = new Handler(looper);
+        }
+
+        @Override
+        public void watch() {
+            mHandler.sendEmptyMessageDelayed(WATCHING, mWatchPeriodMillis);
+        }
+
+        @Override
+        public void rest() {
+            mHandler.removeMessages(WATCHING);
+        }
+
+        @Override
+        public boolean isWatching() {
+            return mHandler.hasMessages(WATCHING);
+        }
+
+        @Override
+        public long getWatchPeriodMillis() {
+            return mWatchPeriodMillis;
+        }
+
+        @Override
+        public synchronized boolean tryWatch() {
+            if (!super.tryWatch()) {
+                return false;
+            }
+            mAccepted = true;
+            return true;
+        }
+
+        @Override
+        public synchronized void cancelWatch() {
+            mAccepted = false;
+            super.cancelWatch();
+        }
+
+        @Override
+        synchronized void rearm(long claim) {
+            if (mAccepted) {
+                mAccepted = false;
+                rest();
+                watch();
+            }
+        }
+    }
+
+    /**
+     * Wrappers created during one bulk guarding, so that Views sharing an OnClickListener share the
+     * wrapping GuardedOnClickListener. The common case of one shared listener needs no map.
+     */
+    private static final class WrapperCache {
+        private OnClickListener mLastListener;
+        private GuardedOnClickListener mLastWrapper;
+        private IdentityHashMap<OnClickListener, GuardedOnClickListener> mWrappers;
+
+        GuardedOnClickListener wrap(ClickGuard guard, OnClickListener listener) {
+            if (listener == mLastListener) {
+                return mLastWrapper;
+            }
+            GuardedOnClickListener wrapper = null;
+            if (mWrappers != null) {
+                wrapper = mWrappers.get(listener);
+            }
+            if (wrapper == null) {
+                wrapper = guard.wrapOnClickListener(listener);
+                if (mLastListener != null) {
+                    if (mWrappers == null) {
+                        mWrappers = new IdentityHashMap<OnClickListener, GuardedOnClickListener>();
+                        mWrappers.put(mLastListener, mLastWrapper);
+                    }
+                    mWrappers.put(listener, wrapper);
+                }
+            }
+            mLastListener = listener;
+            mLastWrapper = wrapper;
+            return wrapper;
+        }
+    }
+
+    /**
+     * OnTouchListener and OnKeyListener shared by the views added lazily to a ClickGuard, which
+     * have neither listener of their own. It wraps the OnClickListener of a view on the first touch
+     * or key event, then steps aside. The event itself is not consumed, so it goes on to the
+     * wrapped listener.
+     */
+    private static final class LazyInstaller implements OnTouchListener, OnKeyListener {
+        private final ClickGuard mGuard;
+        private final WrapperCache mCache = new WrapperCache();
+
+        LazyInstaller(ClickGuard guard) {
+            mGuard = guard;
+        }
+
+        void attach(View view) {
+            if (view == null) {
+                throw new IllegalArgumentException("View shouldn't be null!");
+            }
+            if (!ListenerGetter.hasTouchAndKeyListeners()) {
+                // Their own listeners couldn't be chained, so the view is guarded at once.
+                install(view, this, null, null);
+                return;
+            }
+            OnTouchListener touchListener = ListenerGetter.getTouchListener(view);
+            OnKeyListener keyListener = ListenerGetter.getKeyListener(view);
+            if (touchListener == null && keyListener == null) {
+                view.setOnTouchListener(this);
+                view.setOnKeyListener(this);
+            } else {
+                ChainedLazyInstaller chained = new ChainedLazyInstaller(this, touchListener, keyListener);
+                view.setOnTouchListener(chained);
+                view.setOnKeyListener(chained);
+            }
+        }
+
+        @Override
+        public boolean onTouch(View v, MotionEvent event) {
+            install(v, this, null, null);
+            return false;
+        }
+
+        @Override
+        public boolean onKey(View v, int keyCode, KeyEvent event) {
+            install(v, this, null, null);
+            return false;
+        }
+
+        /**
+         * Give the listener slots taken by {@code lazy} back to the listeners they held before, and
+         * wrap the OnClickListener. Slots taken over since, like by a {@link TouchSuppressor}, are
+         * left alone.
+         */
+        void install(View v, Object lazy, OnTouchListener touchListener, OnKeyListener keyListener) {
+            if (ListenerGetter.getTouchListener(v) == lazy) {
+                v.setOnTouchListener(touchListener);
+            }
+            if (ListenerGetter.getKeyListener(v) == lazy) {
+                v.setOnKeyListener(keyListener);
+            }
+            OnClickListener listener = retrieveOnClickListener(v);
+            if (listener != null && !(listener instanceof GuardedOnClickListener)) {
+                v.setOnClickListener(mCache.wrap(mGuard, listener));
+            }
+        }
+    }
+
+    /**
+     * Lazy installer of a view which has an OnTouchListener or an OnKeyListener of its own. The
+     * events are passed on to them, and they are restored once the OnClickListener is wrapped.
+     */
+    private static final class ChainedLazyInstaller implements OnTouchListener, OnKeyListener {
+        private final LazyInstaller mInstaller;
+        private final OnTouchListener mTouchListener;
+        private final OnKeyListener mKeyListener;
+
+        ChainedLazyInstaller(LazyInstaller installer, OnTouchListener touchListener,
+                             OnKeyListener keyListener) {
+            mInstaller = installer;
+            mTouchListener = touchListener;
+            mKeyListener = keyListener;
+        }
+
+        @Override
+        public boolean onTouch(View v, MotionEvent event) {
+            mInstaller.install(v, this, mTouchListener, mKeyListener);
+            return mTouchListener != null && mTouchListener.onTouch(v, event);
+        }
+
+        @Override
+        public boolean onKey(View v, int keyCode, KeyEvent event) {
+            mInstaller.install(v, this, mTouchListener, mKeyListener);
+            return mKeyListener != null && mKeyListener.onKey(v, keyCode, event);
+        }
+    }
+
+    /**
+     * Releases a guard once none of the Views registered to it is attached to a window. A View
+     * counts from its registration, or its next attach, until it is detached.
+     */
+    private static final class ReleaseOnDetachListener implements View.OnAttachStateChangeListener {
+        private final ClickGuard mGuard;
+        private final Set<View> mUsers = new HashSet<View>();
+
+        ReleaseOnDetachListener(ClickGuard guard) {
+            mGuard = guard;
+        }
+
+        void add(View view) {
+            // Never registered twice on the same View.
+            view.removeOnAttachStateChangeListener(this);
+            view.addOnAttachStateChangeListener(this);
+            mUsers.add(view);
+        }
+
+        @Override
+        public void onViewAttachedToWindow(View v) {
+            mUsers.add(v);
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            OnClickListener listener = retrieveOnClickListener(v);
+            if (listener instanceof GuardedOnClickListener
+                    && ((GuardedOnClickListener) listener).getClickGuard() == mGuard) {
+                ((GuardedOnClickListener) listener).onRemoved();
+            }
+            if (mUsers.remove(v) && mUsers.isEmpty()) {
+                mGuard.release();
+            }
+        }
+    }
+
+    /**
+     * OnTouchListener which drops the whole gesture of a tap starting while a ClickGuard is
+     * watching, or while all the guards are frozen. Gestures are told apart by their down time,
+     * so no state but one timestamp is kept.
+     * <p/>
+     * A TouchSuppressor can't be shared between Views, as Views can be touched at the same time.
+     *
+     * @see #suppressTouches(android.view.View)
+     */
+    public static final class TouchSuppressor implements OnTouchListener {
+        private static final long NONE = Long.MIN_VALUE;
+        private final ClickGuard mGuard;
+        private final OnTouchListener mNext;
+        private long mDroppedDownTime = NONE;
+
+        public TouchSuppressor(ClickGuard guard) {
+            this(guard, null);
+        }
+
+        /**
+         * @param guard The ClickGuard whose watching drops taps.
+         * @param next  The OnTouchListener receiving the events of the taps which aren't dropped.
+         *              Can be null.
+         */
+        public TouchSuppressor(ClickGuard guard, OnTouchListener next) {
+            if (guard == null) {
+                throw new IllegalArgumentException("Guard shouldn't be null!");
+            }
+            mGuard = guard;
+            mNext = next;
+        }
+
+        /**
+         * @return Whether the event is consumed, because it belongs to a dropped tap or because the
+         * next OnTouchListener consumed it.
+         */
+        @Override
+        public boolean onTouch(View v, MotionEvent event) {
+            final long downTime = event.getDownTime();
+            if (event.getAction() == MotionEvent.ACTION_DOWN) {
+                if (isFrozen() || mGuard.isWatching()) {
+                    mDroppedDownTime = downTime;
+                    mGuard.recordIgnored();
+                    mGuard.publish(v, false);
+                    return true;
+                }
+                mDroppedDownTime = NONE;
+            } else if (downTime == mDroppedDownTime) {
+                return true;
+            }
+            return mNext != null && mNext.onTouch(v, event);
+        }
+
+        public ClickGuard getClickGuard() {
+            return mGuard;
+        }
+
+        /**
+         * @return The OnTouchListener receiving the events of the taps which aren't dropped, or
+         * {@code null}.
+         */
+        public OnTouchListener getNext() {
+            return mNext;
+        }
+    }
+
+    /**
+     * Filter used to select Views when guarding a view hierarchy.
+     *
+     * @see #addTree(android.view.ViewGroup, ViewFilter)
+     */
+    public interface ViewFilter {
+        /**
+         * @param view A clickable View in the hierarchy.
+         * @return Whether the View should be guarded.
+         */
+        boolean accept(View view);
+    }
+
+    /**
+     * OnClickListener which can avoid multiple rapid clicks.
+     */
+    public static abstract class GuardedOnClickListener implements OnClickListener {
+        private ClickGuard mGuard;
+        private OnClickListener mWrapped;
+
+        public GuardedOnClickListener() {
+            this(DEFAULT_WATCH_PERIOD_MILLIS);
+        }
+
+        public GuardedOnClickListener(long watchPeriodMillis) {
+            this(newGuard(watchPeriodMillis));
+        }
+
+        public GuardedOnClickListener(ClickGuard guard) {
+            this(null, guard);
+        }
+
+        GuardedOnClickListener(OnClickListener onClickListener, ClickGuard guard) {
+            mGuard = guard;
+            mWrapped = onClickListener;
+        }
+
+        @Override
+        final public void onClick(View v) {
+            final long claim = isFrozen() ? Guard.NO_CLAIM : mGuard.tryClaim();
+            if (claim == Guard.NO_CLAIM) {
+                // Guard is guarding, can't do anything.
+                mGuard.recordIgnored();
+                mGuard.publish(v, false);
+                dispatchIgnored(v);
+                return;
+            }
+            dispatchClaimed(v);
+            // Guard was relaxing and becomes vigilant. Run!
+            final ClickProfiler profiler = ClickProfiler.global();
+            if (!(profiler == null ? dispatchClick(v) : profiler.profile(this, v))) {
+                // Guard is told to relax again, as if this click hadn't been accepted.
+                mGuard.cancelClaim(claim);
+                return;
+            }
+            mGuard.recordAccepted();
+            // The watch period starts over, so that it isn't used up by a slow handler.
+            mGuard.rearm(claim);
+        }
+
+        void dispatchClaimed(View v) {
+            mGuard.recordClaimed();
+            mGuard.publish(v, true);
+        }
+
+        boolean dispatchClick(View v) {
+            if (mWrapped != null) {
+                mWrapped.onClick(v);
+            }
+            return onClicked();
+        }
+
+        void dispatchIgnored(View v) {
+            onIgnored();
+        }
+
+        // Called when the view is removed from the guard, for listeners with pending work.
+        void onRemoved() {
+        }
+
+        // The class whose code handles the click, as reported by ClickProfiler.
+        Class<?> getProfiledClass() {
+            return mWrapped != null ? mWrapped.getClass() : getClass();
+        }
+
+        /**
+         * Called when a click is allowed. The guard has already started watching at this moment, so
+         * concurrent clicks are ignored while this method runs. Guards watching for a fixed period
+         * start it over once this method returns.
+         *
+         * @return If {@code true} is returned, the host view will be guarded. All click events in
+         * the upcoming watch period will be ignored. Otherwise, the acceptance of this click is
+         * undone through {@link ClickGuard#cancelWatch()}.
+         */
+        public abstract boolean onClicked();
+
+        /**
+         * Called when a click is ignored.
+         */
+        public void onIgnored() {
+        }
+
+        public ClickGuard getClickGuard() {
+            return mGuard;
+        }
+
+        OnClickListener getWrapped() {
+            return mWrapped;
+        }
+    }
+
+    /**
+     * GuardedOnClickListener whose guard keeps watching until the work triggered by the accepted
+     * click completes, instead of for a fixed watch period:
+     * <pre><code>
+     * button.setOnClickListener(new AsyncGuardedOnClickListener(10000) {
+     *     {@literal @Override}
+     *     public Future&lt;?&gt; onClickedAsync() {
+     *         return executor.submit(submitOrderTask);
+     *     }
+     * });
+     * </code></pre>
+     * <p/>
+     * Callback based work can hand back a {@link Completion} and complete it from the callback.
+     * <p/>
+     * An optional timeout bounds the watching, in case the work never completes. Clicks arriving
+     * while the work is in flight can be attached to it through {@link #onAttached(Future)} instead
+     * of being just ignored.
+     */
+    public static abstract class AsyncGuardedOnClickListener extends GuardedOnClickListener {
+        /**
+         * Timeout value meaning the guard watches until the work completes, however long it takes.
+         */
+        public static final long NO_TIMEOUT = 0L;
+
+        private final CompletionClickGuard mCompletionGuard;
+        private final boolean mAttachToInFlight;
+
+        public AsyncGuardedOnClickListener() {
+            this(NO_TIMEOUT);
+        }
+
+        public AsyncGuardedOnClickListener(long timeoutMillis) {
+            this(timeoutMillis, false);
+        }
+
+        /**
+         * @param timeoutMillis    The longest time to watch for, or {@link #NO_TIMEOUT}.
+         * @param attachToInFlight Whether clicks arriving while the work is in flight are delivered
+         *                         to {@link #onAttached(Future)}.
+         */
+        public AsyncGuardedOnClickListener(long timeoutMillis, boolean attachToInFlight) {
+            this(new CompletionClickGuard(timeoutMillis), attachToInFlight);
+        }
+
+        private AsyncGuardedOnClickListener(CompletionClickGuard guard, boolean attachToInFlight) {
+            super(guard);
+            mCompletionGuard = guard;
+            mAttachToInFlight = attachToInFlight;
+        }
+
+        /**
+         * Called when a click is allowed. Start the work triggered by the click here.
+         *
+         * @return The handle of the started work. The host view is guarded until it is done or the
+         * timeout is reached. If {@code null} or a done handle is returned, the click still counts
+         * as accepted, but nothing is in flight, so the next click will not be ignored.
+         */
+        public abstract Future<?> onClickedAsync();
+
         @Override
-        public boolean isWatching() {
-            return mHandler.hasMessages(WATCHING);
+        public final boolean onClicked() {
+            Future<?> inFlight = onClickedAsync();
+            if (inFlight == null || inFlight.isDone()) {
+                // The work has run already, so there is nothing to watch for.
+                mCompletionGuard.rest();
+            } else {
+                mCompletionGuard.setInFlight(inFlight);
+            }
+            return true;
+        }
+
+        /**
+         * Called when a click is ignored. If attaching is enabled and the work of the accepted
+         * click is still in flight, the click is delivered to {@link #onAttached(Future)}.
+         * Subclasses overriding this method should call through to super.
+         */
+        @Override
+        public void onIgnored() {
+            if (mAttachToInFlight) {
+                Future<?> inFlight = mCompletionGuard.getInFlight();
+                if (inFlight != null && !inFlight.isDone()) {
+                    onAttached(inFlight);
+                }
+            }
+        }
+
+        /**
+         * Called when a click arrives while the work of the accepted click is in flight, if
+         * attaching is enabled.
+         *
+         * @param inFlight The handle returned by {@link #onClickedAsync()} for the accepted click.
+         */
+        public void onAttached(Future<?> inFlight) {
+        }
+
+        /**
+         * @return The handle of the work in flight, or {@code null}.
+         */
+        public Future<?> getInFlight() {
+            return mCompletionGuard.getInFlight();
         }
     }
 
     /**
-     * OnClickListener which can avoid multiple rapid clicks.
+     * Handle of callback based work, completed by the callback.
+     *
+     * @see AsyncGuardedOnClickListener
      */
-    public static abstract class GuardedOnClickListener implements OnClickListener {
-        private ClickGuard mGuard;
-        private OnClickListener mWrapped;
+    public static final class Completion implements Future<Void> {
+        private volatile boolean mDone;
+        private boolean mCancelled;
 
-        public GuardedOnClickListener() {
+        /**
+         * Mark the work as completed.
+         *
+         * @return Whether this call completed the work. It can only be completed once.
+         */
+        public synchronized boolean complete() {
+            if (mDone) {
+                return false;
+            }
+            mDone = true;
+            notifyAll();
+            return true;
+        }
+
+        @Override
+        public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+            if (mDone) {
+                return false;
+            }
+            mCancelled = true;
+            mDone = true;
+            notifyAll();
+            return true;
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return mCancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return mDone;
+        }
+
+        @Override
+        public synchronized Void get() throws InterruptedException, ExecutionException {
+            while (!mDone) {
+                wait();
+            }
+            if (mCancelled) {
+                throw new CancellationException();
+            }
+            return null;
+        }
+
+        @Override
+        public synchronized Void get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!mDone) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            if (mCancelled) {
+                throw new CancellationException();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * GuardedOnClickListener which batches the clicks of a burst instead of dropping them, for
+     * buttons like "+1" whose clicks all count:
+     * <pre><code>
+     * plusButton.setOnClickListener(new CoalescingOnClickListener(600) {
+     *     {@literal @Override}
+     *     public void onLeadingClick(View v) {
+     *         cart.add(item, 1);
+     *     }
+     *
+     *     {@literal @Override}
+     *     public void onCoalesced(View v, int count) {
+     *         cart.add(item, count);
+     *     }
+     * });
+     * </code></pre>
+     * <p/>
+     * The first click of a burst is delivered at once to {@link #onLeadingClick(View)} and starts
+     * the watch period. The clicks arriving during the watch period are counted, and delivered
+     * together to {@link #onCoalesced(View, int)} when it ends.
+     * <p/>
+     * In trailing-only mode, nothing is delivered at once. Every click restarts the period, and all
+     * the clicks of the burst are delivered to {@link #onCoalesced(View, int)} once no click has
+     * arrived for a whole period, like a debounce. Only the last click of the burst counts as
+     * accepted, in the metrics and the click stream, and the clicks it absorbed as ignored.
+     * <p/>
+     * Counting never allocates. The listener is confined to the main thread.
+     * <p/>
+     * The clicks still pending are dropped when the view is removed from the guard, or when the
+     * guard is released, for example by {@link #releaseOnDetach(android.view.View)}.
+     */
+    public static abstract class CoalescingOnClickListener extends GuardedOnClickListener {
+        private final boolean mTrailingOnly;
+        private final TimingWheel.Timeout mFlush = new TimingWheel.Timeout() {
+            @Override
+            void onExpired() {
+                flush();
+            }
+        };
+        private View mLastView;
+        private int mCount;
+
+        public CoalescingOnClickListener() {
             this(DEFAULT_WATCH_PERIOD_MILLIS);
         }
 
-        public GuardedOnClickListener(long watchPeriodMillis) {
-            this(newGuard(watchPeriodMillis));
+        public CoalescingOnClickListener(long watchPeriodMillis) {
+            this(watchPeriodMillis, false);
         }
 
-        public GuardedOnClickListener(ClickGuard guard) {
-            this(null, guard);
+        /**
+         * @param watchPeriodMillis The watch period, or the quiet period in trailing-only mode.
+         * @param trailingOnly      Whether the first click of a burst is delayed and counted like
+         *                          the others.
+         */
+        public CoalescingOnClickListener(long watchPeriodMillis, boolean trailingOnly) {
+            this(new CoalescingClickGuard(watchPeriodMillis), trailingOnly);
         }
 
-        GuardedOnClickListener(OnClickListener onClickListener, ClickGuard guard) {
-            mGuard = guard;
-            mWrapped = onClickListener;
+        private CoalescingOnClickListener(CoalescingClickGuard guard, boolean trailingOnly) {
+            super(guard);
+            guard.mListener = this;
+            mTrailingOnly = trailingOnly;
         }
 
         @Override
-        final public void onClick(View v) {
-            if (mGuard.isWatching()) {
-                // Guard is guarding, can't do anything.
-                onIgnored();
+        void dispatchClaimed(View v) {
+            if (!mTrailingOnly) {
+                super.dispatchClaimed(v);
                 return;
             }
-            // Guard is relaxing. Run!
-            if (mWrapped != null) {
-                mWrapped.onClick(v);
+            // The verdict on a click waits for the burst to end. The pending click is absorbed by
+            // this one, and only the last click of the burst is accepted, by flush().
+            final ClickGuard guard = getClickGuard();
+            if (mCount > 0) {
+                guard.recordIgnored();
+                guard.publish(mLastView, false);
+            }
+            guard.recordClaimed();
+        }
+
+        @Override
+        boolean dispatchClick(View v) {
+            if (mTrailingOnly) {
+                record(v);
+                // The guard rests, so that the next click restarts the period.
+                return false;
+            }
+            flush();
+            TimingWheel.mainWheel().schedule(mFlush, getClickGuard().getWatchPeriodMillis());
+            onLeadingClick(v);
+            return true;
+        }
+
+        @Override
+        void dispatchIgnored(View v) {
+            // Clicks dropped by a freeze aren't counted.
+            if (mFlush.isScheduled() && !isFrozen()) {
+                record(v);
+            }
+            onIgnored();
+        }
+
+        private void record(View v) {
+            mLastView = v;
+            mCount++;
+            if (mTrailingOnly) {
+                TimingWheel.mainWheel().schedule(mFlush, getClickGuard().getWatchPeriodMillis());
             }
-            if (onClicked()) {
-                // Guard becomes vigilant.
-                mGuard.watch();
+        }
+
+        @Override
+        void onRemoved() {
+            drop();
+        }
+
+        // Forget the pending clicks, so that nothing refers to the view from the wheel anymore.
+        void drop() {
+            TimingWheel.mainWheel().cancel(mFlush);
+            mLastView = null;
+            mCount = 0;
+        }
+
+        private void flush() {
+            TimingWheel.mainWheel().cancel(mFlush);
+            final View view = mLastView;
+            final int count = mCount;
+            mLastView = null;
+            mCount = 0;
+            if (count > 0) {
+                if (mTrailingOnly) {
+                    getClickGuard().recordAccepted();
+                    getClickGuard().publish(view, true);
+                }
+                onCoalesced(view, count);
             }
         }
 
         /**
-         * Called when a click is allowed.
+         * Not called. Clicks are delivered to {@link #onLeadingClick(View)} and
+         * {@link #onCoalesced(View, int)}.
+         */
+        @Override
+        public final boolean onClicked() {
+            return true;
+        }
+
+        /**
+         * Called at once for the first click of a burst. Never called in trailing-only mode.
          *
-         * @return If {@code true} is returned, the host view will be guarded. All click events in
-         * the upcoming watch period will be ignored. Otherwise, the next click will not be ignored.
+         * @param v The clicked view.
          */
-        public abstract boolean onClicked();
+        public void onLeadingClick(View v) {
+        }
 
         /**
-         * Called when a click is ignored.
+         * Called when the period after a burst ends, if clicks were counted.
+         *
+         * @param v     The view of the last counted click.
+         * @param count The number of clicks counted. The leading click isn't counted.
          */
-        public void onIgnored() {
+        public abstract void onCoalesced(View v, int count);
+
+        /**
+         * @return The number of clicks counted and not yet delivered.
+         */
+        public int getPendingCount() {
+            return mCount;
         }
+    }
 
-        public ClickGuard getClickGuard() {
+    // Handler based guard of a CoalescingOnClickListener, dropping its pending clicks on release.
+    private static class CoalescingClickGuard extends ClickGuardImpl {
+        private CoalescingOnClickListener mListener;
+
+        CoalescingClickGuard(long watchPeriodMillis) {
+            super(watchPeriodMillis);
+        }
+
+        @Override
+        public void release() {
+            super.release();
+            mListener.drop();
+        }
+
+        @Override
+        void rearm(long claim) {
+            // The watch period ends with the flush of the burst it counts.
+        }
+    }
+
+    // Watches from the accepted click until the work in flight is done or the timeout is reached.
+    private static class CompletionClickGuard extends ClickGuard {
+        private final long mTimeoutMillis;
+        private volatile boolean mWatching;
+        private volatile long mWatchEndMillis;
+        private volatile Future<?> mInFlight;
+
+        CompletionClickGuard(long timeoutMillis) {
+            mTimeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public void watch() {
+            mInFlight = null;
+            mWatchEndMillis = mTimeoutMillis > 0
+                    ? SystemClock.uptimeMillis() + mTimeoutMillis : Long.MAX_VALUE;
+            mWatching = true;
+        }
+
+        @Override
+        public void rest() {
+            mWatching = false;
+            mInFlight = null;
+        }
+
+        @Override
+        public boolean isWatching() {
+            if (!mWatching) {
+                return false;
+            }
+            final Future<?> inFlight = mInFlight;
+            if ((inFlight != null && inFlight.isDone()) || SystemClock.uptimeMillis() >= mWatchEndMillis) {
+                rest();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public long getWatchPeriodMillis() {
+            return mTimeoutMillis;
+        }
+
+        void setInFlight(Future<?> inFlight) {
+            mInFlight = inFlight;
+        }
+
+        Future<?> getInFlight() {
+            return mWatching ? mInFlight : null;
+        }
+    }
+
+    // OnItemClickListener guarded by one ClickGuard for all the items.
+    static final class GuardedOnItemClickListener implements OnItemClickListener {
+        private final ClickGuard mGuard;
+        private final OnItemClickListener mWrapped;
+
+        GuardedOnItemClickListener(ClickGuard guard, OnItemClickListener onItemClickListener) {
+            mGuard = guard;
+            mWrapped = onItemClickListener;
+        }
+
+        @Override
+        public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+            final long claim = isFrozen() ? Guard.NO_CLAIM : mGuard.tryClaim();
+            if (claim == Guard.NO_CLAIM) {
+                mGuard.recordIgnored();
+                mGuard.publish(view, false);
+                return;
+            }
+            mGuard.recordClaimed();
+            mGuard.publish(view, true);
+            mWrapped.onItemClick(parent, view, position, id);
+            mGuard.recordAccepted();
+            mGuard.rearm(claim);
+        }
+
+        ClickGuard getClickGuard() {
             return mGuard;
         }
     }
@@ -433,26 +2165,57 @@ public abstract class ClickGuard {
 
     /**
      * Class used for retrieve OnClickListener from a View.
+     * <p/>
+     * The implementation and its reflective lookups are created on first use, not when this class
+     * is loaded. Looked up fields are cached and made accessible once, so every retrieval costs
+     * at most two plain field reads. On ICS MR1 and above, Views without any OnClickListener are
+     * short-circuited by {@link View#hasOnClickListeners()} and no reflection happens at all.
      */
     static abstract class ListenerGetter {
 
-        private static ListenerGetter IMPL;
-
-        static {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
-                IMPL = new ListenerGetterIcs();
-            } else {
-                IMPL = new ListenerGetterBase();
-            }
+        private static class Holder {
+            static final ListenerGetter IMPL = create();
         }
 
         static OnClickListener get(View view) {
-            return IMPL.getOnClickListener(view);
+            return Holder.IMPL.getOnClickListener(view);
+        }
+
+        static OnTouchListener getTouchListener(View view) {
+            return Holder.IMPL.getOnTouchListener(view);
+        }
+
+        static OnKeyListener getKeyListener(View view) {
+            return Holder.IMPL.getOnKeyListener(view);
+        }
+
+        static boolean hasTouchAndKeyListeners() {
+            return Holder.IMPL.canGetTouchAndKeyListeners();
+        }
+
+        static ListenerGetter create() {
+            final int sdk = Build.VERSION.SDK_INT;
+            try {
+                if (sdk >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
+                    return new ListenerGetterIcsMr1();
+                } else if (sdk >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                    return new ListenerGetterIcs();
+                }
+            } catch (RuntimeException ignored) {
+                // Hidden fields of this platform differ from AOSP. Try the pre-ICS layout.
+            }
+            try {
+                return new ListenerGetterBase();
+            } catch (RuntimeException e) {
+                return new ListenerGetterUnavailable(e.getMessage());
+            }
         }
 
         static Field getField(Class clazz, String fieldName) {
             try {
-                return clazz.getDeclaredField(fieldName);
+                Field field = clazz.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                return field;
             } catch (NoSuchFieldException ignored) {
                 throw new RuntimeException("Can't get " + fieldName + " of " + clazz.getName());
             }
@@ -466,7 +2229,19 @@ public abstract class ClickGuard {
             }
         }
 
+        // Like getField(), but null is returned for a missing field.
+        static Field findField(Class<?> clazz, String fieldName) {
+            try {
+                return getField(clazz, fieldName);
+            } catch (RuntimeException ignored) {
+                return null;
+            }
+        }
+
         static Object getFieldValue(Field field, Object object) {
+            if (field == null) {
+                return null;
+            }
             try {
                 return field.get(object);
             } catch (IllegalAccessException ignored) {
@@ -476,27 +2251,68 @@ public abstract class ClickGuard {
 
         abstract OnClickListener getOnClickListener(View view);
 
+        /**
+         * @return The OnTouchListener of {@code view}, or {@code null}, also when it can't be
+         * retrieved on this platform.
+         */
+        abstract OnTouchListener getOnTouchListener(View view);
+
+        /**
+         * @return The OnKeyListener of {@code view}, or {@code null}, also when it can't be
+         * retrieved on this platform.
+         */
+        abstract OnKeyListener getOnKeyListener(View view);
+
+        /**
+         * @return Whether OnTouchListeners and OnKeyListeners can be retrieved on this platform.
+         * Only the OnClickListener lookup is required, the others are looked up separately.
+         */
+        abstract boolean canGetTouchAndKeyListeners();
+
         private static class ListenerGetterBase extends ListenerGetter {
-            private Field mOnClickListenerField;
+            private final Field mOnClickListenerField;
+            private final Field mOnTouchListenerField;
+            private final Field mOnKeyListenerField;
 
             ListenerGetterBase() {
                 mOnClickListenerField = getField(View.class, "mOnClickListener");
+                mOnTouchListenerField = findField(View.class, "mOnTouchListener");
+                mOnKeyListenerField = findField(View.class, "mOnKeyListener");
             }
 
             @Override
             public OnClickListener getOnClickListener(View view) {
                 return (OnClickListener) getFieldValue(mOnClickListenerField, view);
             }
+
+            @Override
+            public OnTouchListener getOnTouchListener(View view) {
+                return (OnTouchListener) getFieldValue(mOnTouchListenerField, view);
+            }
+
+            @Override
+            public OnKeyListener getOnKeyListener(View view) {
+                return (OnKeyListener) getFieldValue(mOnKeyListenerField, view);
+            }
+
+            @Override
+            boolean canGetTouchAndKeyListeners() {
+                return mOnTouchListenerField != null && mOnKeyListenerField != null;
+            }
         }
 
         private static class ListenerGetterIcs extends ListenerGetter {
-            private Field mListenerInfoField;
-            private Field mOnClickListenerField;
+            private final Field mListenerInfoField;
+            private final Field mOnClickListenerField;
+            private final Field mOnTouchListenerField;
+            private final Field mOnKeyListenerField;
 
             ListenerGetterIcs() {
                 mListenerInfoField = getField(View.class, "mListenerInfo");
-                mListenerInfoField.setAccessible(true);
                 mOnClickListenerField = getField("android.view.View$ListenerInfo", "mOnClickListener");
+                final Class<?> listenerInfoClass = mOnClickListenerField.getDeclaringClass();
+                mOnTouchListenerField = findField(listenerInfoClass, "mOnTouchListener");
+                mOnKeyListenerField = findField(listenerInfoClass, "mOnKeyListener");
             }
 
             @Override
@@ -505,6 +2321,60 @@ public abstract class ClickGuard {
                 return listenerInfo != null ?
                         (OnClickListener) getFieldValue(mOnClickListenerField, listenerInfo) : null;
             }
+
+            @Override
+            public OnTouchListener getOnTouchListener(View view) {
+                Object listenerInfo = getFieldValue(mListenerInfoField, view);
+                return listenerInfo != null ?
+                        (OnTouchListener) getFieldValue(mOnTouchListenerField, listenerInfo) : null;
+            }
+
+            @Override
+            public OnKeyListener getOnKeyListener(View view) {
+                Object listenerInfo = getFieldValue(mListenerInfoField, view);
+                return listenerInfo != null ?
+                        (OnKeyListener) getFieldValue(mOnKeyListenerField, listenerInfo) : null;
+            }
+
+            @Override
+            boolean canGetTouchAndKeyListeners() {
+                return mOnTouchListenerField != null && mOnKeyListenerField != null;
+            }
+        }
+
+        private static class ListenerGetterIcsMr1 extends ListenerGetterIcs {
+            @Override
+            public OnClickListener getOnClickListener(View view) {
+                return view.hasOnClickListeners() ? super.getOnClickListener(view) : null;
+            }
+        }
+
+        private static class ListenerGetterUnavailable extends ListenerGetter {
+            private final String mReason;
+
+            ListenerGetterUnavailable(String reason) {
+                mReason = reason;
+            }
+
+            @Override
+            public OnClickListener getOnClickListener(View view) {
+                throw new IllegalStateException("Can't retrieve OnClickListener on this platform: " + mReason);
+            }
+
+            @Override
+            public OnTouchListener getOnTouchListener(View view) {
+                throw new IllegalStateException("Can't retrieve OnTouchListener on this platform: " + mReason);
+            }
+
+            @Override
+            public OnKeyListener getOnKeyListener(View view) {
+                throw new IllegalStateException("Can't retrieve OnKeyListener on this platform: " + mReason);
+            }
+
+            @Override
+            boolean canGetTouchAndKeyListeners() {
+                return false;
+            }
         }
     }
 }
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters of the clicks accepted and ignored by ClickGuards.
+ * <p/>
+ * Metrics are opt-in. They can be collected for a single guard:
+ * <pre><code>
+ * ClickGuardMetrics metrics = new ClickGuardMetrics();
+ * guard.setMetrics(metrics);
+ * </code></pre>
+ * <p/>
+ * Or for all the guards of the process:
+ * <pre><code>
+ * ClickGuardMetrics metrics = ClickGuardMetrics.enableGlobal();
+ * </code></pre>
+ * <p/>
+ * Besides the counters, the intervals between the start of a watch period and each click it
+ * ignores are recorded in a histogram with fixed buckets. Clicks ignored while the guard itself
+ * wasn't watching, because all the guards were frozen or an ancestor scope was watching, are
+ * counted as blocked instead. Recording is lock-free and never allocates.
+ */
+public final class ClickGuardMetrics {
+
+    // Exclusive upper bounds of the histogram buckets. The last bucket has no upper bound.
+    private static final long[] BUCKET_BOUNDS_MILLIS = {50, 100, 200, 300, 500, 750, 1000, 2000};
+
+    private static volatile ClickGuardMetrics sGlobal;
+
+    private final AtomicLong mAccepted = new AtomicLong();
+    private final AtomicLong mIgnored = new AtomicLong();
+    private final AtomicLong mBlocked = new AtomicLong();
+    private final AtomicLongArray mIgnoredIntervals = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+
+    /**
+     * Start collecting metrics of all the guards of the process.
+     *
+     * @return The global metrics.
+     */
+    public static synchronized ClickGuardMetrics enableGlobal() {
+        if (sGlobal == null) {
+            sGlobal = new ClickGuardMetrics();
+        }
+        return sGlobal;
+    }
+
+    /**
+     * Stop collecting metrics of all the guards of the process.
+     */
+    public static synchronized void disableGlobal() {
+        sGlobal = null;
+    }
+
+    /**
+     * @return The global metrics, or {@code null} if they are disabled.
+     */
+    public static ClickGuardMetrics global() {
+        return sGlobal;
+    }
+
+    /**
+     * Record an accepted click.
+     */
+    public void recordAccepted() {
+        mAccepted.incrementAndGet();
+    }
+
+    /**
+     * Record an ignored click.
+     *
+     * @param sinceWatchStartMillis Time since the current watch period started, or a negative
+     *                              value if unknown.
+     */
+    public void recordIgnored(long sinceWatchStartMillis) {
+        mIgnored.incrementAndGet();
+        if (sinceWatchStartMillis >= 0) {
+            mIgnoredIntervals.incrementAndGet(bucketOf(sinceWatchStartMillis));
+        }
+    }
+
+    /**
+     * Record a click ignored while the guard itself wasn't watching, because all the guards were
+     * frozen or an ancestor scope was watching. It is counted as ignored too, but kept out of the
+     * histogram, as no watch period of the guard was running.
+     */
+    public void recordBlocked() {
+        mIgnored.incrementAndGet();
+        mBlocked.incrementAndGet();
+    }
+
+    /**
+     * @return A snapshot of the current counters.
+     */
+    public Snapshot snapshot() {
+        long[] intervals = new long[mIgnoredIntervals.length()];
+        for (int i = 0; i < intervals.length; i++) {
+            intervals[i] = mIgnoredIntervals.get(i);
+        }
+        return new Snapshot(mAccepted.get(), mIgnored.get(), mBlocked.get(), intervals);
+    }
+
+    /**
+     * Take a snapshot of the current counters and reset them to zero. A click recorded concurrently
+     * is counted either in the returned snapshot or in the next one.
+     *
+     * @return A snapshot of the counters before reset.
+     */
+    public Snapshot snapshotAndReset() {
+        long[] intervals = new long[mIgnoredIntervals.length()];
+        for (int i = 0; i < intervals.length; i++) {
+            intervals[i] = mIgnoredIntervals.getAndSet(i, 0L);
+        }
+        return new Snapshot(mAccepted.getAndSet(0L), mIgnored.getAndSet(0L), mBlocked.getAndSet(0L),
+                intervals);
+    }
+
+    /**
+     * Reset all the counters to zero.
+     */
+    public void reset() {
+        snapshotAndReset();
+    }
+
+    private static int bucketOf(long millis) {
+        final long[] bounds = BUCKET_BOUNDS_MILLIS;
+        for (int i = 0; i < bounds.length; i++) {
+            if (millis < bounds[i]) {
+                return i;
+            }
+        }
+        return bounds.length;
+    }
+
+    /**
+     * Immutable snapshot of {@link ClickGuardMetrics}.
+     */
+    public static final class Snapshot {
+        private final long mAcceptedCount;
+        private final long mIgnoredCount;
+        private final long mBlockedCount;
+        private final long[] mIgnoredIntervalCounts;
+
+        Snapshot(long acceptedCount, long ignoredCount, long blockedCount, long[] ignoredIntervalCounts) {
+            mAcceptedCount = acceptedCount;
+            mIgnoredCount = ignoredCount;
+            mBlockedCount = blockedCount;
+            mIgnoredIntervalCounts = ignoredIntervalCounts;
+        }
+
+        /**
+         * @return Number of accepted clicks.
+         */
+        public long getAcceptedCount() {
+            return mAcceptedCount;
+        }
+
+        /**
+         * @return Number of ignored clicks, the blocked ones included.
+         */
+        public long getIgnoredCount() {
+            return mIgnoredCount;
+        }
+
+        /**
+         * @return Number of clicks ignored while the guard itself wasn't watching, because all the
+         * guards were frozen or an ancestor scope was watching.
+         */
+        public long getBlockedCount() {
+            return mBlockedCount;
+        }
+
+        /**
+         * @return Exclusive upper bounds in millis of the histogram buckets. Bucket {@code i} counts
+         * intervals in {@code [bounds[i - 1], bounds[i])}. The last bucket, whose index is
+         * {@code bounds.length}, counts all the longer intervals.
+         */
+        public long[] getBucketBoundsMillis() {
+            return BUCKET_BOUNDS_MILLIS.clone();
+        }
+
+        /**
+         * @return Number of ignored clicks per histogram bucket of the interval since the start of
+         * the watch period.
+         * @see #getBucketBoundsMillis()
+         */
+        public long[] getIgnoredIntervalCounts() {
+            return mIgnoredIntervalCounts.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{accepted=" + mAcceptedCount
+                    + ", ignored=" + mIgnoredCount
+                    + ", blocked=" + mBlockedCount
+                    + ", ignoredIntervals=" + Arrays.toString(mIgnoredIntervalCounts)
+                    + ", bucketBoundsMillis=" + Arrays.toString(BUCKET_BOUNDS_MILLIS)
+                    + "}";
+        }
+    }
+}
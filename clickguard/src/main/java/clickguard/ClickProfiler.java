@@ -0,0 +1,296 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard;
+
+import android.os.Build;
+import android.os.Trace;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Profiler of the click handlers run by {@link ClickGuard.GuardedOnClickListener}s.
+ * <p/>
+ * Profiling is opt-in and process wide:
+ * <pre><code>
+ * ClickProfiler profiler = ClickProfiler.enable(16, new ClickProfiler.SlowHandlerCallback() {
+ *     {@literal @Override}
+ *     public void onSlowHandler(Class&lt;?&gt; listenerClass, long durationNanos) {
+ *         Log.w(TAG, listenerClass.getName() + " took " + durationNanos + "ns");
+ *     }
+ * });
+ * </code></pre>
+ * <p/>
+ * Every accepted click is wrapped in an {@link Trace} section named after the class of the
+ * listener, on API 18 and above, and its duration is recorded in a histogram of the listener
+ * class with fixed buckets. Handlers running longer than the frame budget are reported to the
+ * callback. When profiling is disabled, a click costs one more volatile read.
+ */
+public final class ClickProfiler {
+
+    // Exclusive upper bounds of the histogram buckets. The last bucket has no upper bound.
+    private static final long[] BUCKET_BOUNDS_MILLIS = {1, 2, 4, 8, 16, 32, 64, 128, 256};
+
+    // Longest section name accepted by Trace.
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+
+    private static final boolean TRACE_AVAILABLE =
+            Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+
+    private static volatile ClickProfiler sGlobal;
+
+    private final long mFrameBudgetNanos;
+    private final SlowHandlerCallback mCallback;
+    private final ConcurrentHashMap<Class<?>, Record> mRecords = new ConcurrentHashMap<Class<?>, Record>();
+
+    /**
+     * Start profiling the click handlers of all the guards of the process.
+     *
+     * @param frameBudgetMillis Handlers running longer than this are reported to {@code callback}.
+     * @param callback          The callback of slow handlers. Can be null.
+     * @return The global profiler.
+     */
+    public static synchronized ClickProfiler enable(long frameBudgetMillis, SlowHandlerCallback callback) {
+        if (frameBudgetMillis < 0) {
+            throw new IllegalArgumentException("Frame budget shouldn't be negative!");
+        }
+        sGlobal = new ClickProfiler(frameBudgetMillis, callback);
+        return sGlobal;
+    }
+
+    /**
+     * Stop profiling.
+     */
+    public static synchronized void disable() {
+        sGlobal = null;
+    }
+
+    /**
+     * @return The global profiler, or {@code null} if profiling is disabled.
+     */
+    public static ClickProfiler global() {
+        return sGlobal;
+    }
+
+    private ClickProfiler(long frameBudgetMillis, SlowHandlerCallback callback) {
+        mFrameBudgetNanos = frameBudgetMillis * 1000000L;
+        mCallback = callback;
+    }
+
+    /**
+     * Run the handlers of an accepted click.
+     *
+     * @return What {@link ClickGuard.GuardedOnClickListener#onClicked()} returned.
+     */
+    boolean profile(ClickGuard.GuardedOnClickListener listener, View view) {
+        final Record record = recordOf(listener.getProfiledClass());
+        if (TRACE_AVAILABLE) {
+            Trace.beginSection(record.mSectionName);
+        }
+        final long start = System.nanoTime();
+        try {
+            return listener.dispatchClick(view);
+        } finally {
+            final long duration = System.nanoTime() - start;
+            if (TRACE_AVAILABLE) {
+                Trace.endSection();
+            }
+            record.add(duration);
+            if (duration > mFrameBudgetNanos && mCallback != null) {
+                mCallback.onSlowHandler(record.mListenerClass, duration);
+            }
+        }
+    }
+
+    private Record recordOf(Class<?> listenerClass) {
+        Record record = mRecords.get(listenerClass);
+        if (record == null) {
+            final Record created = new Record(listenerClass);
+            record = mRecords.putIfAbsent(listenerClass, created);
+            if (record == null) {
+                record = created;
+            }
+        }
+        return record;
+    }
+
+    /**
+     * @return Snapshots of the profiles of all the listener classes which have handled a click.
+     */
+    public List<Profile> snapshot() {
+        List<Profile> profiles = new ArrayList<Profile>(mRecords.size());
+        for (Record record : mRecords.values()) {
+            profiles.add(record.snapshot());
+        }
+        return profiles;
+    }
+
+    /**
+     * @return The snapshot of the profile of {@code listenerClass}, or {@code null} if it hasn't
+     * handled any click.
+     */
+    public Profile snapshot(Class<?> listenerClass) {
+        Record record = mRecords.get(listenerClass);
+        return record != null ? record.snapshot() : null;
+    }
+
+    /**
+     * Drop all the profiles.
+     */
+    public void reset() {
+        mRecords.clear();
+    }
+
+    private static int bucketOf(long nanos) {
+        final long millis = nanos / 1000000L;
+        final long[] bounds = BUCKET_BOUNDS_MILLIS;
+        for (int i = 0; i < bounds.length; i++) {
+            if (millis < bounds[i]) {
+                return i;
+            }
+        }
+        return bounds.length;
+    }
+
+    /**
+     * Callback of handlers running longer than the frame budget.
+     */
+    public interface SlowHandlerCallback {
+        /**
+         * Called on the thread of the click, right after the handler returns.
+         *
+         * @param listenerClass The class of the listener.
+         * @param durationNanos How long the handler ran.
+         */
+        void onSlowHandler(Class<?> listenerClass, long durationNanos);
+    }
+
+    // Constant-memory histogram of one listener class.
+    private static final class Record {
+        final Class<?> mListenerClass;
+        final String mSectionName;
+        final AtomicLong mCount = new AtomicLong();
+        final AtomicLong mTotalNanos = new AtomicLong();
+        final AtomicLong mMaxNanos = new AtomicLong();
+        final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+
+        Record(Class<?> listenerClass) {
+            mListenerClass = listenerClass;
+            final String name = listenerClass.getName();
+            mSectionName = name.length() <= MAX_SECTION_NAME_LENGTH
+                    ? name : name.substring(name.length() - MAX_SECTION_NAME_LENGTH);
+        }
+
+        void add(long nanos) {
+            mCount.incrementAndGet();
+            mTotalNanos.addAndGet(nanos);
+            mBuckets.incrementAndGet(bucketOf(nanos));
+            long max = mMaxNanos.get();
+            while (nanos > max && !mMaxNanos.compareAndSet(max, nanos)) {
+                max = mMaxNanos.get();
+            }
+        }
+
+        Profile snapshot() {
+            long[] buckets = new long[mBuckets.length()];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = mBuckets.get(i);
+            }
+            return new Profile(mListenerClass, mCount.get(), mTotalNanos.get(), mMaxNanos.get(), buckets);
+        }
+    }
+
+    /**
+     * Immutable snapshot of the profile of one listener class.
+     */
+    public static final class Profile {
+        private final Class<?> mListenerClass;
+        private final long mCount;
+        private final long mTotalNanos;
+        private final long mMaxNanos;
+        private final long[] mBucketCounts;
+
+        Profile(Class<?> listenerClass, long count, long totalNanos, long maxNanos, long[] bucketCounts) {
+            mListenerClass = listenerClass;
+            mCount = count;
+            mTotalNanos = totalNanos;
+            mMaxNanos = maxNanos;
+            mBucketCounts = bucketCounts;
+        }
+
+        /**
+         * @return The class of the listener.
+         */
+        public Class<?> getListenerClass() {
+            return mListenerClass;
+        }
+
+        /**
+         * @return Number of clicks handled.
+         */
+        public long getCount() {
+            return mCount;
+        }
+
+        /**
+         * @return Total time spent in the handlers.
+         */
+        public long getTotalNanos() {
+            return mTotalNanos;
+        }
+
+        /**
+         * @return Longest time spent in a handler.
+         */
+        public long getMaxNanos() {
+            return mMaxNanos;
+        }
+
+        /**
+         * @return Exclusive upper bounds in millis of the histogram buckets. Bucket {@code i} counts
+         * durations in {@code [bounds[i - 1], bounds[i])}. The last bucket, whose index is
+         * {@code bounds.length}, counts all the longer durations.
+         */
+        public long[] getBucketBoundsMillis() {
+            return BUCKET_BOUNDS_MILLIS.clone();
+        }
+
+        /**
+         * @return Number of clicks per histogram bucket of the handler duration.
+         * @see #getBucketBoundsMillis()
+         */
+        public long[] getBucketCounts() {
+            return mBucketCounts.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "Profile{listener=" + mListenerClass.getName()
+                    + ", count=" + mCount
+                    + ", totalNanos=" + mTotalNanos
+                    + ", maxNanos=" + mMaxNanos
+                    + ", buckets=" + Arrays.toString(mBucketCounts)
+                    + ", bucketBoundsMillis=" + Arrays.toString(BUCKET_BOUNDS_MILLIS)
+                    + "}";
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard;
+
+import android.view.View;
+
+/**
+ * Stream of the clicks seen by a ClickGuard, accepted and ignored ones alike:
+ * <pre><code>
+ * ClickGuard guard = ClickGuard.guardTree(rootView);
+ * guard.clicks().debounce(300).subscribe(subscriber);
+ * </code></pre>
+ * <p/>
+ * A click is pushed to the subscribers as a View, the uptime of the click and whether the guard
+ * accepted it, so no event object is allocated. The operators are driven by the guard itself and
+ * by the timing wheel which drives the guards:
+ * <ul>
+ * <li>{@link #throttleFirst()} keeps the clicks accepted by the guard.</li>
+ * <li>{@link #debounce(long)} emits the last click of a burst once no click has arrived for a
+ * period.</li>
+ * <li>{@link #sample(long)} emits the latest click of each period in which clicks arrived.</li>
+ * </ul>
+ * <p/>
+ * Streams are hot: clicks seen before a subscription are not replayed. An operator is attached to
+ * its upstream only while it has subscribers. A subscriber receives as many clicks as it has
+ * requested through its {@link Subscription}. The others are kept in a bounded buffer, and dropped
+ * when it is full.
+ * <p/>
+ * Streams are confined to the main thread.
+ */
+public class ClickStream {
+
+    /**
+     * Buffer capacity used by {@link #subscribe(Subscriber)}.
+     */
+    public static final int DEFAULT_BUFFER_CAPACITY = 16;
+
+    private static final Sink[] NO_SINKS = new Sink[0];
+
+    /**
+     * Receiver of the clicks of a stream.
+     */
+    public interface Subscriber {
+        /**
+         * Called once, before any click. Nothing is delivered until clicks are requested.
+         *
+         * @param subscription The subscription, used to request clicks or to cancel.
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called for each requested click.
+         *
+         * @param view         The clicked View.
+         * @param uptimeMillis The time of the click, in {@link android.os.SystemClock#uptimeMillis()}
+         *                     base.
+         * @param accepted     Whether the guard accepted the click.
+         */
+        void onClick(View view, long uptimeMillis, boolean accepted);
+    }
+
+    /**
+     * Link between a stream and one of its subscribers.
+     */
+    public interface Subscription {
+        /**
+         * Request {@code n} more clicks. Buffered clicks are delivered first, right away.
+         *
+         * @param n The number of clicks, or {@link Long#MAX_VALUE} for no limit.
+         */
+        void request(long n);
+
+        /**
+         * Stop receiving clicks. Buffered clicks are discarded.
+         */
+        void cancel();
+
+        /**
+         * @return The number of clicks dropped because the buffer was full.
+         */
+        long getDroppedCount();
+    }
+
+    // Receiver of the clicks pushed by a stream: a downstream operator or a subscription.
+    interface Sink {
+        void accept(View view, long uptimeMillis, boolean accepted);
+    }
+
+    private final ClickGuard mGuard;
+    private final ClickStream mUpstream;
+    // Copied on write, so that sinks can come and go while a click is pushed.
+    private Sink[] mSinks = NO_SINKS;
+
+    ClickStream(ClickGuard guard, ClickStream upstream) {
+        mGuard = guard;
+        mUpstream = upstream;
+    }
+
+    /**
+     * @return A stream of the clicks accepted by the guard, that is the first click of each watch
+     * period.
+     */
+    public ClickStream throttleFirst() {
+        return new Filter(this, true);
+    }
+
+    /**
+     * @return A stream of the clicks ignored by the guard.
+     */
+    public ClickStream ignored() {
+        return new Filter(this, false);
+    }
+
+    /**
+     * Like {@link #debounce(long)}, using the watch period of the guard.
+     *
+     * @return The debounced stream.
+     */
+    public ClickStream debounce() {
+        return debounce(mGuard.getWatchPeriodMillis());
+    }
+
+    /**
+     * @param quietMillis The time without any click after which the last click is emitted.
+     * @return A stream emitting the last click of each burst.
+     */
+    public ClickStream debounce(long quietMillis) {
+        return new Debounce(this, checkPeriod(quietMillis));
+    }
+
+    /**
+     * Like {@link #sample(long)}, using the watch period of the guard.
+     *
+     * @return The sampled stream.
+     */
+    public ClickStream sample() {
+        return sample(mGuard.getWatchPeriodMillis());
+    }
+
+    /**
+     * @param periodMillis The sampling period, started by the first click after an idle period.
+     * @return A stream emitting the latest click of each period in which clicks arrived.
+     */
+    public ClickStream sample(long periodMillis) {
+        return new Sample(this, checkPeriod(periodMillis));
+    }
+
+    /**
+     * Subscribe with a buffer of {@link #DEFAULT_BUFFER_CAPACITY} clicks.
+     *
+     * @param subscriber The subscriber.
+     * @return The subscription, which is passed to the subscriber as well.
+     */
+    public Subscription subscribe(Subscriber subscriber) {
+        return subscribe(subscriber, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    /**
+     * @param subscriber     The subscriber.
+     * @param bufferCapacity The number of clicks kept while the subscriber has no demand. Can be 0.
+     * @return The subscription, which is passed to the subscriber as well.
+     */
+    public Subscription subscribe(Subscriber subscriber, int bufferCapacity) {
+        if (subscriber == null) {
+            throw new IllegalArgumentException("Subscriber shouldn't be null!");
+        }
+        if (bufferCapacity < 0) {
+            throw new IllegalArgumentException("Buffer capacity shouldn't be negative!");
+        }
+        BufferedSubscription subscription = new BufferedSubscription(this, subscriber, bufferCapacity);
+        addSink(subscription);
+        subscriber.onSubscribe(subscription);
+        return subscription;
+    }
+
+    /**
+     * @return The guard whose clicks are streamed.
+     */
+    public ClickGuard getClickGuard() {
+        return mGuard;
+    }
+
+    final void emit(View view, long uptimeMillis, boolean accepted) {
+        final Sink[] sinks = mSinks;
+        for (Sink sink : sinks) {
+            sink.accept(view, uptimeMillis, accepted);
+        }
+    }
+
+    final boolean hasSinks() {
+        return mSinks.length > 0;
+    }
+
+    final void addSink(Sink sink) {
+        final Sink[] sinks = mSinks;
+        final Sink[] newSinks = new Sink[sinks.length + 1];
+        System.arraycopy(sinks, 0, newSinks, 0, sinks.length);
+        newSinks[sinks.length] = sink;
+        mSinks = newSinks;
+        if (sinks.length == 0 && mUpstream != null) {
+            mUpstream.addSink((Sink) this);
+        }
+    }
+
+    final void removeSink(Sink sink) {
+        final Sink[] sinks = mSinks;
+        for (int i = 0; i < sinks.length; i++) {
+            if (sinks[i] == sink) {
+                final Sink[] newSinks = sinks.length == 1 ? NO_SINKS : new Sink[sinks.length - 1];
+                System.arraycopy(sinks, 0, newSinks, 0, i);
+                System.arraycopy(sinks, i + 1, newSinks, i, sinks.length - i - 1);
+                mSinks = newSinks;
+                if (newSinks.length == 0 && mUpstream != null) {
+                    mUpstream.removeSink((Sink) this);
+                    onDetached();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Called when the last subscriber of an operator is gone.
+     */
+    void onDetached() {
+    }
+
+    private static long checkPeriod(long periodMillis) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Period should be positive!");
+        }
+        return periodMillis;
+    }
+
+    private static final class Filter extends ClickStream implements Sink {
+        private final boolean mAccepted;
+
+        Filter(ClickStream upstream, boolean accepted) {
+            super(upstream.mGuard, upstream);
+            mAccepted = accepted;
+        }
+
+        @Override
+        public void accept(View view, long uptimeMillis, boolean accepted) {
+            if (accepted == mAccepted) {
+                emit(view, uptimeMillis, accepted);
+            }
+        }
+    }
+
+    // Keeps the latest click and emits it when its timeout expires.
+    private abstract static class Latest extends ClickStream implements Sink {
+        final long mPeriodMillis;
+        final TimingWheel.Timeout mTimeout = new TimingWheel.Timeout() {
+            @Override
+            void onExpired() {
+                emitLatest();
+            }
+        };
+        private View mView;
+        private long mUptimeMillis;
+        private boolean mAccepted;
+
+        Latest(ClickStream upstream, long periodMillis) {
+            super(upstream.mGuard, upstream);
+            mPeriodMillis = periodMillis;
+        }
+
+        final void keep(View view, long uptimeMillis, boolean accepted) {
+            mView = view;
+            mUptimeMillis = uptimeMillis;
+            mAccepted = accepted;
+        }
+
+        private void emitLatest() {
+            final View view = mView;
+            mView = null;
+            emit(view, mUptimeMillis, mAccepted);
+        }
+
+        @Override
+        void onDetached() {
+            TimingWheel.mainWheel().cancel(mTimeout);
+            mView = null;
+        }
+    }
+
+    private static final class Debounce extends Latest {
+
+        Debounce(ClickStream upstream, long quietMillis) {
+            super(upstream, quietMillis);
+        }
+
+        @Override
+        public void accept(View view, long uptimeMillis, boolean accepted) {
+            keep(view, uptimeMillis, accepted);
+            TimingWheel.mainWheel().schedule(mTimeout, mPeriodMillis);
+        }
+    }
+
+    private static final class Sample extends Latest {
+
+        Sample(ClickStream upstream, long periodMillis) {
+            super(upstream, periodMillis);
+        }
+
+        @Override
+        public void accept(View view, long uptimeMillis, boolean accepted) {
+            keep(view, uptimeMillis, accepted);
+            if (!mTimeout.isScheduled()) {
+                TimingWheel.mainWheel().schedule(mTimeout, mPeriodMillis);
+            }
+        }
+    }
+
+    // Delivers the requested clicks and keeps the others in a ring buffer of primitive arrays.
+    private static final class BufferedSubscription implements Sink, Subscription {
+        private final ClickStream mStream;
+        private final Subscriber mSubscriber;
+        private final View[] mViews;
+        private final long[] mUptimes;
+        private final boolean[] mAccepted;
+        private int mHead;
+        private int mSize;
+        private long mRequested;
+        private long mDropped;
+        private boolean mCancelled;
+        private boolean mDraining;
+
+        BufferedSubscription(ClickStream stream, Subscriber subscriber, int capacity) {
+            mStream = stream;
+            mSubscriber = subscriber;
+            mViews = new View[capacity];
+            mUptimes = new long[capacity];
+            mAccepted = new boolean[capacity];
+        }
+
+        @Override
+        public void accept(View view, long uptimeMillis, boolean accepted) {
+            if (mCancelled) {
+                return;
+            }
+            if (mSize == 0 && mRequested > 0 && !mDraining) {
+                if (mRequested != Long.MAX_VALUE) {
+                    mRequested--;
+                }
+                mSubscriber.onClick(view, uptimeMillis, accepted);
+                return;
+            }
+            if (mSize == mViews.length) {
+                mDropped++;
+                return;
+            }
+            final int tail = (mHead + mSize) % mViews.length;
+            mViews[tail] = view;
+            mUptimes[tail] = uptimeMillis;
+            mAccepted[tail] = accepted;
+            mSize++;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("Requested count should be positive!");
+            }
+            mRequested = mRequested + n < 0 ? Long.MAX_VALUE : mRequested + n;
+            if (mDraining) {
+                return;
+            }
+            mDraining = true;
+            try {
+                while (mSize > 0 && mRequested > 0 && !mCancelled) {
+                    final View view = mViews[mHead];
+                    final long uptimeMillis = mUptimes[mHead];
+                    final boolean accepted = mAccepted[mHead];
+                    mViews[mHead] = null;
+                    mHead = (mHead + 1) % mViews.length;
+                    mSize--;
+                    if (mRequested != Long.MAX_VALUE) {
+                        mRequested--;
+                    }
+                    mSubscriber.onClick(view, uptimeMillis, accepted);
+                }
+            } finally {
+                mDraining = false;
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (mCancelled) {
+                return;
+            }
+            mCancelled = true;
+            for (int i = 0; i < mViews.length; i++) {
+                mViews[i] = null;
+            }
+            mSize = 0;
+            mStream.removeSink(this);
+        }
+
+        @Override
+        public long getDroppedCount() {
+            return mDropped;
+        }
+    }
+}
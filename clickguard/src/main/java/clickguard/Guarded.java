@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Bind a method to the clicks of Views, guarded by a ClickGuard. The binding is generated at
+ * compile time by the {@code clickguard-compiler} annotation processor:
+ * <pre><code>
+ * {@literal @Guarded}(value = R.id.submit, period = 600)
+ * void onSubmit(View view) {
+ *     // React to submit click.
+ * }
+ * </code></pre>
+ * <p/>
+ * The generated {@code <Target>_ClickGuard} class installs the listeners without any reflection:
+ * <pre><code>
+ * MainActivity_ClickGuard.bind(this, findViewById(android.R.id.content));
+ * </code></pre>
+ * <p/>
+ * The annotated method can't be private or static. It can take no parameter or the clicked
+ * {@link android.view.View}. It can return {@code void}, or a {@code boolean} which has the meaning
+ * of {@link ClickGuard.GuardedOnClickListener#onClicked()}. All the Views of one method are guarded
+ * by one ClickGuard.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface Guarded {
+    /**
+     * @return The ids of the Views to be guarded.
+     */
+    int[] value();
+
+    /**
+     * @return The watch period in millis.
+     */
+    long period() default ClickGuard.DEFAULT_WATCH_PERIOD_MILLIS;
+}
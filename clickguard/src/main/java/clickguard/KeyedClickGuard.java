@@ -0,0 +1,261 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard;
+
+import android.view.View;
+import android.view.View.OnClickListener;
+import android.widget.AdapterView;
+import android.widget.AdapterView.OnItemClickListener;
+
+import clickguard.core.KeyedGuard;
+
+/**
+ * Class used to guard clicks per key, like an item id of a list.
+ * <p/>
+ * Each key is watched separately, as if it had its own {@link ClickGuard}. Instead of allocating a
+ * ClickGuard per key, the watch period of every key is kept in a {@link KeyedGuard}, an
+ * open-addressing table of primitive longs with a bounded capacity:
+ * <pre><code>
+ * KeyedClickGuard guard = KeyedClickGuard.newGuard();
+ * row.setOnClickListener(guard.wrapOnClickListener(new KeyedClickGuard.KeyExtractor() {
+ *     {@literal @Override}
+ *     public long getKey(View view) {
+ *         return (Long) view.getTag();
+ *     }
+ * }, onClickListener));
+ * </code></pre>
+ * <p/>
+ * One wrapping listener serves all the rows of a list, so binding a row allocates nothing. The
+ * item clicks of an AdapterView are guarded per item id, or per position without stable ids:
+ * <pre><code>
+ * KeyedClickGuard.newGuard().addItems(listView);
+ * </code></pre>
+ * <p/>
+ * Expired keys are evicted lazily. When the table is full, the key whose watch period ends first
+ * is evicted, in constant time.
+ * <p/>
+ * A KeyedClickGuard is confined to the main thread.
+ */
+public final class KeyedClickGuard {
+
+    /**
+     * Default capacity of watched keys.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final KeyedGuard mGuard;
+
+    /**
+     * Create a KeyedClickGuard with default watch period: {@link ClickGuard#DEFAULT_WATCH_PERIOD_MILLIS}
+     * and default capacity: {@link #DEFAULT_CAPACITY}.
+     *
+     * @return The created KeyedClickGuard instance.
+     */
+    public static KeyedClickGuard newGuard() {
+        return newGuard(ClickGuard.DEFAULT_WATCH_PERIOD_MILLIS);
+    }
+
+    /**
+     * Create a KeyedClickGuard with specific watch period: {@code watchPeriodMillis} and default
+     * capacity: {@link #DEFAULT_CAPACITY}.
+     *
+     * @param watchPeriodMillis The specific watch period.
+     * @return The created KeyedClickGuard instance.
+     */
+    public static KeyedClickGuard newGuard(long watchPeriodMillis) {
+        return newGuard(watchPeriodMillis, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a KeyedClickGuard with specific watch period: {@code watchPeriodMillis} and specific
+     * capacity: {@code capacity}.
+     *
+     * @param watchPeriodMillis The specific watch period.
+     * @param capacity          The maximum number of keys watched at the same time.
+     * @return The created KeyedClickGuard instance.
+     */
+    public static KeyedClickGuard newGuard(long watchPeriodMillis, int capacity) {
+        return new KeyedClickGuard(watchPeriodMillis, capacity);
+    }
+
+    private KeyedClickGuard(long watchPeriodMillis, int capacity) {
+        mGuard = new KeyedGuard(UptimeClock.INSTANCE, watchPeriodMillis, capacity);
+    }
+
+    /**
+     * Let the provided {@link android.view.View.OnClickListener} to be guarded by this
+     * KeyedClickGuard. The key of a click is extracted from the clicked View by {@code keyExtractor}.
+     *
+     * @param keyExtractor    Used to extract the key of a clicked View.
+     * @param onClickListener The listener to be wrapped.
+     * @return The wrapping OnClickListener.
+     */
+    public OnClickListener wrapOnClickListener(KeyExtractor keyExtractor, OnClickListener onClickListener) {
+        if (keyExtractor == null) {
+            throw new IllegalArgumentException("keyExtractor shouldn't be null!");
+        }
+        if (onClickListener == null) {
+            throw new IllegalArgumentException("onClickListener shouldn't be null!");
+        }
+        return new KeyedGuardedOnClickListener(this, keyExtractor, onClickListener);
+    }
+
+    /**
+     * Let the item clicks of an AdapterView to be guarded by this KeyedClickGuard. A click is
+     * guarded on the id of the clicked item, or on its position if the item has no id. The
+     * OnItemClickListener of the AdapterView is wrapped once, so binding the items of the
+     * AdapterView allocates nothing.
+     *
+     * @param adapterView The AdapterView whose item clicks are guarded.
+     * @return This KeyedClickGuard instance.
+     */
+    public KeyedClickGuard addItems(AdapterView<?> adapterView) {
+        if (adapterView == null) {
+            throw new IllegalArgumentException("AdapterView shouldn't be null!");
+        }
+        OnItemClickListener listener = adapterView.getOnItemClickListener();
+        if (listener == null) {
+            throw new IllegalStateException("Haven't set an OnItemClickListener to AdapterView (id: 0x"
+                    + Integer.toHexString(adapterView.getId()) + ")!");
+        }
+        adapterView.setOnItemClickListener(wrapOnItemClickListener(listener));
+        return this;
+    }
+
+    /**
+     * Let the provided {@link android.widget.AdapterView.OnItemClickListener} to be guarded by this
+     * KeyedClickGuard, per item id, or per position if the item has no id.
+     *
+     * @param onItemClickListener The listener to be wrapped.
+     * @return The wrapping OnItemClickListener.
+     */
+    public OnItemClickListener wrapOnItemClickListener(OnItemClickListener onItemClickListener) {
+        if (onItemClickListener == null) {
+            throw new IllegalArgumentException("onItemClickListener shouldn't be null!");
+        }
+        return new KeyedGuardedOnItemClickListener(this, onItemClickListener);
+    }
+
+    /**
+     * Let the Guard to start watching {@code key}.
+     */
+    public void watch(long key) {
+        mGuard.watch(key);
+    }
+
+    /**
+     * Let the Guard to start watching {@code key} if {@code key} isn't watched.
+     *
+     * @return Whether the Guard started watching {@code key} because of this call.
+     */
+    public boolean tryWatch(long key) {
+        return mGuard.tryWatch(key);
+    }
+
+    /**
+     * Let the Guard to have a rest on {@code key}.
+     */
+    public void rest(long key) {
+        mGuard.rest(key);
+    }
+
+    /**
+     * Let the Guard to have a rest on all the keys.
+     */
+    public void rest() {
+        mGuard.rest();
+    }
+
+    /**
+     * Determine whether {@code key} is watched.
+     *
+     * @return Whether {@code key} is watched.
+     */
+    public boolean isWatching(long key) {
+        return mGuard.isWatching(key);
+    }
+
+    /**
+     * @return The number of keys in the table, including expired keys which are not evicted yet.
+     */
+    public int size() {
+        return mGuard.size();
+    }
+
+    /**
+     * @return The maximum number of keys watched at the same time.
+     */
+    public int capacity() {
+        return mGuard.capacity();
+    }
+
+    /**
+     * Used to extract the key of a clicked View.
+     */
+    public interface KeyExtractor {
+        /**
+         * @param view The clicked View.
+         * @return The key the click is guarded on.
+         */
+        long getKey(View view);
+    }
+
+    static final class KeyedGuardedOnClickListener implements OnClickListener {
+        private final KeyedClickGuard mGuard;
+        private final KeyExtractor mKeyExtractor;
+        private final OnClickListener mWrapped;
+
+        KeyedGuardedOnClickListener(KeyedClickGuard guard, KeyExtractor keyExtractor,
+                                    OnClickListener onClickListener) {
+            mGuard = guard;
+            mKeyExtractor = keyExtractor;
+            mWrapped = onClickListener;
+        }
+
+        @Override
+        public void onClick(View v) {
+            if (!ClickGuard.isFrozen() && mGuard.tryWatch(mKeyExtractor.getKey(v))) {
+                mWrapped.onClick(v);
+            }
+        }
+
+        KeyedClickGuard getKeyedClickGuard() {
+            return mGuard;
+        }
+    }
+
+    static final class KeyedGuardedOnItemClickListener implements OnItemClickListener {
+        private final KeyedClickGuard mGuard;
+        private final OnItemClickListener mWrapped;
+
+        KeyedGuardedOnItemClickListener(KeyedClickGuard guard, OnItemClickListener onItemClickListener) {
+            mGuard = guard;
+            mWrapped = onItemClickListener;
+        }
+
+        @Override
+        public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+            if (!ClickGuard.isFrozen() && mGuard.tryWatch(id != AdapterView.INVALID_ROW_ID ? id : position)) {
+                mWrapped.onItemClick(parent, view, position, id);
+            }
+        }
+
+        KeyedClickGuard getKeyedClickGuard() {
+            return mGuard;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Hashed timing wheel shared by all the Handler based ClickGuards of the process.
+ * <p/>
+ * Every {@link Timeout} is linked into the slot its deadline falls into, so scheduling and
+ * cancelling are O(1). The wheel is driven by a single Handler on the main thread which is only
+ * posted for the earliest known deadline, and which is removed as soon as no Timeout is scheduled.
+ * <p/>
+ * The wheel is confined to the thread of its Looper, the main thread for {@link #mainWheel()}.
+ * Callers on other threads go through {@link #post(Runnable)}.
+ */
+final class TimingWheel implements Runnable {
+    private static final long TICK_MILLIS = 10L;
+    private static final int WHEEL_SIZE = 512;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final long IDLE = Long.MAX_VALUE;
+
+    private final Timeout[] mSlots = new Timeout[WHEEL_SIZE];
+    private final Looper mLooper;
+    private final Handler mHandler;
+    private long mCursorTick;
+    private long mWakeupMillis = IDLE;
+    private int mSize;
+
+    // Created on first use, safely from any thread.
+    private static final class MainWheelHolder {
+        static final TimingWheel INSTANCE = new TimingWheel(Looper.getMainLooper());
+    }
+
+    static TimingWheel mainWheel() {
+        return MainWheelHolder.INSTANCE;
+    }
+
+    TimingWheel(Looper looper) {
+        mLooper = looper;
+        mHandler = new Handler(looper);
+        mCursorTick = tickOf(SystemClock.uptimeMillis());
+    }
+
+    /**
+     * Schedule {@code timeout} to expire {@code delayMillis} later. Reschedule it if it is already
+     * scheduled.
+     */
+    void schedule(Timeout timeout, long delayMillis) {
+        long now = SystemClock.uptimeMillis();
+        if (timeout.isScheduled()) {
+            unlink(timeout);
+        } else if (mSize == 0) {
+            mCursorTick = tickOf(now);
+        }
+        timeout.mDeadlineMillis = now + delayMillis;
+        link(timeout);
+        if (timeout.mDeadlineMillis < mWakeupMillis) {
+            wakeupAt(timeout.mDeadlineMillis, now);
+        }
+    }
+
+    /**
+     * Cancel {@code timeout}. Nothing happens if it isn't scheduled.
+     */
+    void cancel(Timeout timeout) {
+        if (!timeout.isScheduled()) {
+            return;
+        }
+        unlink(timeout);
+        if (mSize == 0) {
+            idle();
+        }
+    }
+
+    /**
+     * Cancel all the scheduled Timeouts and let the wheel idle.
+     */
+    void reset() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            Timeout timeout = mSlots[i];
+            while (timeout != null) {
+                Timeout next = timeout.mNext;
+                timeout.mPrev = timeout.mNext = null;
+                timeout.mSlot = Timeout.NOT_SCHEDULED;
+                timeout = next;
+            }
+            mSlots[i] = null;
+        }
+        mSize = 0;
+        idle();
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @return Whether the calling thread is the one the wheel is confined to.
+     */
+    boolean isConfinedThread() {
+        return Looper.myLooper() == mLooper;
+    }
+
+    /**
+     * Run {@code runnable} on the thread the wheel is confined to.
+     */
+    void post(Runnable runnable) {
+        mHandler.post(runnable);
+    }
+
+    @Override
+    public void run() {
+        mWakeupMillis = IDLE;
+        long now = SystemClock.uptimeMillis();
+        long nowTick = tickOf(now);
+        long fromTick = nowTick - mCursorTick >= WHEEL_SIZE ? nowTick - WHEEL_MASK : mCursorTick;
+        for (long tick = fromTick; tick <= nowTick; tick++) {
+            expire((int) (tick & WHEEL_MASK), now);
+        }
+        mCursorTick = nowTick;
+        if (mSize == 0) {
+            idle();
+            return;
+        }
+        // Find the earliest deadline which falls into the upcoming round.
+        for (long tick = nowTick; tick < nowTick + WHEEL_SIZE; tick++) {
+            long roundEnd = (tick + 1) * TICK_MILLIS;
+            long earliest = IDLE;
+            for (Timeout t = mSlots[(int) (tick & WHEEL_MASK)]; t != null; t = t.mNext) {
+                if (t.mDeadlineMillis < roundEnd && t.mDeadlineMillis < earliest) {
+                    earliest = t.mDeadlineMillis;
+                }
+            }
+            if (earliest != IDLE) {
+                wakeupAt(earliest, now);
+                return;
+            }
+        }
+        // All the deadlines are further than one round away. Check again one round later.
+        wakeupAt((nowTick + WHEEL_SIZE) * TICK_MILLIS, now);
+    }
+
+    private void expire(int slot, long now) {
+        Timeout timeout = mSlots[slot];
+        while (timeout != null) {
+            Timeout next = timeout.mNext;
+            if (timeout.mDeadlineMillis <= now) {
+                unlink(timeout);
+                timeout.onExpired();
+                if (next != null && next.mSlot != slot) {
+                    // The callback has changed this slot, start over.
+                    next = mSlots[slot];
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    private void link(Timeout timeout) {
+        int slot = (int) (tickOf(timeout.mDeadlineMillis) & WHEEL_MASK);
+        Timeout head = mSlots[slot];
+        timeout.mSlot = slot;
+        timeout.mPrev = null;
+        timeout.mNext = head;
+        if (head != null) {
+            head.mPrev = timeout;
+        }
+        mSlots[slot] = timeout;
+        mSize++;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.mPrev != null) {
+            timeout.mPrev.mNext = timeout.mNext;
+        } else {
+            mSlots[timeout.mSlot] = timeout.mNext;
+        }
+        if (timeout.mNext != null) {
+            timeout.mNext.mPrev = timeout.mPrev;
+        }
+        timeout.mPrev = timeout.mNext = null;
+        timeout.mSlot = Timeout.NOT_SCHEDULED;
+        mSize--;
+    }
+
+    private void wakeupAt(long uptimeMillis, long now) {
+        if (mWakeupMillis != IDLE) {
+            mHandler.removeCallbacks(this);
+        }
+        mWakeupMillis = uptimeMillis;
+        mHandler.postDelayed(this, uptimeMillis - now);
+    }
+
+    private void idle() {
+        if (mWakeupMillis != IDLE) {
+            mHandler.removeCallbacks(this);
+            mWakeupMillis = IDLE;
+        }
+    }
+
+    private static long tickOf(long uptimeMillis) {
+        return uptimeMillis / TICK_MILLIS;
+    }
+
+    /**
+     * An entry of the wheel. It is reused for every scheduling, so scheduling never allocates.
+     */
+    static class Timeout {
+        static final int NOT_SCHEDULED = -1;
+        long mDeadlineMillis;
+        Timeout mPrev;
+        Timeout mNext;
+        int mSlot = NOT_SCHEDULED;
+
+        boolean isScheduled() {
+            return mSlot != NOT_SCHEDULED;
+        }
+
+        /**
+         * Called on the main thread when the deadline is reached.
+         */
+        void onExpired() {
+        }
+    }
+}
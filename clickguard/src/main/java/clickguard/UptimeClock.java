@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015 Feng Dai
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package clickguard;
+
+import android.os.SystemClock;
+
+import clickguard.core.Clock;
+
+/**
+ * Clock of the Android guards: {@link SystemClock#uptimeMillis()}, the time base of the message
+ * queue.
+ */
+final class UptimeClock implements Clock {
+    static final UptimeClock INSTANCE = new UptimeClock();
+
+    private UptimeClock() {
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return SystemClock.uptimeMillis();
+    }
+}
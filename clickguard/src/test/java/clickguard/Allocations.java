@@ -0,0 +1,29 @@
+package clickguard;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Counts the bytes allocated by the current thread, for the tests checking the memory cost of
+ * guarding. Reading the count allocates a few hundred bytes itself, so measured loops should run
+ * long enough for it not to matter.
+ */
+final class Allocations {
+    private Allocations() {
+    }
+
+    /**
+     * @return The bytes allocated so far by the current thread. Fails the test where the VM can't
+     * tell, instead of letting it pass unchecked.
+     */
+    static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assertTrue("The VM can't count allocated bytes", bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean hotSpotBean = (com.sun.management.ThreadMXBean) bean;
+        assertTrue("The VM can't count allocated bytes", hotSpotBean.isThreadAllocatedMemorySupported());
+        hotSpotBean.setThreadAllocatedMemoryEnabled(true);
+        return hotSpotBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
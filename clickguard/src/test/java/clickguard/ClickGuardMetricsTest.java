@@ -0,0 +1,137 @@
+package clickguard;
+
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ClickGuardMetricsTest {
+
+    private static final View.OnClickListener NOOP = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+        }
+    };
+
+    @Before
+    public void setUp() {
+        TimingWheel.mainWheel().reset();
+    }
+
+    @After
+    public void tearDown() {
+        ClickGuardMetrics.disableGlobal();
+        ClickGuard.unfreeze();
+    }
+
+    @Test
+    public void guardMetricsCountAcceptedAndIgnoredClicks() {
+        ClickGuardMetrics metrics = new ClickGuardMetrics();
+        ClickGuard guard = ClickGuard.newGuard(1000).setMetrics(metrics);
+        ClickGuard.GuardedOnClickListener listener = ClickGuard.wrap(guard, NOOP);
+
+        listener.onClick(null);
+        Robolectric.getUiThreadScheduler().advanceBy(120);
+        listener.onClick(null);
+        Robolectric.getUiThreadScheduler().advanceBy(500);
+        listener.onClick(null);
+        Robolectric.getUiThreadScheduler().advanceBy(380);
+        listener.onClick(null);
+
+        ClickGuardMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.getAcceptedCount());
+        assertEquals(2, snapshot.getIgnoredCount());
+        long[] intervals = snapshot.getIgnoredIntervalCounts();
+        assertEquals(snapshot.getBucketBoundsMillis().length + 1, intervals.length);
+        assertEquals(1, intervals[2]); // [100, 200)
+        assertEquals(1, intervals[5]); // [500, 750)
+    }
+
+    @Test
+    public void freezeAndScopeRejectionsAreCountedAsBlocked() {
+        ClickGuardMetrics metrics = new ClickGuardMetrics();
+        ClickGuard screen = ClickGuard.newScope(1000);
+        ClickGuard button = ClickGuard.newScope(screen, 1000, false).setMetrics(metrics);
+        ClickGuard.GuardedOnClickListener listener = ClickGuard.wrap(button, NOOP);
+
+        ClickGuard.freeze();
+        listener.onClick(null);
+        ClickGuard.unfreeze();
+        screen.watch();
+        listener.onClick(null);
+
+        ClickGuardMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(0, snapshot.getAcceptedCount());
+        assertEquals(2, snapshot.getIgnoredCount());
+        assertEquals(2, snapshot.getBlockedCount());
+        for (long count : snapshot.getIgnoredIntervalCounts()) {
+            assertEquals(0, count);
+        }
+    }
+
+    @Test
+    public void clickRejectedByOnClickedIsNotCountedAsAccepted() {
+        ClickGuardMetrics metrics = new ClickGuardMetrics();
+        ClickGuard.GuardedOnClickListener listener
+                = new ClickGuard.GuardedOnClickListener(ClickGuard.newGuard(1000).setMetrics(metrics)) {
+            @Override
+            public boolean onClicked() {
+                return false;
+            }
+        };
+        listener.onClick(null);
+        listener.onClick(null);
+
+        ClickGuardMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(0, snapshot.getAcceptedCount());
+        assertEquals(0, snapshot.getIgnoredCount());
+    }
+
+    @Test
+    public void snapshotAndResetClearsCounters() {
+        ClickGuardMetrics metrics = new ClickGuardMetrics();
+        ClickGuard.GuardedOnClickListener listener
+                = ClickGuard.wrap(ClickGuard.newGuard(1000).setMetrics(metrics), NOOP);
+        listener.onClick(null);
+        listener.onClick(null);
+
+        ClickGuardMetrics.Snapshot snapshot = metrics.snapshotAndReset();
+        assertEquals(1, snapshot.getAcceptedCount());
+        assertEquals(1, snapshot.getIgnoredCount());
+        assertEquals(1, snapshot.getIgnoredIntervalCounts()[0]);
+
+        snapshot = metrics.snapshot();
+        assertEquals(0, snapshot.getAcceptedCount());
+        assertEquals(0, snapshot.getIgnoredCount());
+        assertEquals(0, snapshot.getIgnoredIntervalCounts()[0]);
+    }
+
+    @Test
+    public void globalMetricsCountClicksOfAllGuards() {
+        ClickGuardMetrics global = ClickGuardMetrics.enableGlobal();
+        ClickGuard.GuardedOnClickListener listener1 = ClickGuard.wrap(NOOP);
+        ClickGuard.GuardedOnClickListener listener2 = ClickGuard.wrap(NOOP);
+        listener1.onClick(null);
+        listener1.onClick(null);
+        listener2.onClick(null);
+
+        ClickGuardMetrics.Snapshot snapshot = global.snapshot();
+        assertEquals(2, snapshot.getAcceptedCount());
+        assertEquals(1, snapshot.getIgnoredCount());
+
+        ClickGuardMetrics.disableGlobal();
+        assertNull(ClickGuardMetrics.global());
+        listener2.onClick(null);
+        assertEquals(1, global.snapshot().getIgnoredCount());
+    }
+}
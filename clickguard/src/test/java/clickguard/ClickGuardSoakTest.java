@@ -0,0 +1,212 @@
+package clickguard;
+
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.internal.ReflectionHelpers;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Soak tests guarding thousands of views. They check the memory cost of guarding and clicking,
+ * the messages left in the main looper, and that nothing is retained once the views are released,
+ * removed or detached while their guards are still watching.
+ * The thresholds are about twice the cost measured when they were set, so that a regression
+ * fails the build.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ClickGuardSoakTest {
+
+    private static final int VIEW_COUNT = 10000;
+
+    // Thresholds, in bytes allocated per guarded view or per click.
+    private static final long MAX_BYTES_PER_GUARD = 320;
+    private static final long MAX_BYTES_PER_SHARED_GUARD = 32;
+    private static final long MAX_BYTES_PER_WRAP = 224;
+    private static final long MAX_BYTES_PER_GUARDED_LISTENER = 224;
+    private static final long MAX_BYTES_PER_CLICK = 16;
+
+    private static final View.OnClickListener NOOP = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+        }
+    };
+
+    private static class NoopGuardedOnClickListener extends ClickGuard.GuardedOnClickListener {
+        @Override
+        public boolean onClicked() {
+            return true;
+        }
+    }
+
+    private interface Guarding {
+        void guard(List<View> views);
+    }
+
+    private enum Destroying {
+        RELEASE, REMOVE, DETACH
+    }
+
+    @Before
+    public void setUp() {
+        TimingWheel.mainWheel().reset();
+    }
+
+    @Test
+    public void guardSoak() {
+        soak(MAX_BYTES_PER_GUARD, new Guarding() {
+            @Override
+            public void guard(List<View> views) {
+                for (View view : views) {
+                    ClickGuard.guard(view);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void guardAllSoak() {
+        soak(MAX_BYTES_PER_SHARED_GUARD, new Guarding() {
+            @Override
+            public void guard(List<View> views) {
+                ClickGuard.guardAll(views);
+            }
+        });
+    }
+
+    @Test
+    public void wrapSoak() {
+        soak(MAX_BYTES_PER_WRAP, new Guarding() {
+            @Override
+            public void guard(List<View> views) {
+                for (View view : views) {
+                    view.setOnClickListener(ClickGuard.wrap(NOOP));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void guardedOnClickListenerSoak() {
+        soak(MAX_BYTES_PER_GUARDED_LISTENER, new Guarding() {
+            @Override
+            public void guard(List<View> views) {
+                for (View view : views) {
+                    view.setOnClickListener(new NoopGuardedOnClickListener());
+                }
+            }
+        });
+    }
+
+    private static void soak(long maxBytesPerView, Guarding guarding) {
+        for (Destroying destroying : Destroying.values()) {
+            List<WeakReference<Object>> references
+                    = guardClickAndDestroy(maxBytesPerView, guarding, destroying);
+            assertEquals(destroying + " retained", 0, countRetained(references));
+        }
+    }
+
+    // Returns weak references to the views, listeners and guards. Nothing else refers to them once
+    // this frame is gone.
+    private static List<WeakReference<Object>> guardClickAndDestroy(long maxBytesPerView,
+                                                                    Guarding guarding,
+                                                                    Destroying destroying) {
+        List<View> views = new ArrayList<View>(VIEW_COUNT);
+        for (int i = 0; i < VIEW_COUNT; i++) {
+            View view = new View(Robolectric.application);
+            view.setOnClickListener(NOOP);
+            views.add(view);
+        }
+
+        // Guard.
+        long start = Allocations.allocatedBytes();
+        guarding.guard(views);
+        long bytesPerView = (Allocations.allocatedBytes() - start) / VIEW_COUNT;
+        assertTrue("Guarding allocated " + bytesPerView + " bytes per view",
+                bytesPerView <= maxBytesPerView);
+
+        List<View.OnClickListener> listeners = new ArrayList<View.OnClickListener>(VIEW_COUNT);
+        List<WeakReference<Object>> references = new ArrayList<WeakReference<Object>>();
+        for (View view : views) {
+            View.OnClickListener listener = ClickGuard.retrieveOnClickListener(view);
+            assertTrue(listener instanceof ClickGuard.GuardedOnClickListener);
+            listeners.add(listener);
+            references.add(new WeakReference<Object>(view));
+            references.add(new WeakReference<Object>(listener));
+            references.add(new WeakReference<Object>(
+                    ((ClickGuard.GuardedOnClickListener) listener).getClickGuard()));
+        }
+
+        // Click every view twice: accepted, then ignored.
+        start = Allocations.allocatedBytes();
+        for (int i = 0; i < VIEW_COUNT; i++) {
+            listeners.get(i).onClick(views.get(i));
+        }
+        for (int i = 0; i < VIEW_COUNT; i++) {
+            listeners.get(i).onClick(views.get(i));
+        }
+        long bytesPerClick = (Allocations.allocatedBytes() - start) / (2 * VIEW_COUNT);
+        assertTrue("Clicking allocated " + bytesPerClick + " bytes per click",
+                bytesPerClick <= MAX_BYTES_PER_CLICK);
+
+        // All the watching guards share one message.
+        assertTrue(TimingWheel.mainWheel().size() > 0);
+        assertTrue(Robolectric.getUiThreadScheduler().size() <= 1);
+
+        // Destroy while the guards are still watching. Nothing may be left pending.
+        for (int i = 0; i < VIEW_COUNT; i++) {
+            View view = views.get(i);
+            ClickGuard guard = ((ClickGuard.GuardedOnClickListener) listeners.get(i)).getClickGuard();
+            switch (destroying) {
+                case RELEASE:
+                    guard.release();
+                    break;
+                case REMOVE:
+                    guard.remove(view);
+                    guard.release();
+                    break;
+                case DETACH:
+                    ClickGuard.releaseOnDetach(view);
+                    ReflectionHelpers.callInstanceMethodReflectively(view, "dispatchDetachedFromWindow");
+                    break;
+            }
+        }
+        assertEquals(0, TimingWheel.mainWheel().size());
+        assertEquals(0, Robolectric.getUiThreadScheduler().size());
+        return references;
+    }
+
+    private static int countRetained(List<WeakReference<Object>> references) {
+        int retained = references.size();
+        for (int attempt = 0; attempt < 20 && retained > 0; attempt++) {
+            System.gc();
+            System.runFinalization();
+            retained = 0;
+            for (WeakReference<Object> reference : references) {
+                if (reference.get() != null) {
+                    retained++;
+                }
+            }
+            if (retained > 0) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return retained;
+    }
+}
@@ -1,16 +1,41 @@
 package clickguard;
 
+import android.os.Looper;
 import android.os.SystemClock;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
 import android.view.View;
+import android.widget.AdapterView;
+import android.widget.Button;
+import android.widget.FrameLayout;
+import android.widget.ListView;
 
+import clickguard.core.Guard;
+import clickguard.core.VirtualClock;
+
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
+import org.robolectric.internal.ReflectionHelpers;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
 
 @RunWith(RobolectricTestRunner.class)
@@ -45,6 +70,26 @@ public class ClickGuardTest {
         }
     }
 
+    static class CountItemClickListener implements AdapterView.OnItemClickListener {
+        int clickedCount = 0;
+
+        @Override
+        public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+            clickedCount++;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        // The shared wheel outlives Robolectric's per-test scheduler.
+        TimingWheel.mainWheel().reset();
+    }
+
+    @After
+    public void tearDown() {
+        ClickGuard.unfreeze();
+    }
+
     @Test
     public void guardActsInTheRightWay() {
         ClickGuard guard = ClickGuard.newGuard(10000);
@@ -64,6 +109,617 @@ public class ClickGuardTest {
         assertTrue((SystemClock.elapsedRealtime() - start) == 1000);
     }
 
+    @Test
+    public void guardsShareOneMessage() {
+        ClickGuard[] guards = new ClickGuard[100];
+        for (int i = 0; i < guards.length; i++) {
+            guards[i] = ClickGuard.newGuard(1000 + i);
+            guards[i].watch();
+        }
+        assertEquals(100, TimingWheel.mainWheel().size());
+        assertEquals(1, Robolectric.getUiThreadScheduler().size());
+
+        Robolectric.getUiThreadScheduler().advanceBy(1050);
+        for (int i = 0; i < guards.length; i++) {
+            assertEquals(i > 50, guards[i].isWatching());
+        }
+
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+        for (ClickGuard guard : guards) {
+            assertFalse(guard.isWatching());
+        }
+        assertEquals(0, TimingWheel.mainWheel().size());
+        assertEquals(0, Robolectric.getUiThreadScheduler().size());
+    }
+
+    @Test
+    public void wheelIdlesWhenAllGuardsRest() {
+        ClickGuard guard1 = ClickGuard.newGuard(1000);
+        ClickGuard guard2 = ClickGuard.newGuard(60000);
+        guard1.watch();
+        guard2.watch();
+        guard1.rest();
+        assertTrue(guard2.isWatching());
+        assertEquals(1, Robolectric.getUiThreadScheduler().size());
+        guard2.rest();
+        assertEquals(0, TimingWheel.mainWheel().size());
+        assertEquals(0, Robolectric.getUiThreadScheduler().size());
+    }
+
+    @Test
+    public void watchAndRestFromOtherThreadArePostedToMainThread() throws Exception {
+        final ClickGuard guard = ClickGuard.newGuard(1000);
+        Robolectric.getUiThreadScheduler().pause();
+        Thread watcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                guard.watch();
+            }
+        });
+        watcher.start();
+        watcher.join();
+        assertFalse(guard.isWatching());
+        assertEquals(0, TimingWheel.mainWheel().size());
+
+        Robolectric.getUiThreadScheduler().runOneTask();
+        assertTrue(guard.isWatching());
+
+        Thread rester = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                guard.rest();
+            }
+        });
+        rester.start();
+        rester.join();
+        assertTrue(guard.isWatching());
+        Robolectric.getUiThreadScheduler().unPause();
+        Robolectric.getUiThreadScheduler().advanceBy(0);
+        assertFalse(guard.isWatching());
+        assertEquals(0, TimingWheel.mainWheel().size());
+    }
+
+    @Test
+    public void timestampGuardActsInTheRightWay() {
+        ClickGuard guard = ClickGuard.newGuard(10000, ClickGuard.MODE_TIMESTAMP);
+        assertFalse(guard.isWatching());
+        guard.watch();
+        assertTrue(guard.isWatching());
+        guard.rest();
+        assertFalse(guard.isWatching());
+    }
+
+    @Test
+    public void timestampGuardShouldRestWhenWatchPeriodEnds() {
+        ClickGuard guard = ClickGuard.newGuard(1000, ClickGuard.MODE_TIMESTAMP);
+        guard.watch();
+        Robolectric.getUiThreadScheduler().advanceBy(999);
+        assertTrue(guard.isWatching());
+        Robolectric.getUiThreadScheduler().advanceBy(1);
+        assertFalse(guard.isWatching());
+    }
+
+    @Test
+    public void timestampGuardedViewPreventsMultipleClicks() {
+        View view = new View(Robolectric.application);
+        CountClickListener listener = new CountClickListener();
+        view.setOnClickListener(listener);
+        ClickGuard.guard(ClickGuard.newGuard(1000, ClickGuard.MODE_TIMESTAMP), view);
+
+        clickView(view, 5);
+        assertEquals(1, listener.getClickedCount());
+
+        Robolectric.getUiThreadScheduler().advanceBy(1000);
+
+        clickView(view, 5);
+        assertEquals(2, listener.getClickedCount());
+    }
+
+    @Test
+    public void watchPeriodStartsOverAfterSlowHandler() {
+        for (int mode : new int[]{ClickGuard.MODE_HANDLER, ClickGuard.MODE_TIMESTAMP}) {
+            View view = new View(Robolectric.application);
+            final CountClickListener listener = new CountClickListener() {
+                @Override
+                public void onClick(View v) {
+                    super.onClick(v);
+                    // The handler outlasts the watch period.
+                    Robolectric.getUiThreadScheduler().advanceBy(1500);
+                }
+            };
+            view.setOnClickListener(listener);
+            ClickGuard.guard(ClickGuard.newGuard(1000, mode), view);
+
+            clickView(view, 2);
+            assertEquals(1, listener.getClickedCount());
+
+            Robolectric.getUiThreadScheduler().advanceBy(999);
+            clickView(view, 1);
+            assertEquals(1, listener.getClickedCount());
+
+            Robolectric.getUiThreadScheduler().advanceBy(1);
+            clickView(view, 1);
+            assertEquals(2, listener.getClickedCount());
+        }
+    }
+
+    @Test
+    public void watchPeriodCancelledByHandlerIsNotStartedOver() {
+        final ClickGuard guard = ClickGuard.newGuard(1000, ClickGuard.MODE_TIMESTAMP);
+        View view = new View(Robolectric.application);
+        CountClickListener listener = new CountClickListener() {
+            @Override
+            public void onClick(View v) {
+                super.onClick(v);
+                guard.cancelWatch();
+            }
+        };
+        view.setOnClickListener(listener);
+        ClickGuard.guard(guard, view);
+
+        clickView(view, 3);
+        assertEquals(3, listener.getClickedCount());
+        assertFalse(guard.isWatching());
+    }
+
+    @Test
+    public void concurrentGuardAcceptsExactlyOneWinnerPerPeriod() throws Exception {
+        final ClickGuard guard = ClickGuard.newGuard(1000, ClickGuard.MODE_CONCURRENT);
+        final int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 100; round++) {
+                final CountDownLatch start = new CountDownLatch(1);
+                final AtomicInteger winners = new AtomicInteger();
+                List<Future<Void>> futures = new ArrayList<Future<Void>>();
+                for (int t = 0; t < threads; t++) {
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            start.await();
+                            for (int i = 0; i < 1000; i++) {
+                                if (guard.tryWatch()) {
+                                    winners.incrementAndGet();
+                                }
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                start.countDown();
+                for (Future<Void> future : futures) {
+                    future.get();
+                }
+                assertEquals(1, winners.get());
+                assertTrue(guard.isWatching());
+                Robolectric.getUiThreadScheduler().advanceBy(1000);
+                assertFalse(guard.isWatching());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void concurrentGuardedListenerRunsOncePerPeriod() throws Exception {
+        final CountClickListener listener = new CountClickListener();
+        final ClickGuard.GuardedOnClickListener guardedListener = ClickGuard.wrap(
+                ClickGuard.newGuard(1000, ClickGuard.MODE_CONCURRENT), listener);
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for (int i = 0; i < 1000; i++) {
+                            guardedListener.onClick(null);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, listener.getClickedCount());
+    }
+
+    @Test
+    public void looperGuardActsInTheRightWay() {
+        ClickGuard guard = ClickGuard.newGuard(1000, Looper.getMainLooper());
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+        assertTrue(guard.isWatching());
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+        assertFalse(guard.isWatching());
+    }
+
+    @Test
+    public void rejectedOnClickedLetsGuardRest() {
+        final ClickGuard guard = ClickGuard.newGuard(1000);
+        ClickGuard.GuardedOnClickListener listener = new ClickGuard.GuardedOnClickListener(guard) {
+            @Override
+            public boolean onClicked() {
+                assertTrue(guard.isWatching());
+                return false;
+            }
+        };
+        listener.onClick(null);
+        assertFalse(guard.isWatching());
+    }
+
+    @Test
+    public void rejectedOnClickedCancelsWatchInsteadOfResting() {
+        final AtomicInteger rests = new AtomicInteger();
+        final AtomicInteger cancels = new AtomicInteger();
+        Guard core = new Guard(new VirtualClock()) {
+            private boolean mWatching;
+
+            @Override
+            public void watch() {
+                mWatching = true;
+            }
+
+            @Override
+            public void rest() {
+                rests.incrementAndGet();
+                mWatching = false;
+            }
+
+            @Override
+            public boolean isWatching() {
+                return mWatching;
+            }
+
+            @Override
+            public long getWatchPeriodMillis() {
+                return 1000;
+            }
+
+            @Override
+            public void cancelWatch() {
+                cancels.incrementAndGet();
+                mWatching = false;
+            }
+        };
+        ClickGuard.GuardedOnClickListener listener = new ClickGuard.GuardedOnClickListener(ClickGuard.newGuard(core)) {
+            @Override
+            public boolean onClicked() {
+                return false;
+            }
+        };
+        listener.onClick(null);
+        assertEquals(1, cancels.get());
+        assertEquals(0, rests.get());
+        assertFalse(core.isWatching());
+    }
+
+    @Test
+    public void adaptiveGuardCoversAccidentalRepeatedClicks() {
+        ClickGuard guard = ClickGuard.newAdaptiveGuard(0.95, 50, 1000);
+        assertEquals(1000, guard.getWatchPeriodMillis());
+        for (int i = 0; i < 500; i++) {
+            guard.tryWatch();
+            Robolectric.getUiThreadScheduler().advanceBy(80 + i % 41);
+            guard.tryWatch();
+            Robolectric.getUiThreadScheduler().advanceBy(3000);
+        }
+        long period = guard.getWatchPeriodMillis();
+        assertTrue("period: " + period, period >= 110 && period <= 121);
+
+        assertTrue(guard.tryWatch());
+        Robolectric.getUiThreadScheduler().advanceBy(period - 1);
+        assertTrue(guard.isWatching());
+        Robolectric.getUiThreadScheduler().advanceBy(1);
+        assertFalse(guard.isWatching());
+    }
+
+    @Test
+    public void adaptiveGuardKeepsWatchPeriodInBounds() {
+        ClickGuard guard = ClickGuard.newAdaptiveGuard(0.95, 200, 1000);
+        for (int i = 0; i < 100; i++) {
+            guard.tryWatch();
+            Robolectric.getUiThreadScheduler().advanceBy(20);
+        }
+        assertEquals(200, guard.getWatchPeriodMillis());
+    }
+
+    @Test
+    public void tokenBucketGuardAcceptsBursts() {
+        ClickGuard guard = ClickGuard.newTokenBucketGuard(3, 300);
+        assertTrue(guard.tryWatch());
+        assertTrue(guard.tryWatch());
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+        assertTrue(guard.isWatching());
+
+        Robolectric.getUiThreadScheduler().advanceBy(299);
+        assertFalse(guard.tryWatch());
+        Robolectric.getUiThreadScheduler().advanceBy(1);
+        assertFalse(guard.isWatching());
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+
+        Robolectric.getUiThreadScheduler().advanceBy(900);
+        assertTrue(guard.tryWatch());
+        assertTrue(guard.tryWatch());
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+
+        guard.rest();
+        assertTrue(guard.tryWatch());
+        guard.watch();
+        assertTrue(guard.isWatching());
+        Robolectric.getUiThreadScheduler().advanceBy(300);
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+    }
+
+    @Test
+    public void tokenBucketGuardedViewAllowsBursts() {
+        View view = new View(Robolectric.application);
+        CountClickListener listener = new CountClickListener();
+        view.setOnClickListener(listener);
+        ClickGuard.guard(ClickGuard.newTokenBucketGuard(3, 333), view);
+
+        clickView(view, 10);
+        assertEquals(3, listener.getClickedCount());
+        Robolectric.getUiThreadScheduler().advanceBy(333);
+        clickView(view, 10);
+        assertEquals(4, listener.getClickedCount());
+    }
+
+    @Test
+    public void rejectedOnClickedGivesBackOneToken() {
+        final ClickGuard guard = ClickGuard.newTokenBucketGuard(3, 300);
+        final AtomicInteger clicks = new AtomicInteger();
+        ClickGuard.GuardedOnClickListener listener = new ClickGuard.GuardedOnClickListener(guard) {
+            @Override
+            public boolean onClicked() {
+                // Rejected clicks give their token back, so 3 kept clicks empty the bucket.
+                return clicks.incrementAndGet() % 2 == 0;
+            }
+        };
+        for (int i = 0; i < 10; i++) {
+            listener.onClick(null);
+        }
+        assertEquals(6, clicks.get());
+        assertTrue(guard.isWatching());
+        assertFalse(guard.tryWatch());
+    }
+
+    @Test
+    public void slidingWindowGuardLimitsClicksPerWindow() {
+        ClickGuard guard = ClickGuard.newSlidingWindowGuard(3, 1000);
+        assertTrue(guard.tryWatch());
+        Robolectric.getUiThreadScheduler().advanceBy(100);
+        assertTrue(guard.tryWatch());
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+        assertTrue(guard.isWatching());
+
+        // 100ms into the next window, the previous window still weighs 3 * 0.9 clicks.
+        Robolectric.getUiThreadScheduler().advanceBy(1000);
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+        // 600ms into the next window, it weighs 3 * 0.4 clicks.
+        Robolectric.getUiThreadScheduler().advanceBy(500);
+        assertTrue(guard.tryWatch());
+        assertFalse(guard.tryWatch());
+
+        Robolectric.getUiThreadScheduler().advanceBy(2000);
+        assertFalse(guard.isWatching());
+        guard.watch();
+        assertTrue(guard.isWatching());
+        guard.rest();
+        assertFalse(guard.isWatching());
+    }
+
+    private static class CountAsyncGuardedOnClickListener extends ClickGuard.AsyncGuardedOnClickListener {
+        ClickGuard.Completion completion;
+        int clickedCount = 0;
+        int attachedCount = 0;
+
+        CountAsyncGuardedOnClickListener(long timeoutMillis, boolean attachToInFlight) {
+            super(timeoutMillis, attachToInFlight);
+        }
+
+        @Override
+        public Future<?> onClickedAsync() {
+            clickedCount++;
+            completion = new ClickGuard.Completion();
+            return completion;
+        }
+
+        @Override
+        public void onAttached(Future<?> inFlight) {
+            assertSame(completion, inFlight);
+            attachedCount++;
+        }
+    }
+
+    private static class CountCoalescingOnClickListener extends ClickGuard.CoalescingOnClickListener {
+        int leadingCount = 0;
+        List<Integer> batches = new ArrayList<Integer>();
+        View lastView;
+
+        CountCoalescingOnClickListener(long watchPeriodMillis, boolean trailingOnly) {
+            super(watchPeriodMillis, trailingOnly);
+        }
+
+        @Override
+        public void onLeadingClick(View v) {
+            leadingCount++;
+        }
+
+        @Override
+        public void onCoalesced(View v, int count) {
+            batches.add(count);
+            lastView = v;
+        }
+    }
+
+    @Test
+    public void coalescingListenerBatchesClicksOfBurst() {
+        View view = new View(Robolectric.application);
+        CountCoalescingOnClickListener listener = new CountCoalescingOnClickListener(1000, false);
+        view.setOnClickListener(listener);
+
+        clickView(view, 5);
+        assertEquals(1, listener.leadingCount);
+        assertEquals(4, listener.getPendingCount());
+        assertTrue(listener.batches.isEmpty());
+
+        Robolectric.getUiThreadScheduler().advanceBy(1000);
+        assertEquals(1, listener.batches.size());
+        assertEquals(4, (int) listener.batches.get(0));
+        assertSame(view, listener.lastView);
+        assertEquals(0, listener.getPendingCount());
+
+        // A single click makes no batch.
+        clickView(view, 1);
+        Robolectric.getUiThreadScheduler().advanceBy(1000);
+        assertEquals(2, listener.leadingCount);
+        assertEquals(1, listener.batches.size());
+    }
+
+    @Test
+    public void coalescingListenerDropsPendingClicksOnDetach() {
+        View view = new View(Robolectric.application);
+        CountCoalescingOnClickListener listener = new CountCoalescingOnClickListener(1000, false);
+        view.setOnClickListener(listener);
+        ClickGuard.releaseOnDetach(view);
+
+        clickView(view, 3);
+        assertEquals(2, listener.getPendingCount());
+        ReflectionHelpers.callInstanceMethodReflectively(view, "dispatchDetachedFromWindow");
+
+        assertEquals(0, listener.getPendingCount());
+        assertEquals(0, TimingWheel.mainWheel().size());
+        assertEquals(0, Robolectric.getUiThreadScheduler().size());
+        Robolectric.getUiThreadScheduler().advanceBy(1000);
+        assertTrue(listener.batches.isEmpty());
+        assertNull(listener.lastView);
+    }
+
+    @Test
+    public void coalescingListenerDropsPendingClicksOnRemove() {
+        View view = new View(Robolectric.application);
+        CountCoalescingOnClickListener listener = new CountCoalescingOnClickListener(1000, true);
+        view.setOnClickListener(listener);
+
+        clickView(view, 3);
+        assertEquals(3, listener.getPendingCount());
+        listener.getClickGuard().remove(view);
+
+        assertEquals(0, listener.getPendingCount());
+        assertEquals(0, TimingWheel.mainWheel().size());
+        Robolectric.getUiThreadScheduler().advanceBy(1000);
+        assertTrue(listener.batches.isEmpty());
+    }
+
+    @Test
+    public void trailingOnlyCoalescingListenerDebouncesClicks() {
+        View view = new View(Robolectric.application);
+        CountCoalescingOnClickListener listener = new CountCoalescingOnClickListener(1000, true);
+        view.setOnClickListener(listener);
+
+        for (int i = 0; i < 3; i++) {
+            clickView(view, 1);
+            Robolectric.getUiThreadScheduler().advanceBy(600);
+        }
+        assertTrue(listener.batches.isEmpty());
+        assertEquals(3, listener.getPendingCount());
+
+        Robolectric.getUiThreadScheduler().advanceBy(400);
+        assertEquals(0, listener.leadingCount);
+        assertEquals(1, listener.batches.size());
+        assertEquals(3, (int) listener.batches.get(0));
+    }
+
+    @Test
+    public void asyncGuardedListenerWatchesUntilCompletion() {
+        CountAsyncGuardedOnClickListener listener = new CountAsyncGuardedOnClickListener(
+                ClickGuard.AsyncGuardedOnClickListener.NO_TIMEOUT, false);
+        View view = new View(Robolectric.application);
+        view.setOnClickListener(listener);
+
+        clickView(view, 5);
+        assertEquals(1, listener.clickedCount);
+        assertEquals(0, listener.attachedCount);
+
+        Robolectric.getUiThreadScheduler().advanceBy(60000);
+        clickView(view, 5);
+        assertEquals(1, listener.clickedCount);
+        assertTrue(listener.getClickGuard().isWatching());
+
+        listener.completion.complete();
+        assertFalse(listener.getClickGuard().isWatching());
+        clickView(view, 5);
+        assertEquals(2, listener.clickedCount);
+    }
+
+    @Test
+    public void asyncGuardedListenerStopsWatchingAtTimeout() {
+        CountAsyncGuardedOnClickListener listener = new CountAsyncGuardedOnClickListener(1000, false);
+        listener.onClick(null);
+        listener.onClick(null);
+        assertEquals(1, listener.clickedCount);
+
+        Robolectric.getUiThreadScheduler().advanceBy(1000);
+        listener.onClick(null);
+        assertEquals(2, listener.clickedCount);
+    }
+
+    @Test
+    public void asyncGuardedListenerAttachesClicksToWorkInFlight() {
+        CountAsyncGuardedOnClickListener listener = new CountAsyncGuardedOnClickListener(1000, true);
+        listener.onClick(null);
+        assertSame(listener.completion, listener.getInFlight());
+        listener.onClick(null);
+        listener.onClick(null);
+        assertEquals(1, listener.clickedCount);
+        assertEquals(2, listener.attachedCount);
+
+        listener.completion.complete();
+        assertNull(listener.getInFlight());
+        listener.onClick(null);
+        assertEquals(2, listener.clickedCount);
+        assertEquals(2, listener.attachedCount);
+    }
+
+    @Test
+    public void asyncGuardedListenerWithoutWorkDoesNotWatch() {
+        ClickGuard.AsyncGuardedOnClickListener listener = new ClickGuard.AsyncGuardedOnClickListener() {
+            @Override
+            public Future<?> onClickedAsync() {
+                return null;
+            }
+        };
+        ClickGuardMetrics metrics = new ClickGuardMetrics();
+        listener.getClickGuard().setMetrics(metrics);
+        listener.onClick(null);
+        assertFalse(listener.getClickGuard().isWatching());
+        listener.onClick(null);
+
+        ClickGuardMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.getAcceptedCount());
+        assertEquals(0, snapshot.getIgnoredCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenNewGuardWithUnknownMode() {
+        ClickGuard.newGuard(1000, -1);
+    }
+
     @Test
     public void baseGuardedOnClickListenerTest() {
         CountClickListener listener = new CountClickListener();
@@ -88,6 +744,21 @@ public class ClickGuardTest {
         assertEquals(2, listener.getClickedCount());
     }
 
+    @Test
+    public void wrapCallSiteGuardsPlainListenersOnly() {
+        CountClickListener listener = new CountClickListener();
+        View.OnClickListener wrapped = ClickGuard.wrapCallSite(listener, 600);
+        assertTrue(wrapped instanceof ClickGuard.GuardedOnClickListener);
+        assertEquals(600, ((ClickGuard.GuardedOnClickListener) wrapped).getClickGuard().getWatchPeriodMillis());
+
+        wrapped.onClick(null);
+        wrapped.onClick(null);
+        assertEquals(1, listener.getClickedCount());
+
+        assertSame(wrapped, ClickGuard.wrapCallSite(wrapped, 600));
+        assertNull(ClickGuard.wrapCallSite(null, 600));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void shouldThrowWhenGuardNullView() {
         ClickGuard.guard(null);
@@ -136,6 +807,11 @@ public class ClickGuardTest {
         assertEquals(listener, ClickGuard.retrieveOnClickListener(view));
     }
 
+    @Test
+    public void retrieveNullWhenNoOnClickListener() {
+        assertNull(ClickGuard.retrieveOnClickListener(new View(Robolectric.application)));
+    }
+
     @Test
     public void guardedViewPreventsMultipleClicks() {
         View view = new View(Robolectric.application);
@@ -189,6 +865,506 @@ public class ClickGuardTest {
         clickViews(view1, view2, view3);
     }
 
+    @Test
+    public void guardTreeGuardsClickableViewsWithListener() {
+        FrameLayout root = new FrameLayout(Robolectric.application);
+        FrameLayout group = new FrameLayout(Robolectric.application);
+        FrameLayout nested = new FrameLayout(Robolectric.application);
+        Button button = new Button(Robolectric.application);
+        View deepView = new View(Robolectric.application);
+        View plainView = new View(Robolectric.application);
+        View guardedView = new View(Robolectric.application);
+        root.addView(button);
+        root.addView(group);
+        group.addView(nested);
+        group.addView(plainView);
+        nested.addView(deepView);
+        root.addView(guardedView);
+
+        CountClickListener listener = new CountClickListener();
+        button.setOnClickListener(listener);
+        deepView.setOnClickListener(listener);
+        CountClickGuardedOnClickListener guardedListener = new CountClickGuardedOnClickListener();
+        guardedView.setOnClickListener(guardedListener);
+
+        ClickGuard guard = ClickGuard.guardTree(root);
+
+        assertSame(guard, ClickGuard.get(button));
+        assertSame(guard, ClickGuard.get(deepView));
+        assertNull(ClickGuard.retrieveOnClickListener(plainView));
+        assertSame(guardedListener, ClickGuard.retrieveOnClickListener(guardedView));
+
+        clickView(button, 1);
+        clickView(deepView, 1);
+        assertEquals(1, listener.getClickedCount());
+    }
+
+    @Test
+    public void guardTreeAppliesFilter() {
+        FrameLayout root = new FrameLayout(Robolectric.application);
+        View view1 = new View(Robolectric.application);
+        View view2 = new View(Robolectric.application);
+        Button button = new Button(Robolectric.application);
+        view1.setId(1);
+        view2.setId(2);
+        root.addView(view1);
+        root.addView(view2);
+        root.addView(button);
+        CountClickListener listener = new CountClickListener();
+        view1.setOnClickListener(listener);
+        view2.setOnClickListener(listener);
+        button.setOnClickListener(listener);
+
+        ClickGuard.guardTree(ClickGuard.newGuard(), root, ClickGuard.idFilter(2));
+        assertSame(listener, ClickGuard.retrieveOnClickListener(view1));
+        assertTrue(ClickGuard.retrieveOnClickListener(view2) instanceof ClickGuard.GuardedOnClickListener);
+        assertSame(listener, ClickGuard.retrieveOnClickListener(button));
+
+        ClickGuard.guardTree(ClickGuard.newGuard(), root, ClickGuard.classFilter(Button.class));
+        assertSame(listener, ClickGuard.retrieveOnClickListener(view1));
+        assertTrue(ClickGuard.retrieveOnClickListener(button) instanceof ClickGuard.GuardedOnClickListener);
+    }
+
+    @Test
+    public void guardAllSharesWrapperOfSharedListener() {
+        final int count = 50;
+        CountClickListener listener1 = new CountClickListener();
+        CountClickListener listener2 = new CountClickListener();
+        List<View> views = new ArrayList<View>();
+        for (int i = 0; i < count; i++) {
+            View view = new View(Robolectric.application);
+            view.setOnClickListener(i % 2 == 0 ? listener1 : listener2);
+            views.add(view);
+        }
+        ClickGuard guard = ClickGuard.guardAll(views);
+
+        IdentityHashMap<View.OnClickListener, Boolean> wrappers
+                = new IdentityHashMap<View.OnClickListener, Boolean>();
+        for (View view : views) {
+            wrappers.put(ClickGuard.retrieveOnClickListener(view), Boolean.TRUE);
+        }
+        assertEquals(2, wrappers.size());
+        for (View.OnClickListener wrapper : wrappers.keySet()) {
+            assertSame(guard, ((ClickGuard.GuardedOnClickListener) wrapper).getClickGuard());
+        }
+
+        clickView(views.get(0), 1);
+        clickView(views.get(1), 1);
+        assertEquals(1, listener1.getClickedCount());
+        assertEquals(0, listener2.getClickedCount());
+    }
+
+    @Test
+    public void guardAllWrapsSharedListenersWithoutAllocatingPerView() {
+        // Enough views for the bytes allocated by the measuring itself not to matter.
+        final int count = 10000;
+        CountClickListener listener1 = new CountClickListener();
+        CountClickListener listener2 = new CountClickListener();
+        List<View> views = new ArrayList<View>(count);
+        for (int i = 0; i < count; i++) {
+            View view = new View(Robolectric.application);
+            view.setOnClickListener(i % 2 == 0 ? listener1 : listener2);
+            views.add(view);
+        }
+
+        // What setting the listeners costs by itself, as the test runner intercepts View calls.
+        long start = Allocations.allocatedBytes();
+        for (int i = 0; i < count; i++) {
+            views.get(i).setOnClickListener(i % 2 == 0 ? listener1 : listener2);
+        }
+        long settingBytes = Allocations.allocatedBytes() - start;
+
+        start = Allocations.allocatedBytes();
+        ClickGuard.guardAll(views);
+        long bytesPerView = (Allocations.allocatedBytes() - start - settingBytes) / count;
+        // Any wrapper would cost at least 16 bytes, so the two wrappers are shared by all the views.
+        assertTrue("Guarding views sharing listeners allocated " + bytesPerView + " bytes per view",
+                bytesPerView < 8);
+        assertSame(ClickGuard.retrieveOnClickListener(views.get(0)),
+                ClickGuard.retrieveOnClickListener(views.get(count - 2)));
+    }
+
+    @Test
+    public void guardSharesWrapperOfSharedListener() {
+        CountClickListener listener = new CountClickListener();
+        View view1 = new View(Robolectric.application);
+        View view2 = new View(Robolectric.application);
+        View view3 = new View(Robolectric.application);
+        view1.setOnClickListener(listener);
+        view2.setOnClickListener(listener);
+        view3.setOnClickListener(listener);
+        ClickGuard.guard(view1, view2, view3);
+
+        View.OnClickListener wrapper = ClickGuard.retrieveOnClickListener(view1);
+        assertSame(wrapper, ClickGuard.retrieveOnClickListener(view2));
+        assertSame(wrapper, ClickGuard.retrieveOnClickListener(view3));
+    }
+
+    @Test
+    public void removeRestoresOriginalListener() {
+        CountClickListener listener = new CountClickListener();
+        View view = new View(Robolectric.application);
+        view.setOnClickListener(listener);
+        ClickGuard guard = ClickGuard.guard(view);
+
+        guard.remove(view);
+        assertSame(listener, ClickGuard.retrieveOnClickListener(view));
+        clickView(view, 3);
+        assertEquals(3, listener.getClickedCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void removeThrowsWhenViewIsNotGuardedByThisGuard() {
+        View view = new View(Robolectric.application);
+        view.setOnClickListener(new CountClickListener());
+        ClickGuard.guard(view);
+        ClickGuard.newGuard().remove(view);
+    }
+
+    @Test
+    public void releaseCancelsPendingWork() {
+        ClickGuard guard = ClickGuard.newGuard(1000);
+        guard.watch();
+        assertEquals(1, TimingWheel.mainWheel().size());
+        assertEquals(1, Robolectric.getUiThreadScheduler().size());
+
+        guard.release();
+        assertFalse(guard.isWatching());
+        assertEquals(0, TimingWheel.mainWheel().size());
+        assertEquals(0, Robolectric.getUiThreadScheduler().size());
+    }
+
+    @Test
+    public void releaseOnDetachReleasesGuardAndKeepsViewGuarded() {
+        CountClickListener listener = new CountClickListener();
+        View view = new View(Robolectric.application);
+        view.setOnClickListener(listener);
+        ClickGuard guard = ClickGuard.guard(view);
+        ClickGuard.releaseOnDetach(view);
+        ClickGuard.releaseOnDetach(view);
+
+        clickView(view, 2);
+        assertTrue(guard.isWatching());
+        ReflectionHelpers.callInstanceMethodReflectively(view, "dispatchDetachedFromWindow");
+
+        assertFalse(guard.isWatching());
+        assertEquals(0, Robolectric.getUiThreadScheduler().size());
+        assertSame(guard, ClickGuard.get(view));
+        clickView(view, 2);
+        assertEquals(2, listener.getClickedCount());
+    }
+
+    @Test
+    public void releaseOnDetachWaitsForLastViewOfSharedGuard() {
+        CountClickListener listener = new CountClickListener();
+        View view1 = new View(Robolectric.application);
+        View view2 = new View(Robolectric.application);
+        view1.setOnClickListener(listener);
+        view2.setOnClickListener(listener);
+        ClickGuard guard = ClickGuard.guard(view1, view2);
+        ClickGuard.releaseOnDetach(view1);
+        ClickGuard.releaseOnDetach(view2);
+
+        view2.performClick();
+        ReflectionHelpers.callInstanceMethodReflectively(view1, "dispatchDetachedFromWindow");
+        assertTrue(guard.isWatching());
+        view2.performClick();
+        assertEquals(1, listener.getClickedCount());
+
+        ReflectionHelpers.callInstanceMethodReflectively(view2, "dispatchDetachedFromWindow");
+        assertFalse(guard.isWatching());
+    }
+
+    @Test
+    public void releaseOnDetachCoversLazilyGuardedView() {
+        View view = new View(Robolectric.application);
+        view.setOnClickListener(new CountClickListener());
+        ClickGuard guard = ClickGuard.guardLazily(view);
+        ClickGuard.releaseOnDetach(view);
+        guard.watch();
+
+        ReflectionHelpers.callInstanceMethodReflectively(view, "dispatchDetachedFromWindow");
+        assertFalse(guard.isWatching());
+        assertEquals(0, Robolectric.getUiThreadScheduler().size());
+    }
+
+    @Test
+    public void touchSuppressorDropsWholeTapStartingWhileWatching() {
+        View view = new View(Robolectric.application);
+        ClickGuard guard = ClickGuard.newGuard(1000);
+        ClickGuard.TouchSuppressor suppressor = new ClickGuard.TouchSuppressor(guard);
+
+        assertFalse(suppressor.onTouch(view, touchEvent(0, 0, MotionEvent.ACTION_DOWN)));
+        guard.watch();
+        // The tap started before the guard started watching, let it finish.
+        assertFalse(suppressor.onTouch(view, touchEvent(0, 50, MotionEvent.ACTION_UP)));
+
+        assertTrue(suppressor.onTouch(view, touchEvent(100, 100, MotionEvent.ACTION_DOWN)));
+        assertTrue(suppressor.onTouch(view, touchEvent(100, 120, MotionEvent.ACTION_MOVE)));
+        assertTrue(suppressor.onTouch(view, touchEvent(100, 150, MotionEvent.ACTION_UP)));
+
+        Robolectric.getUiThreadScheduler().advanceBy(1000);
+        assertFalse(suppressor.onTouch(view, touchEvent(1000, 1000, MotionEvent.ACTION_DOWN)));
+        assertFalse(suppressor.onTouch(view, touchEvent(1000, 1050, MotionEvent.ACTION_UP)));
+    }
+
+    @Test
+    public void suppressedTapDoesNotPressView() {
+        View view = new View(Robolectric.application);
+        view.setOnClickListener(new CountClickListener());
+        ClickGuard guard = ClickGuard.guard(view).suppressTouches(view);
+
+        guard.watch();
+        view.dispatchTouchEvent(touchEvent(0, 0, MotionEvent.ACTION_DOWN));
+        assertFalse(view.isPressed());
+        view.dispatchTouchEvent(touchEvent(0, 50, MotionEvent.ACTION_UP));
+
+        guard.rest();
+        view.dispatchTouchEvent(touchEvent(100, 100, MotionEvent.ACTION_DOWN));
+        assertTrue(view.isPressed());
+    }
+
+    @Test
+    public void suppressTouchesChainsPreviousTouchListener() {
+        View view = new View(Robolectric.application);
+        view.setOnClickListener(new CountClickListener());
+        final List<Integer> actions = new ArrayList<Integer>();
+        View.OnTouchListener previous = new View.OnTouchListener() {
+            @Override
+            public boolean onTouch(View v, MotionEvent event) {
+                actions.add(event.getAction());
+                return false;
+            }
+        };
+        view.setOnTouchListener(previous);
+        ClickGuard guard = ClickGuard.guard(view).suppressTouches(view);
+        assertSame(previous, ((ClickGuard.TouchSuppressor) ClickGuard.ListenerGetter.getTouchListener(view)).getNext());
+
+        view.dispatchTouchEvent(touchEvent(0, 0, MotionEvent.ACTION_DOWN));
+        view.dispatchTouchEvent(touchEvent(0, 50, MotionEvent.ACTION_UP));
+        assertEquals(2, actions.size());
+
+        // The taps dropped while watching never reach the previous listener.
+        assertTrue(guard.isWatching());
+        view.dispatchTouchEvent(touchEvent(100, 100, MotionEvent.ACTION_DOWN));
+        view.dispatchTouchEvent(touchEvent(100, 150, MotionEvent.ACTION_UP));
+        assertEquals(2, actions.size());
+    }
+
+    @Test
+    public void lazyGuardWrapsListenerOnFirstTouch() {
+        CountClickListener listener = new CountClickListener();
+        View view1 = new View(Robolectric.application);
+        View view2 = new View(Robolectric.application);
+        view1.setOnClickListener(listener);
+        view2.setOnClickListener(listener);
+        ClickGuard guard = ClickGuard.guardLazily(view1, view2);
+        assertSame(listener, ClickGuard.retrieveOnClickListener(view1));
+        assertSame(listener, ClickGuard.retrieveOnClickListener(view2));
+
+        view1.dispatchTouchEvent(touchEvent(0, 0, MotionEvent.ACTION_DOWN));
+        view1.dispatchTouchEvent(touchEvent(0, 50, MotionEvent.ACTION_UP));
+        assertEquals(1, listener.getClickedCount());
+        assertSame(guard, ClickGuard.get(view1));
+        assertSame(listener, ClickGuard.retrieveOnClickListener(view2));
+
+        view2.dispatchTouchEvent(touchEvent(100, 100, MotionEvent.ACTION_DOWN));
+        view2.dispatchTouchEvent(touchEvent(100, 150, MotionEvent.ACTION_UP));
+        assertEquals(1, listener.getClickedCount());
+        // Views sharing a listener share its wrapper.
+        assertSame(ClickGuard.retrieveOnClickListener(view1), ClickGuard.retrieveOnClickListener(view2));
+    }
+
+    @Test
+    public void lazyGuardWrapsListenerOnFirstKey() {
+        CountClickListener listener = new CountClickListener();
+        View view = new View(Robolectric.application);
+        view.setOnClickListener(listener);
+        ClickGuard guard = ClickGuard.newGuard().addLazily(view);
+
+        view.dispatchKeyEvent(new KeyEvent(KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_DPAD_CENTER));
+        assertSame(guard, ClickGuard.get(view));
+    }
+
+    @Test
+    public void lazyGuardChainsAndRestoresOwnListeners() {
+        View view = new View(Robolectric.application);
+        view.setOnClickListener(new CountClickListener());
+        final List<Integer> touches = new ArrayList<Integer>();
+        View.OnTouchListener touchListener = new View.OnTouchListener() {
+            @Override
+            public boolean onTouch(View v, MotionEvent event) {
+                touches.add(event.getAction());
+                return false;
+            }
+        };
+        View.OnKeyListener keyListener = new View.OnKeyListener() {
+            @Override
+            public boolean onKey(View v, int keyCode, KeyEvent event) {
+                return false;
+            }
+        };
+        view.setOnTouchListener(touchListener);
+        view.setOnKeyListener(keyListener);
+        ClickGuard guard = ClickGuard.guardLazily(view);
+
+        view.dispatchTouchEvent(touchEvent(0, 0, MotionEvent.ACTION_DOWN));
+        assertEquals(1, touches.size());
+        assertSame(guard, ClickGuard.get(view));
+        assertSame(touchListener, ClickGuard.ListenerGetter.getTouchListener(view));
+        assertSame(keyListener, ClickGuard.ListenerGetter.getKeyListener(view));
+    }
+
+    @Test
+    public void touchAndKeyListenerLookupsAreOptional() {
+        View view = new View(Robolectric.application);
+        assertNull(ClickGuard.ListenerGetter.findField(View.class, "mOnMissingListener"));
+        assertNull(ClickGuard.ListenerGetter.getFieldValue(null, view));
+        assertTrue(ClickGuard.ListenerGetter.hasTouchAndKeyListeners());
+    }
+
+    @Test
+    public void lazyGuardKeepsTouchSuppressor() {
+        View view = new View(Robolectric.application);
+        view.setOnClickListener(new CountClickListener());
+        ClickGuard guard = ClickGuard.guardLazily(view).suppressTouches(view);
+        View.OnTouchListener suppressor = ClickGuard.ListenerGetter.getTouchListener(view);
+
+        view.dispatchTouchEvent(touchEvent(0, 0, MotionEvent.ACTION_DOWN));
+        view.dispatchTouchEvent(touchEvent(0, 50, MotionEvent.ACTION_UP));
+        assertSame(guard, ClickGuard.get(view));
+        assertSame(suppressor, ClickGuard.ListenerGetter.getTouchListener(view));
+        assertNull(ClickGuard.ListenerGetter.getKeyListener(view));
+
+        assertTrue(guard.isWatching());
+        view.dispatchTouchEvent(touchEvent(100, 100, MotionEvent.ACTION_DOWN));
+        assertFalse(view.isPressed());
+    }
+
+    @Test
+    public void lazyGuardSkipsViewWithoutListener() {
+        View view = new View(Robolectric.application);
+        ClickGuard.guardLazily(view);
+
+        view.dispatchTouchEvent(touchEvent(0, 0, MotionEvent.ACTION_DOWN));
+        assertNull(ClickGuard.retrieveOnClickListener(view));
+    }
+
+    @Test
+    public void scopesGuardViewsHierarchically() {
+        CountClickListener navigationListener = new CountClickListener();
+        CountClickListener likeListener = new CountClickListener();
+        View navigationView = new View(Robolectric.application);
+        View likeView = new View(Robolectric.application);
+        navigationView.setOnClickListener(navigationListener);
+        likeView.setOnClickListener(likeListener);
+
+        ClickGuard app = ClickGuard.newScope(500);
+        ClickGuard screen = ClickGuard.newScope(app, 1000, true);
+        screen.add(navigationView);
+        ClickGuard.newScope(screen, 200, false).add(likeView);
+
+        navigationView.performClick();
+        likeView.performClick();
+        assertEquals(1, navigationListener.getClickedCount());
+        assertEquals(0, likeListener.getClickedCount());
+        assertTrue(app.isWatching());
+        assertEquals(0, Robolectric.getUiThreadScheduler().size());
+
+        Robolectric.getUiThreadScheduler().advanceBy(1000);
+        likeView.performClick();
+        likeView.performClick();
+        navigationView.performClick();
+        assertEquals(1, likeListener.getClickedCount());
+        assertEquals(2, navigationListener.getClickedCount());
+    }
+
+    @Test
+    public void rejectedClickInChildScopeDisarmsParent() {
+        ClickGuard app = ClickGuard.newScope(500);
+        ClickGuard screen = ClickGuard.newScope(app, 1000, true);
+        ClickGuard.GuardedOnClickListener listener = new ClickGuard.GuardedOnClickListener(screen) {
+            @Override
+            public boolean onClicked() {
+                return false;
+            }
+        };
+        listener.onClick(null);
+        assertFalse(screen.isWatching());
+        assertFalse(app.isWatching());
+        // Other screens of the app aren't blocked by the rejected click.
+        assertTrue(ClickGuard.newScope(app, 1000, true).tryWatch());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void newScopeThrowsWhenParentIsNotScope() {
+        ClickGuard.newScope(ClickGuard.newGuard(), 1000, false);
+    }
+
+    @Test
+    public void itemClicksShareGuard() {
+        ListView listView = new ListView(Robolectric.application);
+        CountItemClickListener listener = new CountItemClickListener();
+        listView.setOnItemClickListener(listener);
+        ClickGuard guard = ClickGuard.guardItems(listView);
+
+        View row = new View(Robolectric.application);
+        listView.performItemClick(row, 0, 0);
+        listView.performItemClick(row, 1, 1);
+        assertEquals(1, listener.clickedCount);
+        assertTrue(guard.isWatching());
+
+        Robolectric.getUiThreadScheduler().advanceBy(1000);
+        listView.performItemClick(row, 1, 1);
+        assertEquals(2, listener.clickedCount);
+    }
+
+    @Test
+    public void freezeBlocksAllGuards() {
+        CountClickListener listener = new CountClickListener();
+        View view1 = new View(Robolectric.application);
+        View view2 = new View(Robolectric.application);
+        view1.setOnClickListener(listener);
+        view2.setOnClickListener(listener);
+        ClickGuard.guard(view1);
+        ClickGuard.guard(ClickGuard.newGuard(1000, ClickGuard.MODE_TIMESTAMP), view2);
+
+        ClickGuard.freeze();
+        assertTrue(ClickGuard.isFrozen());
+        clickView(view1, 2);
+        clickView(view2, 2);
+        assertEquals(0, listener.getClickedCount());
+        assertEquals(0, Robolectric.getUiThreadScheduler().size());
+
+        ClickGuard.unfreeze();
+        assertFalse(ClickGuard.isFrozen());
+        clickView(view1, 1);
+        clickView(view2, 1);
+        assertEquals(2, listener.getClickedCount());
+    }
+
+    @Test
+    public void freezeForDurationEndsByItself() {
+        CountClickListener listener = new CountClickListener();
+        View view = new View(Robolectric.application);
+        view.setOnClickListener(listener);
+        ClickGuard.guard(view);
+
+        ClickGuard.freeze(500);
+        ClickGuard.freeze(100);
+        Robolectric.getUiThreadScheduler().advanceBy(499);
+        clickView(view, 1);
+        assertEquals(0, listener.getClickedCount());
+        Robolectric.getUiThreadScheduler().advanceBy(1);
+        assertFalse(ClickGuard.isFrozen());
+        clickView(view, 1);
+        assertEquals(1, listener.getClickedCount());
+    }
+
+    private static MotionEvent touchEvent(long downTime, long eventTime, int action) {
+        return MotionEvent.obtain(downTime, eventTime, action, 0f, 0f, 0);
+    }
+
     private static void clickView(View view, int count) {
         for (int i = 0; i < count; i++) {
             view.performClick();
@@ -0,0 +1,109 @@
+package clickguard;
+
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ClickProfilerTest {
+
+    private static class NoopClickListener implements View.OnClickListener {
+        @Override
+        public void onClick(View v) {
+        }
+    }
+
+    private static class SlowClickListener implements View.OnClickListener {
+        @Override
+        public void onClick(View v) {
+            try {
+                Thread.sleep(30);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private final List<Class<?>> mSlowHandlers = new ArrayList<Class<?>>();
+
+    private final ClickProfiler.SlowHandlerCallback mCallback = new ClickProfiler.SlowHandlerCallback() {
+        @Override
+        public void onSlowHandler(Class<?> listenerClass, long durationNanos) {
+            assertTrue(durationNanos > 16000000L);
+            mSlowHandlers.add(listenerClass);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        TimingWheel.mainWheel().reset();
+    }
+
+    @After
+    public void tearDown() {
+        ClickProfiler.disable();
+    }
+
+    @Test
+    public void profilesAcceptedClicksPerListenerClass() {
+        ClickProfiler profiler = ClickProfiler.enable(16, mCallback);
+        ClickGuard.GuardedOnClickListener noop = alwaysAccepting(new NoopClickListener());
+        ClickGuard.GuardedOnClickListener slow = alwaysAccepting(new SlowClickListener());
+
+        for (int i = 0; i < 3; i++) {
+            noop.onClick(null);
+        }
+        slow.onClick(null);
+
+        ClickProfiler.Profile noopProfile = profiler.snapshot(NoopClickListener.class);
+        assertEquals(3, noopProfile.getCount());
+        assertEquals(3, noopProfile.getBucketCounts()[0]);
+        ClickProfiler.Profile slowProfile = profiler.snapshot(SlowClickListener.class);
+        assertEquals(1, slowProfile.getCount());
+        assertTrue(slowProfile.getMaxNanos() >= 30000000L);
+        long[] buckets = slowProfile.getBucketCounts();
+        assertEquals(0, buckets[0] + buckets[1] + buckets[2] + buckets[3] + buckets[4]); // [0, 16)
+        assertEquals(2, profiler.snapshot().size());
+
+        assertEquals(1, mSlowHandlers.size());
+        assertSame(SlowClickListener.class, mSlowHandlers.get(0));
+    }
+
+    @Test
+    public void ignoredClicksAreNotProfiled() {
+        ClickProfiler profiler = ClickProfiler.enable(16, null);
+        ClickGuard.GuardedOnClickListener listener = ClickGuard.wrap(new NoopClickListener());
+
+        listener.onClick(null);
+        listener.onClick(null);
+        assertEquals(1, profiler.snapshot(NoopClickListener.class).getCount());
+    }
+
+    @Test
+    public void nothingIsProfiledWhenDisabled() {
+        ClickProfiler profiler = ClickProfiler.enable(16, mCallback);
+        ClickProfiler.disable();
+        assertNull(ClickProfiler.global());
+        alwaysAccepting(new SlowClickListener()).onClick(null);
+        assertEquals(0, profiler.snapshot().size());
+        assertEquals(0, mSlowHandlers.size());
+    }
+
+    private static ClickGuard.GuardedOnClickListener alwaysAccepting(View.OnClickListener listener) {
+        return ClickGuard.wrap(ClickGuard.newGuard(0, ClickGuard.MODE_TIMESTAMP), listener);
+    }
+}
@@ -0,0 +1,223 @@
+package clickguard;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ClickStreamTest {
+
+    private static final View.OnClickListener NOOP = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+        }
+    };
+
+    private static class RecordingSubscriber implements ClickStream.Subscriber {
+        final long initialRequest;
+        final List<View> views = new ArrayList<View>();
+        final List<Boolean> accepted = new ArrayList<Boolean>();
+        ClickStream.Subscription subscription;
+
+        RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(ClickStream.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onClick(View view, long uptimeMillis, boolean accepted) {
+            views.add(view);
+            this.accepted.add(accepted);
+        }
+    }
+
+    private ClickGuard mGuard;
+    private View mView1;
+    private View mView2;
+
+    @Before
+    public void setUp() {
+        TimingWheel.mainWheel().reset();
+        mView1 = new View(Robolectric.application);
+        mView2 = new View(Robolectric.application);
+        mView1.setOnClickListener(NOOP);
+        mView2.setOnClickListener(NOOP);
+        mGuard = ClickGuard.guard(1000, mView1, mView2);
+    }
+
+    @Test
+    public void tapsDroppedByTouchSuppressorArePublishedAsIgnored() {
+        ClickGuardMetrics metrics = new ClickGuardMetrics();
+        mGuard.setMetrics(metrics).suppressTouches(mView1);
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        mGuard.clicks().subscribe(subscriber);
+
+        mView2.performClick();
+        mView1.dispatchTouchEvent(MotionEvent.obtain(100, 100, MotionEvent.ACTION_DOWN, 0f, 0f, 0));
+        mView1.dispatchTouchEvent(MotionEvent.obtain(100, 150, MotionEvent.ACTION_UP, 0f, 0f, 0));
+
+        assertEquals(2, subscriber.views.size());
+        assertSame(mView1, subscriber.views.get(1));
+        assertFalse(subscriber.accepted.get(1));
+        assertEquals(1, metrics.snapshot().getIgnoredCount());
+    }
+
+    @Test
+    public void trailingOnlyBurstIsPublishedAndRecordedAsOneAcceptedClick() {
+        View view = new View(Robolectric.application);
+        ClickGuard.CoalescingOnClickListener listener = new ClickGuard.CoalescingOnClickListener(1000, true) {
+            @Override
+            public void onCoalesced(View v, int count) {
+            }
+        };
+        view.setOnClickListener(listener);
+        ClickGuardMetrics metrics = new ClickGuardMetrics();
+        listener.getClickGuard().setMetrics(metrics);
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        listener.getClickGuard().clicks().subscribe(subscriber);
+
+        for (int i = 0; i < 3; i++) {
+            view.performClick();
+            Robolectric.getUiThreadScheduler().advanceBy(600);
+        }
+        // The first two clicks are absorbed by the next ones.
+        assertEquals(2, subscriber.views.size());
+        assertFalse(subscriber.accepted.get(0));
+        assertFalse(subscriber.accepted.get(1));
+
+        Robolectric.getUiThreadScheduler().advanceBy(400);
+        assertEquals(3, subscriber.views.size());
+        assertSame(view, subscriber.views.get(2));
+        assertTrue(subscriber.accepted.get(2));
+        ClickGuardMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getAcceptedCount());
+        assertEquals(2, snapshot.getIgnoredCount());
+    }
+
+    @Test
+    public void clicksArePublishedWithGuardDecision() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        mGuard.clicks().subscribe(subscriber);
+
+        mView1.performClick();
+        mView2.performClick();
+
+        assertEquals(2, subscriber.views.size());
+        assertSame(mView1, subscriber.views.get(0));
+        assertTrue(subscriber.accepted.get(0));
+        assertSame(mView2, subscriber.views.get(1));
+        assertFalse(subscriber.accepted.get(1));
+    }
+
+    @Test
+    public void throttleFirstKeepsAcceptedClicks() {
+        RecordingSubscriber accepted = new RecordingSubscriber(Long.MAX_VALUE);
+        RecordingSubscriber ignored = new RecordingSubscriber(Long.MAX_VALUE);
+        mGuard.clicks().throttleFirst().subscribe(accepted);
+        mGuard.clicks().ignored().subscribe(ignored);
+
+        mView1.performClick();
+        mView1.performClick();
+        mView2.performClick();
+        Robolectric.getUiThreadScheduler().advanceBy(1000);
+        mView2.performClick();
+
+        assertEquals(2, accepted.views.size());
+        assertSame(mView1, accepted.views.get(0));
+        assertSame(mView2, accepted.views.get(1));
+        assertEquals(2, ignored.views.size());
+    }
+
+    @Test
+    public void debounceEmitsLastClickOfBurst() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        mGuard.clicks().debounce(300).subscribe(subscriber);
+
+        mView1.performClick();
+        Robolectric.getUiThreadScheduler().advanceBy(200);
+        mView2.performClick();
+        Robolectric.getUiThreadScheduler().advanceBy(200);
+        assertTrue(subscriber.views.isEmpty());
+
+        Robolectric.getUiThreadScheduler().advanceBy(100);
+        assertEquals(1, subscriber.views.size());
+        assertSame(mView2, subscriber.views.get(0));
+        assertFalse(subscriber.accepted.get(0));
+    }
+
+    @Test
+    public void sampleEmitsLatestClickOfEachPeriod() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        mGuard.clicks().sample().subscribe(subscriber);
+
+        mView1.performClick();
+        Robolectric.getUiThreadScheduler().advanceBy(500);
+        mView2.performClick();
+        Robolectric.getUiThreadScheduler().advanceBy(500);
+        assertEquals(1, subscriber.views.size());
+        assertSame(mView2, subscriber.views.get(0));
+
+        // Nothing is emitted for a period without clicks.
+        Robolectric.getUiThreadScheduler().advanceBy(5000);
+        assertEquals(1, subscriber.views.size());
+        assertEquals(0, TimingWheel.mainWheel().size());
+    }
+
+    @Test
+    public void bufferHonoursDemand() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(1);
+        ClickStream.Subscription subscription = mGuard.clicks().subscribe(subscriber, 2);
+
+        for (int i = 0; i < 5; i++) {
+            mView1.performClick();
+        }
+        assertEquals(1, subscriber.views.size());
+        assertEquals(2, subscription.getDroppedCount());
+
+        subscription.request(10);
+        assertEquals(3, subscriber.views.size());
+        mView1.performClick();
+        assertEquals(4, subscriber.views.size());
+    }
+
+    @Test
+    public void cancelledOperatorsDetachFromGuard() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        ClickStream.Subscription subscription = mGuard.clicks().debounce(300).subscribe(subscriber);
+
+        mView1.performClick();
+        subscription.cancel();
+        Robolectric.getUiThreadScheduler().advanceBy(300);
+        mView1.performClick();
+
+        assertTrue(subscriber.views.isEmpty());
+        assertFalse(mGuard.clicks().hasSinks());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenRequestIsNotPositive() {
+        mGuard.clicks().subscribe(new RecordingSubscriber(0)).request(0);
+    }
+}
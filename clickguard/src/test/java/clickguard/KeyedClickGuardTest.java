@@ -0,0 +1,148 @@
+package clickguard;
+
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ListView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class KeyedClickGuardTest {
+
+    private static class CountClickListener implements View.OnClickListener {
+        int clickedCount = 0;
+
+        @Override
+        public void onClick(View v) {
+            clickedCount++;
+        }
+    }
+
+    private static final KeyedClickGuard.KeyExtractor ID_EXTRACTOR = new KeyedClickGuard.KeyExtractor() {
+        @Override
+        public long getKey(View view) {
+            return view.getId();
+        }
+    };
+
+    @Test
+    public void keysAreWatchedSeparately() {
+        KeyedClickGuard guard = KeyedClickGuard.newGuard(1000);
+        assertTrue(guard.tryWatch(1L));
+        assertFalse(guard.tryWatch(1L));
+        assertTrue(guard.tryWatch(2L));
+        assertTrue(guard.isWatching(1L));
+        assertTrue(guard.isWatching(2L));
+        assertFalse(guard.isWatching(3L));
+
+        guard.rest(1L);
+        assertFalse(guard.isWatching(1L));
+        assertTrue(guard.isWatching(2L));
+
+        guard.rest();
+        assertFalse(guard.isWatching(2L));
+        assertEquals(0, guard.size());
+    }
+
+    @Test
+    public void keysRestWhenWatchPeriodEnds() {
+        KeyedClickGuard guard = KeyedClickGuard.newGuard(1000);
+        guard.watch(Long.MIN_VALUE);
+        guard.watch(0L);
+        Robolectric.getUiThreadScheduler().advanceBy(999);
+        assertTrue(guard.isWatching(Long.MIN_VALUE));
+        assertTrue(guard.isWatching(0L));
+        Robolectric.getUiThreadScheduler().advanceBy(1);
+        assertFalse(guard.isWatching(Long.MIN_VALUE));
+        assertFalse(guard.isWatching(0L));
+        assertEquals(0, guard.size());
+    }
+
+    @Test
+    public void expiredKeysAreEvictedWhenFull() {
+        KeyedClickGuard guard = KeyedClickGuard.newGuard(1000, 16);
+        for (long key = 0; key < 16; key++) {
+            assertTrue(guard.tryWatch(key));
+        }
+        assertEquals(16, guard.size());
+        Robolectric.getUiThreadScheduler().advanceBy(1000);
+        for (long key = 100; key < 10100; key++) {
+            guard.tryWatch(key);
+            assertTrue(guard.size() <= 16);
+        }
+        assertTrue(guard.isWatching(10099L));
+    }
+
+    @Test
+    public void earliestKeyIsEvictedWhenFullOfWatchedKeys() {
+        KeyedClickGuard guard = KeyedClickGuard.newGuard(1000, 4);
+        for (long key = 0; key < 4; key++) {
+            guard.watch(key);
+            Robolectric.getUiThreadScheduler().advanceBy(10);
+        }
+        guard.watch(4L);
+        assertEquals(4, guard.size());
+        assertFalse(guard.isWatching(0L));
+        for (long key = 1; key <= 4; key++) {
+            assertTrue(guard.isWatching(key));
+        }
+    }
+
+    @Test
+    public void wrappedListenerGuardsEachKey() {
+        KeyedClickGuard guard = KeyedClickGuard.newGuard(1000);
+        CountClickListener listener = new CountClickListener();
+        View.OnClickListener wrapped = guard.wrapOnClickListener(ID_EXTRACTOR, listener);
+        View view1 = new View(Robolectric.application);
+        view1.setId(1);
+        view1.setOnClickListener(wrapped);
+        View view2 = new View(Robolectric.application);
+        view2.setId(2);
+        view2.setOnClickListener(wrapped);
+
+        view1.performClick();
+        view1.performClick();
+        view2.performClick();
+        view2.performClick();
+        assertEquals(2, listener.clickedCount);
+
+        Robolectric.getUiThreadScheduler().advanceBy(1000);
+        view1.performClick();
+        assertEquals(3, listener.clickedCount);
+    }
+
+    @Test
+    public void itemClicksAreGuardedPerItem() {
+        ListView listView = new ListView(Robolectric.application);
+        ClickGuardTest.CountItemClickListener listener = new ClickGuardTest.CountItemClickListener();
+        listView.setOnItemClickListener(listener);
+        KeyedClickGuard guard = KeyedClickGuard.newGuard(1000).addItems(listView);
+
+        View row = new View(Robolectric.application);
+        listView.performItemClick(row, 0, 10);
+        listView.performItemClick(row, 0, 10);
+        listView.performItemClick(row, 1, 11);
+        assertEquals(2, listener.clickedCount);
+        assertTrue(guard.isWatching(10L));
+
+        // Items without an id are guarded per position.
+        listView.performItemClick(row, 2, AdapterView.INVALID_ROW_ID);
+        listView.performItemClick(row, 2, AdapterView.INVALID_ROW_ID);
+        assertEquals(3, listener.clickedCount);
+        assertTrue(guard.isWatching(2L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowWhenCapacityIsNotPositive() {
+        KeyedClickGuard.newGuard(1000, 0);
+    }
+}